@@ -0,0 +1,108 @@
+package calendar.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.EventModel;
+
+/**
+ * Queries on a calendar of 1000000 events with all but its last 30 days either in memory or
+ * moved to an archive. The days and instants queried are spread over the whole calendar, so
+ * most queries are answered from the archive when there is one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ArchiveBenchmark {
+  private static final int Size = 1000000;
+  private static final int Samples = 4096;
+
+  @Param({"false", "true"})
+  public boolean archived;
+
+  private EventModel model;
+  private Path file;
+  private LocalDate[] days;
+  private LocalDateTime[] instants;
+  private int next;
+
+  /**
+   * Builds the calendar, archives it if asked to, and picks the days and instants to query.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    model = CalendarFixture.model(Size);
+    if (archived) {
+      file = Files.createTempFile("calendar", ".archive");
+      model.archive(CalendarFixture.Base.plusDays(CalendarFixture.days(Size) - 30), file);
+    }
+    Random random = new Random(42);
+    days = new LocalDate[Samples];
+    instants = new LocalDateTime[Samples];
+    for (int i = 0; i < Samples; i++) {
+      days[i] = CalendarFixture.randomDay(random, Size);
+      instants[i] = CalendarFixture.randomInstant(random, Size);
+    }
+  }
+
+  /**
+   * Removes the archive.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    if (file != null) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * print events on a day.
+   */
+  @Benchmark
+  public String printDate() {
+    return model.printDate(days[nextSample()]);
+  }
+
+  /**
+   * print events from an instant to 20 minutes later.
+   */
+  @Benchmark
+  public String printDateTimeString() {
+    LocalDateTime from = instants[nextSample()];
+    return model.printDateTimeString(from, from.plusMinutes(20));
+  }
+
+  /**
+   * show status on an instant.
+   */
+  @Benchmark
+  public String printStatus() {
+    return model.printStatus("show status on ", instants[nextSample()]);
+  }
+
+  private int nextSample() {
+    next = (next + 1) & (Samples - 1);
+    return next;
+  }
+}
@@ -0,0 +1,81 @@
+package calendar.bench;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import calendar.model.EventModel;
+import calendar.model.Location;
+import calendar.model.Status;
+
+/**
+ * Builds the calendars the benchmarks run against.
+ * Single events are 25 minutes long and start every half hour, so a calendar of n events
+ * covers n / 48 days. A weekly "Standup" series runs across the same days.
+ */
+final class CalendarFixture {
+  static final LocalDateTime Base = LocalDateTime.of(2020, 1, 6, 0, 0);
+  static final String SeriesSubject = "Standup";
+  static final int EventsPerDay = 48;
+
+  private CalendarFixture() {
+  }
+
+  /**
+   * Creates a model holding the given number of single events and one series.
+   *
+   * @param size number of single events
+   * @return the filled model
+   */
+  static EventModel model(int size) {
+    EventModel model = new EventModel();
+    fill(model, size);
+    return model;
+  }
+
+  /**
+   * Adds the single events and the series to an existing model.
+   *
+   * @param model model to fill
+   * @param size  number of single events
+   */
+  static void fill(EventModel model, int size) {
+    for (int i = 0; i < size; i++) {
+      LocalDateTime start = startOf(i);
+      model.createEvent("Event " + i, null, start, start.plusMinutes(25), Location.ONLINE,
+              Status.PUBLIC, null, 0);
+    }
+    int weeks = Math.max(1, days(size) / 7);
+    model.createEvent(SeriesSubject, null, Base.plusHours(9).plusMinutes(5),
+            Base.plusHours(9).plusMinutes(20), Location.PHYSICAL, Status.PUBLIC,
+            new String[]{"M", "W", "F"}, 3 * weeks - 1);
+  }
+
+  /**
+   * Returns the start of the i-th single event.
+   */
+  static LocalDateTime startOf(int i) {
+    return Base.plusMinutes(30L * i);
+  }
+
+  /**
+   * Returns the number of days the single events of a calendar of the given size cover.
+   */
+  static int days(int size) {
+    return Math.max(1, (size + EventsPerDay - 1) / EventsPerDay);
+  }
+
+  /**
+   * Picks a random day covered by a calendar of the given size.
+   */
+  static LocalDate randomDay(Random random, int size) {
+    return Base.toLocalDate().plusDays(random.nextInt(days(size)));
+  }
+
+  /**
+   * Picks a random instant, to the minute, covered by a calendar of the given size.
+   */
+  static LocalDateTime randomInstant(Random random, int size) {
+    return Base.plusMinutes(random.nextInt(days(size) * 24 * 60));
+  }
+}
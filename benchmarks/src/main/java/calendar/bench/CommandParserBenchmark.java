@@ -0,0 +1,139 @@
+package calendar.bench;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import calendar.controller.Command;
+import calendar.controller.CommandParser;
+
+/**
+ * Parse throughput of command lines, without running them.
+ * Compares CommandParser with the keyword splits EventController used to do, which compiled
+ * a regular expression on every line. Both see the same mix of create, edit, print and copy
+ * commands. Scores are lines per millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+  private static final int Lines = 1024;
+
+  private final CommandParser parser = new CommandParser();
+  private String[] lines;
+  private int next;
+
+  /**
+   * Builds the command lines.
+   */
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    lines = new String[Lines];
+    for (int i = 0; i < Lines; i++) {
+      LocalDateTime start = CalendarFixture.randomInstant(random, 100000).withSecond(0);
+      LocalDateTime end = start.plusMinutes(25);
+      LocalDate day = start.toLocalDate();
+      switch (i % 6) {
+        case 0:
+          lines[i] = "create event Event " + i + " from " + start + " to " + end;
+          break;
+        case 1:
+          lines[i] = "create event Standup " + i + " from " + start + " to " + end
+                  + " repeats M W F until " + start.plusWeeks(4);
+          break;
+        case 2:
+          lines[i] = "edit event status Event " + i + " from " + start + " to " + end
+                  + " with private";
+          break;
+        case 3:
+          lines[i] = "print events on " + day;
+          break;
+        case 4:
+          lines[i] = "print events from " + start + " to " + end;
+          break;
+        default:
+          lines[i] = "copy event Event " + i + " from " + start + " to Archive at "
+                  + start.plusYears(1);
+      }
+    }
+  }
+
+  /**
+   * One line through CommandParser.
+   */
+  @Benchmark
+  public Command parser() {
+    return parser.parse(nextLine());
+  }
+
+  /**
+   * One line through the splits the controller did before, down to the parsed dates.
+   */
+  @Benchmark
+  public void regexSplit(Blackhole blackhole) {
+    String input = nextLine();
+    if (input.startsWith("create event ")) {
+      if (input.contains(" until ")) {
+        int repeatsIndex = input.indexOf(" repeats ");
+        int fromIndex = input.substring(0, repeatsIndex).lastIndexOf(" from ");
+        int toIndex = input.indexOf(" to ", fromIndex);
+        blackhole.consume(input.substring("create event ".length(), fromIndex));
+        blackhole.consume(LocalDateTime.parse(input.substring(fromIndex + 6, toIndex)));
+        blackhole.consume(LocalDateTime.parse(input.substring(toIndex + 4, repeatsIndex)));
+        int untilIndex = input.indexOf(" until ");
+        blackhole.consume(input.substring(repeatsIndex + 9, untilIndex).split("\\s+"));
+        blackhole.consume(LocalDateTime.parse(input.substring(untilIndex + 7)));
+      } else {
+        String[] details = input.split("\\s*create event\\s*|\\s*from\\s*|\\s*to\\s*"
+                + "|\\s*repeats\\s*|\\s*for\\s*|\\s*times\\s*");
+        blackhole.consume(details[1]);
+        blackhole.consume(LocalDateTime.parse(details[2]));
+        blackhole.consume(LocalDateTime.parse(details[3]));
+      }
+    } else if (input.startsWith("edit event ")) {
+      String propAndSubject = input.substring("edit event ".length());
+      int indexOfSplit = propAndSubject.indexOf(" ");
+      blackhole.consume(propAndSubject.substring(0, indexOfSplit));
+      blackhole.consume(propAndSubject.substring(indexOfSplit + 1,
+              propAndSubject.indexOf(" from ")));
+      String[] details = input.split("\\s*from\\s*|\\s*to\\s*|\\s*with\\s*");
+      blackhole.consume(LocalDateTime.parse(details[1]));
+      blackhole.consume(details[3]);
+    } else if (input.startsWith("print events on ")) {
+      blackhole.consume(LocalDate.parse(input.substring("print events on ".length())));
+    } else if (input.startsWith("print events from ")) {
+      int toIndex = input.indexOf(" to ");
+      blackhole.consume(LocalDateTime.parse(input.substring("print events from ".length(),
+              toIndex)));
+      blackhole.consume(LocalDateTime.parse(input.substring(toIndex + 4)));
+    } else {
+      String[] parts = input.split("\\s*from\\s*|\\s*to\\s*|\\s*at\\s*");
+      blackhole.consume(parts[0].substring("copy event ".length()));
+      blackhole.consume(LocalDateTime.parse(parts[1]));
+      blackhole.consume(parts[2]);
+      blackhole.consume(LocalDateTime.parse(parts[3]));
+    }
+  }
+
+  private String nextLine() {
+    next = (next + 1) & (Lines - 1);
+    return lines[next];
+  }
+}
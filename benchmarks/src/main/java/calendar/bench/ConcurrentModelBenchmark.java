@@ -0,0 +1,109 @@
+package calendar.bench;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.EventModel;
+
+/**
+ * Eight threads sharing one calendar of 100000 events, each call either a query or an edit.
+ * The given percentage of calls edit the location of a random event, the rest print a random
+ * day, list every event or probe the status at a random instant, so the runs show how well
+ * queries scale while edits lock them out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ConcurrentModelBenchmark {
+  private static final int Size = 100000;
+
+  @Param({"0", "1", "10", "50"})
+  public int writePercent;
+
+  @Param({"objects", "columns"})
+  public String store;
+
+  private EventModel model;
+
+  /**
+   * Random choices of one thread.
+   */
+  @State(Scope.Thread)
+  public static class Choices {
+    private final Random random = new Random(Thread.currentThread().threadId());
+  }
+
+  /**
+   * Builds the calendar.
+   */
+  @Setup
+  public void setUp() {
+    model = CalendarFixture.model(Size);
+    model.setColumnar(store.equals("columns"));
+  }
+
+  /**
+   * print events on a day, or edit event location.
+   */
+  @Benchmark
+  public Object mixed(Choices choices) {
+    Random random = choices.random;
+    if (random.nextInt(100) < writePercent) {
+      int i = random.nextInt(Size);
+      LocalDateTime start = CalendarFixture.startOf(i);
+      return model.editEvent("location", "Event " + i, start,
+              random.nextBoolean() ? "online" : "physical");
+    }
+    LocalDate day = CalendarFixture.randomDay(random, Size);
+    return model.printDate(day);
+  }
+
+  /**
+   * list all events, or edit event location.
+   */
+  @Benchmark
+  public Object listing(Choices choices) {
+    Random random = choices.random;
+    if (random.nextInt(100) < writePercent) {
+      int i = random.nextInt(Size);
+      LocalDateTime start = CalendarFixture.startOf(i);
+      return model.editEvent("location", "Event " + i, start,
+              random.nextBoolean() ? "online" : "physical");
+    }
+    return model.getEvents().get(random.nextInt(Size));
+  }
+
+  /**
+   * show status on a random instant, or edit event location.
+   */
+  @Benchmark
+  public Object status(Choices choices) {
+    Random random = choices.random;
+    if (random.nextInt(100) < writePercent) {
+      int i = random.nextInt(Size);
+      LocalDateTime start = CalendarFixture.startOf(i);
+      return model.editEvent("location", "Event " + i, start,
+              random.nextBoolean() ? "online" : "physical");
+    }
+    return model.printStatus("show status on ", CalendarFixture.randomInstant(random, Size));
+  }
+}
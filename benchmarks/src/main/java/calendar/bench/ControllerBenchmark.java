@@ -0,0 +1,112 @@
+package calendar.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.controller.EventController;
+import calendar.model.CalendarManager;
+
+/**
+ * Command throughput of EventController.controllerHelper on a calendar of the given size.
+ * Each invocation runs a script of print and edit commands through the command loop, with the
+ * printed output thrown away. Scores are commands per millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+  private static final int Commands = 1000;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int size;
+
+  private CalendarManager manager;
+  private String script;
+  private PrintStream originalOut;
+
+  /**
+   * Builds the calendar and the command script, and silences standard output.
+   */
+  @Setup
+  public void setUp() {
+    manager = new CalendarManager();
+    manager.createCalendar("Main", java.time.ZoneId.of("America/New_York"));
+    CalendarFixture.fill(manager.useCalendar("Main").getEventModel(), size);
+
+    Random random = new Random(42);
+    StringBuilder commands = new StringBuilder();
+    for (int i = 0; i < Commands; i++) {
+      switch (i % 4) {
+        case 0:
+          LocalDate day = CalendarFixture.randomDay(random, size);
+          commands.append("print events on ").append(day);
+          break;
+        case 1:
+          LocalDateTime from = CalendarFixture.randomInstant(random, size);
+          commands.append("print events from ").append(from)
+                  .append(" to ").append(from.plusMinutes(20));
+          break;
+        case 2:
+          int event = random.nextInt(size);
+          commands.append("edit event status Event ").append(event).append(" from ")
+                  .append(CalendarFixture.startOf(event)).append(" to ")
+                  .append(CalendarFixture.startOf(event).plusMinutes(25)).append(" with ")
+                  .append(random.nextBoolean() ? "private" : "public");
+          break;
+        default:
+          commands.append("edit series location ").append(CalendarFixture.SeriesSubject)
+                  .append(" from ").append(CalendarFixture.Base).append(" with ")
+                  .append(random.nextBoolean() ? "online" : "physical");
+          break;
+      }
+      commands.append('\n');
+    }
+    script = commands.append("exit").toString();
+
+    originalOut = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+  }
+
+  /**
+   * Restores standard output.
+   */
+  @TearDown
+  public void tearDown() {
+    System.setOut(originalOut);
+  }
+
+  /**
+   * Runs the whole script through a controller working on the prepared calendar.
+   */
+  @Benchmark
+  @OperationsPerInvocation(Commands)
+  public EventController commands() {
+    EventController controller = new EventController(new StringReader(script), System.out);
+    controller.calendarManager = manager;
+    controller.session = manager.getSharedSession();
+    controller.controllerHelper();
+    return controller;
+  }
+}
@@ -0,0 +1,75 @@
+package calendar.bench;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.CalendarManager;
+
+/**
+ * copy events between: a week of a calendar of the given size copied into a second calendar
+ * in another timezone. Copies of the same week land on the same days, so after the first one
+ * the target only grows when a new week is picked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyEventsBenchmark {
+  private static final int Samples = 64;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int size;
+
+  @Param({"objects", "columns"})
+  public String store;
+
+  private CalendarManager manager;
+  private LocalDate[] weeks;
+  private int next;
+
+  /**
+   * Builds the source calendar and an empty target calendar.
+   */
+  @Setup
+  public void setUp() {
+    manager = new CalendarManager();
+    manager.setColumnar(store.equals("columns"));
+    manager.createCalendar("Source", ZoneId.of("America/New_York"));
+    manager.createCalendar("Target", ZoneId.of("Europe/Paris"));
+    CalendarFixture.fill(manager.useCalendar("Source").getEventModel(), size);
+    Random random = new Random(42);
+    weeks = new LocalDate[Samples];
+    for (int i = 0; i < Samples; i++) {
+      weeks[i] = CalendarFixture.randomDay(random, size);
+    }
+  }
+
+  /**
+   * Copies the seven days starting at the next sampled day.
+   */
+  @Benchmark
+  public CalendarManager copyEventsBetween() {
+    next = (next + 1) % Samples;
+    LocalDate from = weeks[next];
+    manager.copyEventsBetween(from.atStartOfDay().toString(),
+            from.plusDays(6).atTime(23, 59).toString(), "Target",
+            from.plusYears(100).atStartOfDay().toString());
+    return manager;
+  }
+}
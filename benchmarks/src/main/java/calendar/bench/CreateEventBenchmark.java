@@ -0,0 +1,79 @@
+package calendar.bench;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.EventModel;
+import calendar.model.Location;
+import calendar.model.Status;
+
+/**
+ * Cost of EventModel.createEvent on a calendar that already holds the given number of events.
+ * Every measured batch of creates starts from a freshly built calendar, so the calendar grows
+ * by at most one batch while it is measured. Scores are the time per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = CreateEventBenchmark.Batch)
+@Measurement(iterations = 10, batchSize = CreateEventBenchmark.Batch)
+@Fork(1)
+public class CreateEventBenchmark {
+  static final int Batch = 1000;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int size;
+
+  private EventModel model;
+  private int created;
+
+  /**
+   * Builds a fresh calendar before every batch.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    model = CalendarFixture.model(size);
+    created = 0;
+  }
+
+  /**
+   * Creates a single event somewhere inside the calendar.
+   */
+  @Benchmark
+  public void createSingle() {
+    LocalDateTime start = startOfNext();
+    model.createEvent("Created " + created, null, start, start.plusMinutes(10),
+            Location.ONLINE, Status.PUBLIC, null, 0);
+  }
+
+  /**
+   * Creates an event repeating on weekdays for a year somewhere inside the calendar.
+   */
+  @Benchmark
+  public void createRecurring() {
+    // Occurrences cannot run past midnight, so recurring events start around noon
+    LocalDateTime start = startOfNext().withHour(12);
+    model.createEvent("Created " + created, null, start, start.plusMinutes(10),
+            Location.ONLINE, Status.PUBLIC, new String[]{"M", "T", "W", "R", "F"}, 260);
+  }
+
+  private LocalDateTime startOfNext() {
+    created++;
+    // Spread over the calendar, between the existing events
+    int slot = (int) ((created * 7919L) % size);
+    return CalendarFixture.startOf(slot).plusMinutes(26);
+  }
+}
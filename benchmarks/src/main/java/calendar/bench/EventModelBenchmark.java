@@ -0,0 +1,104 @@
+package calendar.bench;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.Event;
+import calendar.model.EventModel;
+
+/**
+ * Queries and series edits on a calendar of the given size, with its single events held as
+ * objects or as columns.
+ * Each call picks the next of a fixed set of random days or instants, so runs are comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventModelBenchmark {
+  private static final int Samples = 4096;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int size;
+
+  @Param({"objects", "columns"})
+  public String store;
+
+  private EventModel model;
+  private LocalDate[] days;
+  private LocalDateTime[] instants;
+  private int next;
+  private boolean makePrivate;
+
+  /**
+   * Builds the calendar and the days and instants the queries use.
+   */
+  @Setup
+  public void setUp() {
+    model = CalendarFixture.model(size);
+    model.setColumnar(store.equals("columns"));
+    Random random = new Random(42);
+    days = new LocalDate[Samples];
+    instants = new LocalDateTime[Samples];
+    for (int i = 0; i < Samples; i++) {
+      days[i] = CalendarFixture.randomDay(random, size);
+      instants[i] = CalendarFixture.randomInstant(random, size);
+    }
+  }
+
+  /**
+   * print events on a day.
+   */
+  @Benchmark
+  public String printDate() {
+    return model.printDate(days[nextSample()]);
+  }
+
+  /**
+   * print events from an instant to 20 minutes later.
+   */
+  @Benchmark
+  public String printDateTimeString() {
+    LocalDateTime from = instants[nextSample()];
+    return model.printDateTimeString(from, from.plusMinutes(20));
+  }
+
+  /**
+   * show status on an instant.
+   */
+  @Benchmark
+  public String printStatus() {
+    return model.printStatus("show status on ", instants[nextSample()]);
+  }
+
+  /**
+   * edit series, toggling the status of every occurrence of the series.
+   */
+  @Benchmark
+  public Event editSeries() {
+    makePrivate = !makePrivate;
+    return model.editSeries("status", CalendarFixture.SeriesSubject, CalendarFixture.Base,
+            makePrivate ? "private" : "public");
+  }
+
+  private int nextSample() {
+    next = (next + 1) & (Samples - 1);
+    return next;
+  }
+}
@@ -0,0 +1,106 @@
+package calendar.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.CalendarManager;
+import calendar.model.EventModel;
+import calendar.model.Journal;
+import calendar.model.Location;
+import calendar.model.Status;
+
+/**
+ * Cost of logging changes: creates and edits on a calendar of 10000 events, with and
+ * without a journal. The journal forces its records to disk in the background, so the score
+ * is what logging costs the thread making the changes. Scores are operations per millisecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+  private static final int Size = 10000;
+
+  @Param({"false", "true"})
+  public boolean journaled;
+
+  private Path directory;
+  private Journal journal;
+  private EventModel model;
+  private int created;
+
+  /**
+   * Builds the calendar before every iteration, with a new journal if one is used.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+    CalendarManager manager;
+    if (journaled) {
+      directory = Files.createTempDirectory("journal");
+      journal = Journal.open(directory.resolve("calendars.journal"));
+      manager = journal.recover(null);
+    } else {
+      manager = new CalendarManager();
+    }
+    manager.createCalendar("Work", ZoneId.of("America/New_York"));
+    model = manager.useCalendar("Work").getEventModel();
+    CalendarFixture.fill(model, Size);
+    created = 0;
+  }
+
+  /**
+   * Closes and removes the journal.
+   */
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    if (journal != null) {
+      journal.close();
+      Files.delete(directory.resolve("calendars.journal"));
+      Files.delete(directory);
+      journal = null;
+    }
+  }
+
+  /**
+   * Creates a single event.
+   */
+  @Benchmark
+  public void createEvent() {
+    created++;
+    LocalDateTime start = CalendarFixture.startOf(created % Size).plusMinutes(26)
+            .plusYears(created / Size);
+    model.createEvent("Created " + created, null, start, start.plusMinutes(2),
+            Location.ONLINE, Status.PUBLIC, null, 0);
+  }
+
+  /**
+   * Edits the location of an existing event.
+   */
+  @Benchmark
+  public void editEvent() {
+    created++;
+    int i = created % Size;
+    model.editEvent("location", "Event " + i, CalendarFixture.startOf(i),
+            (created & 1) == 0 ? "online" : "physical");
+  }
+}
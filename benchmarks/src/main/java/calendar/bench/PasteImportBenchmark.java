@@ -0,0 +1,84 @@
+package calendar.bench;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.Event;
+import calendar.model.EventModel;
+import calendar.model.Location;
+import calendar.model.Status;
+
+/**
+ * Measures how long it takes to bulk import events through EventModel.paste, and compares it
+ * with the list based duplicate check paste used before the hash index.
+ * The list based import is quadratic, so sizes stop at 100k.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PasteImportBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private List<Event> events;
+
+  /**
+   * Builds a list of distinct, chronologically ordered events, four per day.
+   */
+  @Setup
+  public void setUp() {
+    events = new ArrayList<>(size);
+    LocalDateTime start = LocalDateTime.of(2020, 1, 1, 8, 0);
+    for (int i = 0; i < size; i++) {
+      LocalDateTime eventStart = start.plusDays(i / 4).plusHours(2L * (i % 4));
+      events.add(Event.getBuilder()
+              .setSubject("Event " + i)
+              .setStartDateTime(eventStart)
+              .setEndDateTime(eventStart.plusHours(1))
+              .setLocation(Location.ONLINE)
+              .setStatus(Status.PUBLIC)
+              .build());
+    }
+  }
+
+  /**
+   * Imports the events the way paste did before the hash index: a linear contains per event.
+   */
+  @Benchmark
+  public List<Event> legacyContains() {
+    List<Event> imported = new ArrayList<>();
+    for (Event event : events) {
+      if (!imported.contains(event)) {
+        imported.add(event);
+      }
+    }
+    return imported;
+  }
+
+  /**
+   * Imports the events into a fresh EventModel.
+   */
+  @Benchmark
+  public EventModel indexedPaste() {
+    EventModel model = new EventModel();
+    model.paste(events);
+    return model;
+  }
+}
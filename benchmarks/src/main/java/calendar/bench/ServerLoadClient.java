@@ -0,0 +1,153 @@
+package calendar.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import calendar.controller.CommandServer;
+
+/**
+ * Load generator for server mode: opens the given number of connections to a server on this
+ * machine, each on a virtual thread, and has each run its own calendar through a mix of event
+ * creations and day prints, waiting for the answer to each command before sending the next.
+ * Prints the commands per second over all connections and the percentiles of the time from
+ * sending a command to reading the end of its answer.
+ * Not a JMH benchmark, since the server runs in another process; start one with
+ * {@code --mode server port} and run
+ * {@code ./gradlew :benchmarks:loadClient --args='port [clients] [commands] [writePercent]'}.
+ */
+public final class ServerLoadClient {
+  private ServerLoadClient() {
+  }
+
+  /**
+   * Runs the load.
+   *
+   * @param args port, then optionally the number of connections (100), commands per
+   *             connection (1000) and percentage of commands that create an event (10)
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: ServerLoadClient port [clients] [commands] [writePercent]");
+      return;
+    }
+    int port = Integer.parseInt(args[0]);
+    int clients = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int commands = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+    // Calendar names of their own, so runs against the same server do not collide
+    long run = System.currentTimeMillis();
+    AtomicLong errors = new AtomicLong();
+
+    long started = System.nanoTime();
+    List<Future<long[]>> done = new ArrayList<>();
+    try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int c = 0; c < clients; c++) {
+        String calendar = "Load " + run + " " + c;
+        long seed = c;
+        done.add(threads.submit(() -> runClient(port, calendar, new Random(seed), commands,
+                writePercent, errors)));
+      }
+    }
+    long elapsed = System.nanoTime() - started;
+
+    long[] latencies = new long[clients * commands];
+    int at = 0;
+    for (Future<long[]> future : done) {
+      try {
+        long[] client = future.get();
+        System.arraycopy(client, 0, latencies, at, client.length);
+        at += client.length;
+      } catch (ExecutionException e) {
+        System.err.println("Client failed: " + e.getCause());
+      }
+    }
+    latencies = Arrays.copyOf(latencies, at);
+    Arrays.sort(latencies);
+    System.out.printf("%d commands on %d connections in %.2f s: %.0f commands/s, %d errors%n",
+            at, clients, elapsed / 1e9, at / (elapsed / 1e9), errors.get());
+    if (at > 0) {
+      System.out.printf("latency us: p50 %d, p99 %d, p99.9 %d, max %d%n",
+              percentile(latencies, 50), percentile(latencies, 99),
+              percentile(latencies, 99.9), latencies[at - 1] / 1000);
+    }
+  }
+
+  /**
+   * Helper that runs one connection and returns the latency of each timed command in
+   * nanoseconds.
+   */
+  private static long[] runClient(int port, String calendar, Random random, int commands,
+                                  int writePercent, AtomicLong errors) throws IOException {
+    try (Socket socket = new Socket("localhost", port);
+         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                 StandardCharsets.UTF_8));
+         Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                 StandardCharsets.UTF_8))) {
+      send(in, out, "create calendar " + calendar + " UTC", errors);
+      send(in, out, "use calendar " + calendar, errors);
+      long[] latencies = new long[commands];
+      int created = 0;
+      for (int i = 0; i < commands; i++) {
+        String command;
+        if (created == 0 || random.nextInt(100) < writePercent) {
+          LocalDateTime start = CalendarFixture.startOf(created);
+          command = "create event Load " + created + " from " + start + " to "
+                  + start.plusMinutes(25);
+          created++;
+        } else {
+          command = "print events on "
+                  + CalendarFixture.startOf(random.nextInt(created)).toLocalDate();
+        }
+        long sent = System.nanoTime();
+        send(in, out, command, errors);
+        latencies[i] = System.nanoTime() - sent;
+      }
+      out.write("exit\n");
+      out.flush();
+      return latencies;
+    }
+  }
+
+  /**
+   * Helper that sends a command and reads its answer, counting errors.
+   */
+  private static void send(BufferedReader in, Writer out, String command, AtomicLong errors)
+          throws IOException {
+    out.write(command);
+    out.write('\n');
+    out.flush();
+    String line;
+    while (!CommandServer.EndOfResponse.equals(line = in.readLine())) {
+      if (line == null) {
+        throw new IOException("Server closed the connection");
+      }
+      if (line.startsWith("Error: ")) {
+        errors.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Helper that returns a percentile of sorted latencies in microseconds.
+   */
+  private static long percentile(long[] sorted, double percent) {
+    int i = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * percent / 100) - 1);
+    return sorted[Math.max(0, i)] / 1000;
+  }
+}
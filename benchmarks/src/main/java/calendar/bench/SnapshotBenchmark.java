@@ -0,0 +1,78 @@
+package calendar.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.CalendarManager;
+import calendar.model.CalendarSnapshot;
+
+/**
+ * Writing and loading a binary snapshot of a calendar of the given size.
+ * load is the startup cost of a headless run that starts from a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SnapshotBenchmark {
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  private CalendarManager manager;
+  private Path file;
+
+  /**
+   * Builds the calendar and writes it once, so load has a snapshot to read.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    manager = new CalendarManager();
+    manager.createCalendar("Work", ZoneId.of("America/New_York"));
+    CalendarFixture.fill(manager.useCalendar("Work").getEventModel(), size);
+    file = Files.createTempFile("calendar", ".snapshot");
+    CalendarSnapshot.write(manager, file);
+  }
+
+  /**
+   * Removes the snapshot.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Writes the calendar over the snapshot.
+   */
+  @Benchmark
+  public Path write() throws IOException {
+    CalendarSnapshot.write(manager, file);
+    return file;
+  }
+
+  /**
+   * Reads the snapshot into a new manager.
+   */
+  @Benchmark
+  public CalendarManager load() throws IOException {
+    return CalendarSnapshot.read(file);
+  }
+}
@@ -0,0 +1,96 @@
+package calendar.bench;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import calendar.model.Event;
+import calendar.model.EventModel;
+import calendar.model.Location;
+import calendar.model.Status;
+
+/**
+ * Compares show status probes answered by the busy-time bitmaps of EventModel.printStatus
+ * with the scan over every event that printStatus used to do.
+ * Probes are spread over a few weeks, the way an availability check walks a schedule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusProbeBenchmark {
+  private static final int Probes = 4096;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int eventCount;
+
+  private EventModel model;
+  private List<Event> events;
+  private LocalDateTime[] probes;
+  private int next;
+
+  /**
+   * Fills a model with events of up to three hours spread over a year, and picks the probes.
+   */
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+    model = new EventModel();
+    for (int i = 0; i < eventCount; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(365 * 24 * 60));
+      model.createEvent("Event " + i, null, start, start.plusMinutes(15 + random.nextInt(180)),
+              Location.ONLINE, Status.PUBLIC, null, 0);
+    }
+    events = model.getEvents();
+    probes = new LocalDateTime[Probes];
+    for (int i = 0; i < Probes; i++) {
+      probes[i] = base.plusDays(100).plusMinutes(random.nextInt(21 * 24 * 60));
+    }
+  }
+
+  /**
+   * One probe through the bitmaps.
+   */
+  @Benchmark
+  public String bitmap() {
+    return model.printStatus("show status on ", nextProbe());
+  }
+
+  /**
+   * One probe the way printStatus answered it before: every event is checked, even after the
+   * first hit.
+   */
+  @Benchmark
+  public String linearScan() {
+    LocalDateTime dateTime = nextProbe();
+    boolean busy = false;
+    for (Event event : events) {
+      if (!dateTime.isBefore(event.getStartDateTime())
+              && !dateTime.isAfter(event.getEndDateTime())) {
+        busy = true;
+      }
+    }
+    return busy ? "busy" : "available";
+  }
+
+  private LocalDateTime nextProbe() {
+    next = (next + 1) & (Probes - 1);
+    return probes[next];
+  }
+}
@@ -1,12 +1,30 @@
 package calendar;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 
 import javax.swing.*;
 
+import calendar.controller.BatchRunner;
+import calendar.controller.CommandServer;
 import calendar.controller.EventController;
+import calendar.model.Calendar;
+import calendar.model.CalendarManager;
+import calendar.model.CalendarSnapshot;
+import calendar.model.Journal;
+import calendar.view.BackgroundWriter;
 import calendar.view.CalendarGUI;
 import calendar.view.EventView;
 
@@ -20,6 +38,21 @@ public class MainMethod {
    * @param args Command line arguments that takes either:
    *             --mode interactive: Run in interactive mode
    *             --mode headless filename: Run in headless mode with commands from file
+   *             --mode headless filename --parse-threads n: Same, parsing commands on n
+   *             threads ahead of running them, or on the running thread if n is 0
+   *             --mode headless filename --load snapshot --save snapshot: Same, starting
+   *             from the calendars of a snapshot and writing them to one after the run
+   *             --mode headless filename --journal journal: Same, logging every change to
+   *             the journal and replaying the changes it holds, after the loaded snapshot,
+   *             before the run
+   *             --mode headless filename --archive-before dateTime --archive-dir directory:
+   *             Same, first moving the single events of each calendar that end before the
+   *             given time into an archive file in the directory
+   *             --mode headless filename --store columns: Same, holding the single events
+   *             of each calendar as columns of primitive values instead of as objects
+   *             --mode server port: Serve the commands of clients connecting to the port
+   *             on the loopback address, taking --load, --journal and --store like
+   *             headless mode
    */
   public static void main(String[] args) {
     EventController controller;
@@ -49,18 +82,209 @@ public class MainMethod {
           return;
         }
         String filename = args[2];
-        try {
-          FileReader fileReader = new FileReader(filename);
-          controller = new EventController(fileReader, System.out);
-          controller.controllerHelper();
-        } catch (FileNotFoundException e) {
+        Path file = Paths.get(filename);
+        if (!Files.isRegularFile(file)) {
           view.printError("Error: File not found: " + filename);
+          return;
+        }
+        int parseThreads = defaultParseThreads();
+        Path load = null;
+        Path save = null;
+        Path journalFile = null;
+        LocalDateTime archiveBefore = null;
+        Path archiveDirectory = null;
+        boolean columnar = false;
+        for (int i = 3; i < args.length; i += 2) {
+          if (i + 1 == args.length) {
+            view.printError("Error: Invalid arguments");
+            return;
+          }
+          if (args[i].equals("--parse-threads")) {
+            try {
+              parseThreads = Integer.parseInt(args[i + 1]);
+            } catch (NumberFormatException e) {
+              view.printError("Error: Invalid number of parse threads: " + args[i + 1]);
+              return;
+            }
+          } else if (args[i].equals("--load")) {
+            load = Paths.get(args[i + 1]);
+          } else if (args[i].equals("--save")) {
+            save = Paths.get(args[i + 1]);
+          } else if (args[i].equals("--journal")) {
+            journalFile = Paths.get(args[i + 1]);
+          } else if (args[i].equals("--archive-before")) {
+            try {
+              archiveBefore = LocalDateTime.parse(args[i + 1]);
+            } catch (DateTimeParseException e) {
+              view.printError("Error: Invalid archive time: " + args[i + 1]);
+              return;
+            }
+          } else if (args[i].equals("--archive-dir")) {
+            archiveDirectory = Paths.get(args[i + 1]);
+          } else if (args[i].equals("--store")) {
+            if (!args[i + 1].equals("columns") && !args[i + 1].equals("objects")) {
+              view.printError("Error: Invalid store: " + args[i + 1]);
+              return;
+            }
+            columnar = args[i + 1].equals("columns");
+          } else {
+            view.printError("Error: Invalid arguments");
+            return;
+          }
+        }
+        if ((archiveBefore == null) != (archiveDirectory == null)) {
+          view.printError("Error: --archive-before and --archive-dir go together");
+          return;
+        }
+        // Results go through one large buffer rather than a console write per command
+        Writer sink = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        if (parseThreads > 0) {
+          // Output is written on its own thread, off the thread running the commands
+          sink = new BackgroundWriter(sink);
+        }
+        EventView batchView = new EventView(sink);
+        EventController batchController = new EventController(null, null, batchView);
+        BatchRunner runner;
+        try {
+          runner = new BatchRunner(batchController, batchView, parseThreads);
+        } catch (IllegalArgumentException e) {
+          view.printError("Error: " + e.getMessage());
+          return;
+        }
+        Journal journal = null;
+        try {
+          if (journalFile != null) {
+            // Picks up the changes a run that did not get to save made after the snapshot
+            journal = Journal.open(journalFile);
+            batchController.calendarManager = journal.recover(load);
+            batchController.session = batchController.calendarManager.getSharedSession();
+          } else if (load != null) {
+            batchController.calendarManager = CalendarSnapshot.read(load);
+            batchController.session = batchController.calendarManager.getSharedSession();
+          }
+          if (archiveBefore != null) {
+            archive(batchController.calendarManager, archiveBefore, archiveDirectory);
+          }
+          batchController.calendarManager.setColumnar(columnar);
+          runner.run(file);
+          System.err.println(runner.summary());
+          if (save != null && journal != null) {
+            journal.checkpoint(batchController.calendarManager, save);
+          } else if (save != null) {
+            CalendarSnapshot.write(batchController.calendarManager, save);
+          }
+        } catch (IOException e) {
+          view.printError("Error: " + e.getMessage());
+        } finally {
+          // Even a failed run forces the changes it made to disk before the process exits
+          if (journal != null) {
+            try {
+              journal.close();
+            } catch (IOException e) {
+              view.printError("Error: " + e.getMessage());
+            }
+          }
         }
+      } else if (args[1].equals("server")) {
+        serve(args, view);
       } else {
-        view.printError("Error: Invalid mode. Use 'interactive' or 'headless'");
+        view.printError("Error: Invalid mode. Use 'interactive', 'headless' or 'server'");
       }
     } else {
       view.printError("Error: Invalid arguments");
     }
   }
+
+  /**
+   * Helper that runs server mode until the process is stopped. Changes are only kept if a
+   * journal is given, since the server never gets to save a snapshot.
+   */
+  private static void serve(String[] args, EventView view) {
+    if (args.length < 3) {
+      view.printError("Error: Server mode requires a port");
+      return;
+    }
+    int port;
+    try {
+      port = Integer.parseInt(args[2]);
+    } catch (NumberFormatException e) {
+      view.printError("Error: Invalid port: " + args[2]);
+      return;
+    }
+    Path load = null;
+    Path journalFile = null;
+    boolean columnar = false;
+    for (int i = 3; i < args.length; i += 2) {
+      if (i + 1 == args.length) {
+        view.printError("Error: Invalid arguments");
+        return;
+      }
+      if (args[i].equals("--load")) {
+        load = Paths.get(args[i + 1]);
+      } else if (args[i].equals("--journal")) {
+        journalFile = Paths.get(args[i + 1]);
+      } else if (args[i].equals("--store")) {
+        if (!args[i + 1].equals("columns") && !args[i + 1].equals("objects")) {
+          view.printError("Error: Invalid store: " + args[i + 1]);
+          return;
+        }
+        columnar = args[i + 1].equals("columns");
+      } else {
+        view.printError("Error: Invalid arguments");
+        return;
+      }
+    }
+    try {
+      CalendarManager manager = new CalendarManager();
+      Journal journal = null;
+      if (journalFile != null) {
+        Journal opened = Journal.open(journalFile);
+        journal = opened;
+        manager = opened.recover(load);
+        // Forces the last batch of changes to disk when the process is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+          try {
+            opened.close();
+          } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+          }
+        }));
+      } else if (load != null) {
+        manager = CalendarSnapshot.read(load);
+      }
+      manager.setColumnar(columnar);
+      try (CommandServer server = new CommandServer(manager, port, journal)) {
+        System.err.println("Serving on port " + server.getPort());
+        server.serve();
+      }
+    } catch (IOException e) {
+      view.printError("Error: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Helper that archives the past events of every calendar. Each run writes new files rather
+   * than replacing the previous ones, which the snapshot a journal recovers from may still
+   * refer to.
+   */
+  private static void archive(CalendarManager manager, LocalDateTime before, Path directory)
+          throws IOException {
+    Files.createDirectories(directory);
+    List<Calendar> calendars = manager.getCalendars();
+    long run = System.currentTimeMillis();
+    for (int i = 0; i < calendars.size(); i++) {
+      calendars.get(i).getEventModel().archive(before,
+              directory.resolve("calendar-" + i + "-" + run + ".archive"));
+    }
+  }
+
+  /**
+   * Helper that picks how many threads parse ahead in headless mode: none on a machine with
+   * few cores, where the reader, writer and command threads already use them up.
+   */
+  private static int defaultParseThreads() {
+    int cores = Runtime.getRuntime().availableProcessors();
+    return cores < 4 ? 0 : Math.min(4, cores - 3);
+  }
 }
@@ -0,0 +1,381 @@
+package calendar.controller;
+
+import calendar.view.EventView;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a file of commands in headless mode.
+ * The file is read through a channel in large blocks and cut into lines where the blocks are,
+ * so each line is decoded once and no Scanner sits between the file and the parser. Results
+ * go to the view, which for a batch run should write to a buffered sink.
+ * A command that fails is reported as an error with its line number and the run goes on with
+ * the next line. The run ends at an exit command or at the end of the file; blank lines are
+ * skipped.
+ * With parse threads, the run is a pipeline: a reader thread cuts the file into chunks of
+ * lines, the parse threads turn chunks into commands, and the thread that called run takes
+ * the parsed chunks in file order and runs their commands one at a time. Parsing does not
+ * depend on what earlier commands did, so the results are the same as those of a serial run.
+ */
+public class BatchRunner {
+  private static final int BlockSize = 1 << 16;
+  private static final int ChunkLines = 512;
+  private static final int ChunksPerThread = 4;
+  // How often a reader waiting for room in the queue checks whether the run stopped
+  private static final long StopCheckMillis = 10;
+
+  private final EventController controller;
+  private final EventView view;
+  private final int parseThreads;
+  private long commands;
+  private long elapsedNanos;
+
+  /**
+   * Constructs a runner that parses and runs each command in turn on the calling thread.
+   *
+   * @param controller runs the commands
+   * @param view       where errors are reported, the view of the controller
+   */
+  public BatchRunner(EventController controller, EventView view) {
+    this(controller, view, 0);
+  }
+
+  /**
+   * Constructs a runner that parses commands on the given number of threads.
+   *
+   * @param controller   runs the commands
+   * @param view         where errors are reported, the view of the controller
+   * @param parseThreads number of threads parsing ahead of the commands being run, or 0 to
+   *                     parse each command on the calling thread just before it is run
+   * @throws IllegalArgumentException if the number of threads is negative
+   */
+  public BatchRunner(EventController controller, EventView view, int parseThreads) {
+    if (parseThreads < 0) {
+      throw new IllegalArgumentException("Number of parse threads cannot be negative");
+    }
+    this.controller = controller;
+    this.view = view;
+    this.parseThreads = parseThreads;
+  }
+
+  /**
+   * Runs every command of the file, then flushes the view.
+   *
+   * @param file the file of commands, one per line, in UTF-8
+   * @return the number of commands run, including the ones that failed
+   * @throws IOException if the file cannot be read or the output cannot be written
+   */
+  public long run(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return run(channel);
+    }
+  }
+
+  /**
+   * Runs every command read from a channel, then flushes the view. The channel is read up to
+   * its end or the exit command, and is never closed. With parse threads, reading may have
+   * gone a block past the exit command by the time the run returns.
+   *
+   * @param channel the commands, one per line, in UTF-8
+   * @return the number of commands run, including the ones that failed
+   * @throws IOException if the channel cannot be read or the output cannot be written
+   */
+  public long run(ReadableByteChannel channel) throws IOException {
+    long started = System.nanoTime();
+    commands = 0;
+    try {
+      if (parseThreads == 0) {
+        runSerial(channel);
+      } else {
+        runPipelined(channel);
+      }
+    } finally {
+      view.flush();
+      elapsedNanos = System.nanoTime() - started;
+    }
+    return commands;
+  }
+
+  /**
+   * Describes the last run: the number of commands, the time it took and the commands run
+   * per second.
+   *
+   * @return the summary
+   */
+  public String summary() {
+    double seconds = elapsedNanos / 1e9;
+    return String.format("Ran %d commands in %.3f s (%.0f commands/s)", commands, seconds,
+            seconds > 0 ? commands / seconds : 0.0);
+  }
+
+  /**
+   * Receives the lines of a file.
+   */
+  private interface LineSink {
+    /**
+     * Takes the next line.
+     *
+     * @param line the line, without its line break
+     * @return false to stop reading
+     * @throws IOException if the line cannot be passed on
+     */
+    boolean accept(String line) throws IOException;
+  }
+
+  /**
+   * Helper that reads the lines of a channel in blocks until the sink asks to stop.
+   */
+  private static void readLines(ReadableByteChannel channel, LineSink sink) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BlockSize);
+    int scanned = 0;
+    while (true) {
+      int read = channel.read(buffer);
+      byte[] bytes = buffer.array();
+      int limit = buffer.position();
+      int lineStart = 0;
+      for (int i = scanned; i < limit; i++) {
+        if (bytes[i] == '\n') {
+          if (!sink.accept(decode(bytes, lineStart, i))) {
+            return;
+          }
+          lineStart = i + 1;
+        }
+      }
+      if (read == -1) {
+        if (lineStart < limit) {
+          // The last line has no line break
+          sink.accept(decode(bytes, lineStart, limit));
+        }
+        return;
+      }
+      // Keep the start of a line that runs on into the next block
+      buffer.flip().position(lineStart);
+      buffer.compact();
+      scanned = buffer.position();
+      if (!buffer.hasRemaining()) {
+        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+      }
+    }
+  }
+
+  private static String decode(byte[] bytes, int from, int to) {
+    if (to > from && bytes[to - 1] == '\r') {
+      to--;
+    }
+    return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Helper that reads, parses and runs each line in turn.
+   */
+  private void runSerial(ReadableByteChannel channel) throws IOException {
+    CommandParser parser = new CommandParser();
+    long[] lineNumber = new long[1];
+    readLines(channel, line -> {
+      lineNumber[0]++;
+      if (line.isBlank()) {
+        return true;
+      }
+      Command command = null;
+      RuntimeException error = null;
+      try {
+        command = parser.parse(line);
+      } catch (RuntimeException e) {
+        error = e;
+      }
+      return runLine(command, error, lineNumber[0]);
+    });
+  }
+
+  /**
+   * Helper that runs one parsed line.
+   *
+   * @return false if the line ends the run
+   */
+  private boolean runLine(Command command, RuntimeException parseError, long lineNumber) {
+    if (command == null && parseError == null) {
+      // A blank line
+      return true;
+    }
+    if (command != null && command.getKind() == Command.Kind.EXIT) {
+      return false;
+    }
+    commands++;
+    try {
+      if (parseError != null) {
+        throw parseError;
+      }
+      controller.execute(command);
+    } catch (RuntimeException e) {
+      view.printError("Line " + lineNumber + ": " + e.getMessage());
+    }
+    return true;
+  }
+
+  /**
+   * Lines of the file that are parsed together, with what they were parsed into.
+   */
+  private static class Chunk {
+    private final long firstLine;
+    private final String[] lines = new String[ChunkLines];
+    private final Command[] parsed = new Command[ChunkLines];
+    private final RuntimeException[] errors = new RuntimeException[ChunkLines];
+    private int size;
+
+    private Chunk(long firstLine) {
+      this.firstLine = firstLine;
+    }
+
+    /**
+     * Parses the lines, leaving blank lines without a command or an error.
+     */
+    private Chunk parse(CommandParser parser) {
+      for (int i = 0; i < size; i++) {
+        if (!lines[i].isBlank()) {
+          try {
+            parsed[i] = parser.parse(lines[i]);
+          } catch (RuntimeException e) {
+            errors[i] = e;
+          }
+        }
+        lines[i] = null;
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Helper that runs the file through the reader, parse and run stages.
+   */
+  private void runPipelined(ReadableByteChannel channel) throws IOException {
+    ExecutorService parsers = Executors.newFixedThreadPool(parseThreads, task -> {
+      Thread thread = new Thread(task, "command-parser");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ThreadLocal<CommandParser> parserOfThread = ThreadLocal.withInitial(CommandParser::new);
+    // Parsed chunks in file order; a finished chunk with no lines marks the end of the file
+    BlockingQueue<Future<Chunk>> chunks =
+            new ArrayBlockingQueue<>(parseThreads * ChunksPerThread);
+    // Set when the run no longer takes chunks. The reader is told to stop through this rather
+    // than interrupted, since an interrupted read closes the channel, which the caller may own
+    AtomicBoolean stopped = new AtomicBoolean();
+
+    Thread reader = new Thread(() -> {
+      try {
+        Chunk[] current = {new Chunk(1)};
+        long[] lineNumber = {0};
+        readLines(channel, line -> {
+          Chunk chunk = current[0];
+          chunk.lines[chunk.size++] = line;
+          lineNumber[0]++;
+          if (chunk.size == ChunkLines) {
+            if (!submit(chunks, parsers, () -> chunk.parse(parserOfThread.get()), stopped)) {
+              return false;
+            }
+            current[0] = new Chunk(lineNumber[0] + 1);
+          }
+          return true;
+        });
+        Chunk last = current[0];
+        if (last.size > 0
+                && !submit(chunks, parsers, () -> last.parse(parserOfThread.get()), stopped)) {
+          return;
+        }
+        put(chunks, CompletableFuture.completedFuture(new Chunk(lineNumber[0] + 1)), stopped);
+      } catch (InterruptedIOException e) {
+        // The run stopped before the end of the input
+      } catch (IOException e) {
+        // Waits for room like any chunk, so the run always learns of the failure
+        try {
+          put(chunks, CompletableFuture.failedFuture(e), stopped);
+        } catch (InterruptedIOException ignored) {
+          // The run stopped and no longer takes chunks
+        }
+      }
+    }, "command-reader");
+    reader.setDaemon(true);
+    reader.start();
+
+    try {
+      while (true) {
+        Chunk chunk = chunks.take().get();
+        if (chunk.size == 0) {
+          return;
+        }
+        for (int i = 0; i < chunk.size; i++) {
+          if (!runLine(chunk.parsed[i], chunk.errors[i], chunk.firstLine + i)) {
+            return;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while running commands");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Parsing commands failed", e.getCause());
+    } finally {
+      stopped.set(true);
+      parsers.shutdownNow();
+    }
+  }
+
+  /**
+   * Helper that starts parsing a chunk and queues its result behind the chunks before it.
+   *
+   * @return false if the run stopped
+   */
+  private static boolean submit(BlockingQueue<Future<Chunk>> chunks, ExecutorService parsers,
+                                Callable<Chunk> parse, AtomicBoolean stopped)
+          throws InterruptedIOException {
+    Future<Chunk> parsed;
+    try {
+      parsed = parsers.submit(parse);
+    } catch (RejectedExecutionException e) {
+      // The run stopped and shut the parse threads down
+      return false;
+    }
+    return put(chunks, parsed, stopped);
+  }
+
+  /**
+   * Helper that queues a chunk once there is room, unless the run stops first.
+   *
+   * @return false if the run stopped
+   */
+  private static boolean put(BlockingQueue<Future<Chunk>> chunks, Future<Chunk> chunk,
+                             AtomicBoolean stopped) throws InterruptedIOException {
+    try {
+      while (!stopped.get()) {
+        if (chunks.offer(chunk, StopCheckMillis, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading commands");
+    }
+  }
+}
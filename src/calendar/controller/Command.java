@@ -0,0 +1,371 @@
+package calendar.controller;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * A parsed command line of the calendar program.
+ * Which of the fields are set depends on the kind of the command; the others are null, or 0
+ * for the number of times a series repeats.
+ */
+public class Command {
+
+  /**
+   * The kinds of commands the program understands.
+   */
+  public enum Kind {
+    CREATE_CALENDAR,
+    CREATE_EVENT,
+    EDIT_CALENDAR,
+    EDIT_EVENT,
+    EDIT_EVENTS,
+    EDIT_SERIES,
+    PRINT_ON,
+    PRINT_FROM,
+    SHOW_STATUS,
+    USE_CALENDAR,
+    COPY_EVENT,
+    COPY_EVENTS_ON,
+    COPY_EVENTS_BETWEEN,
+    GUI,
+    MOCK,
+    EXIT,
+    UNKNOWN
+  }
+
+  private final Kind kind;
+  private final String input;
+  private final String calendarName;
+  private final ZoneId timezone;
+  private final String subject;
+  private final String property;
+  private final String value;
+  private final LocalDate date;
+  private final LocalDateTime startDateTime;
+  private final LocalDateTime endDateTime;
+  private final LocalDateTime targetDateTime;
+  private final String[] weekDays;
+  private final int times;
+  private final LocalDateTime untilDateTime;
+
+  private Command(CommandBuilder builder) {
+    this.kind = builder.kind;
+    this.input = builder.input;
+    this.calendarName = builder.calendarName;
+    this.timezone = builder.timezone;
+    this.subject = builder.subject;
+    this.property = builder.property;
+    this.value = builder.value;
+    this.date = builder.date;
+    this.startDateTime = builder.startDateTime;
+    this.endDateTime = builder.endDateTime;
+    this.targetDateTime = builder.targetDateTime;
+    this.weekDays = builder.weekDays;
+    this.times = builder.times;
+    this.untilDateTime = builder.untilDateTime;
+  }
+
+  /**
+   * Returns a new CommandBuilder instance for creating a Command.
+   *
+   * @param kind  kind of the command
+   * @param input the command line the command was parsed from
+   * @return a new CommandBuilder instance
+   */
+  public static CommandBuilder getBuilder(Kind kind, String input) {
+    return new CommandBuilder(kind, input);
+  }
+
+  /**
+   * Builder class for creating Command instances.
+   */
+  public static class CommandBuilder {
+    private final Kind kind;
+    private final String input;
+    private String calendarName;
+    private ZoneId timezone;
+    private String subject;
+    private String property;
+    private String value;
+    private LocalDate date;
+    private LocalDateTime startDateTime;
+    private LocalDateTime endDateTime;
+    private LocalDateTime targetDateTime;
+    private String[] weekDays;
+    private int times;
+    private LocalDateTime untilDateTime;
+
+    private CommandBuilder(Kind kind, String input) {
+      this.kind = kind;
+      this.input = input;
+    }
+
+    /**
+     * Sets the calendar the command creates, uses or edits, or copies events to.
+     *
+     * @param calendarName name of the calendar
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setCalendarName(String calendarName) {
+      this.calendarName = calendarName;
+      return this;
+    }
+
+    /**
+     * Sets the timezone of a calendar to create.
+     *
+     * @param timezone timezone of the calendar
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setTimezone(ZoneId timezone) {
+      this.timezone = timezone;
+      return this;
+    }
+
+    /**
+     * Sets the subject of the event the command creates, edits or copies.
+     *
+     * @param subject subject of the event
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setSubject(String subject) {
+      this.subject = subject;
+      return this;
+    }
+
+    /**
+     * Sets the property an edit command changes.
+     *
+     * @param property name of the property
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setProperty(String property) {
+      this.property = property;
+      return this;
+    }
+
+    /**
+     * Sets the new value of the property an edit command changes.
+     *
+     * @param value new value of the property
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setValue(String value) {
+      this.value = value;
+      return this;
+    }
+
+    /**
+     * Sets the day a print command lists.
+     *
+     * @param date the day
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setDate(LocalDate date) {
+      this.date = date;
+      return this;
+    }
+
+    /**
+     * Sets the start of the event or of the range the command works on.
+     *
+     * @param startDateTime the start date and time
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setStartDateTime(LocalDateTime startDateTime) {
+      this.startDateTime = startDateTime;
+      return this;
+    }
+
+    /**
+     * Sets the end of the event or of the range the command works on.
+     *
+     * @param endDateTime the end date and time
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setEndDateTime(LocalDateTime endDateTime) {
+      this.endDateTime = endDateTime;
+      return this;
+    }
+
+    /**
+     * Sets where a copy command places the copied events.
+     *
+     * @param targetDateTime the new start date and time
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setTargetDateTime(LocalDateTime targetDateTime) {
+      this.targetDateTime = targetDateTime;
+      return this;
+    }
+
+    /**
+     * Sets the weekdays a created event repeats on.
+     *
+     * @param weekDays weekday letters
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setWeekDays(String[] weekDays) {
+      this.weekDays = weekDays;
+      return this;
+    }
+
+    /**
+     * Sets the number of times a created event repeats on each of its weekdays.
+     *
+     * @param times the number of times
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setTimes(int times) {
+      this.times = times;
+      return this;
+    }
+
+    /**
+     * Sets the date and time a created event repeats until.
+     *
+     * @param untilDateTime the last date and time
+     * @return this builder instance for method chaining
+     */
+    public CommandBuilder setUntilDateTime(LocalDateTime untilDateTime) {
+      this.untilDateTime = untilDateTime;
+      return this;
+    }
+
+    /**
+     * Builds the command.
+     *
+     * @return the new Command
+     */
+    public Command build() {
+      return new Command(this);
+    }
+  }
+
+  /**
+   * Gets the kind of the command.
+   *
+   * @return the kind of the command
+   */
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Gets the command line the command was parsed from.
+   *
+   * @return the command line the command was parsed from
+   */
+  public String getInput() {
+    return input;
+  }
+
+  /**
+   * Gets the calendar the command creates, uses or edits, or copies events to.
+   *
+   * @return the calendar the command creates, uses or edits, or copies events to
+   */
+  public String getCalendarName() {
+    return calendarName;
+  }
+
+  /**
+   * Gets the timezone of a calendar to create.
+   *
+   * @return the timezone of a calendar to create
+   */
+  public ZoneId getTimezone() {
+    return timezone;
+  }
+
+  /**
+   * Gets the subject of the event the command creates, edits or copies.
+   *
+   * @return the subject of the event the command creates, edits or copies
+   */
+  public String getSubject() {
+    return subject;
+  }
+
+  /**
+   * Gets the property an edit command changes.
+   *
+   * @return the property an edit command changes
+   */
+  public String getProperty() {
+    return property;
+  }
+
+  /**
+   * Gets the new value of the edited property.
+   *
+   * @return the new value of the edited property
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Gets the day a print command lists.
+   *
+   * @return the day a print command lists
+   */
+  public LocalDate getDate() {
+    return date;
+  }
+
+  /**
+   * Gets the start of the event or of the range the command works on.
+   *
+   * @return the start of the event or of the range the command works on
+   */
+  public LocalDateTime getStartDateTime() {
+    return startDateTime;
+  }
+
+  /**
+   * Gets the end of the event or of the range the command works on.
+   *
+   * @return the end of the event or of the range the command works on
+   */
+  public LocalDateTime getEndDateTime() {
+    return endDateTime;
+  }
+
+  /**
+   * Gets where a copy command places the copied events.
+   *
+   * @return where a copy command places the copied events
+   */
+  public LocalDateTime getTargetDateTime() {
+    return targetDateTime;
+  }
+
+  /**
+   * Gets the weekday letters a created event repeats on, or null if it does not repeat.
+   *
+   * @return the weekday letters a created event repeats on, or null if it does not repeat
+   */
+  public String[] getWeekDays() {
+    return weekDays;
+  }
+
+  /**
+   * Gets the number of times a created event repeats on each weekday, or 0.
+   *
+   * @return the number of times a created event repeats on each weekday, or 0
+   */
+  public int getTimes() {
+    return times;
+  }
+
+  /**
+   * Gets the date and time a created event repeats until, or null.
+   *
+   * @return the date and time a created event repeats until, or null
+   */
+  public LocalDateTime getUntilDateTime() {
+    return untilDateTime;
+  }
+}
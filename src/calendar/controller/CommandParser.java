@@ -0,0 +1,405 @@
+package calendar.controller;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Turns command lines into Command objects.
+ * A line is split into words in a single pass that only records where each word starts and
+ * ends, and the grammar of the command is then matched against the words. A keyword such as
+ * from, to, on, until or at only ends a subject or a calendar name where it is followed by
+ * the date the grammar expects, so subjects like "Trip to Paris" parse as written.
+ * Dates and times in the yyyy-MM-dd and yyyy-MM-ddTHH:mm[:ss] forms are read digit by digit.
+ * A parser reuses its word buffers from one line to the next, so it must not be shared
+ * between threads.
+ */
+public class CommandParser {
+  private static final LocalTime StartOfEvent = LocalTime.of(8, 0);
+  private static final LocalTime EndOfEvent = LocalTime.of(17, 0);
+
+  private String line;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int count;
+
+  /**
+   * Parses one command line.
+   *
+   * @param input the command line
+   * @return the parsed command, of kind UNKNOWN if the line is not a command at all
+   * @throws IllegalArgumentException if the line starts like a command but does not follow
+   *                                  its format
+   * @throws java.time.DateTimeException if a date, time or timezone in the line is invalid
+   */
+  public Command parse(String input) {
+    if (input.equals("exit")) {
+      return Command.getBuilder(Command.Kind.EXIT, input).build();
+    }
+    if (input.isEmpty()) {
+      return Command.getBuilder(Command.Kind.GUI, input).build();
+    }
+    if (input.startsWith("mock ")) {
+      return Command.getBuilder(Command.Kind.MOCK, input).build();
+    }
+    tokenize(input);
+    try {
+      if (is(0, "create")) {
+        return parseCreate();
+      } else if (is(0, "edit")) {
+        return parseEdit();
+      } else if (is(0, "print") || is(0, "show")) {
+        return parsePrint();
+      } else if (is(0, "use")) {
+        return parseUse();
+      } else if (is(0, "copy")) {
+        return parseCopy();
+      }
+      return Command.getBuilder(Command.Kind.UNKNOWN, input).build();
+    } finally {
+      // Do not keep the last line alive between commands
+      line = null;
+    }
+  }
+
+  /**
+   * Helper that records the start and end of each word of the line.
+   */
+  private void tokenize(String input) {
+    line = input;
+    count = 0;
+    int length = input.length();
+    int i = 0;
+    while (i < length) {
+      while (i < length && input.charAt(i) <= ' ') {
+        i++;
+      }
+      if (i == length) {
+        break;
+      }
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+        ends = Arrays.copyOf(ends, count * 2);
+      }
+      starts[count] = i;
+      while (i < length && input.charAt(i) > ' ') {
+        i++;
+      }
+      ends[count++] = i;
+    }
+  }
+
+  /**
+   * Helper for create calendar and create event commands.
+   * create calendar NAME TIMEZONE
+   * create event SUBJECT (from DATETIME [to DATETIME] | on DATE)
+   * [repeats DAYS (for N times | until DATE)]
+   */
+  private Command parseCreate() {
+    if (is(1, "calendar") && count >= 4) {
+      return Command.getBuilder(Command.Kind.CREATE_CALENDAR, line)
+              .setCalendarName(text(2, count - 1))
+              .setTimezone(ZoneId.of(word(count - 1)))
+              .build();
+    }
+    if (!is(1, "event")) {
+      throw new IllegalArgumentException("Invalid create command: " + line);
+    }
+    Command.CommandBuilder builder = Command.getBuilder(Command.Kind.CREATE_EVENT, line);
+    int at = 3;
+    while (at < count && !(is(at, "from") && isDateTime(at + 1))
+            && !(is(at, "on") && isDate(at + 1))) {
+      at++;
+    }
+    if (at >= count) {
+      throw new IllegalArgumentException("Invalid input format: missing 'on' or 'from' keyword");
+    }
+    builder.setSubject(text(2, at));
+    if (is(at, "from")) {
+      LocalDateTime start = dateTime(at + 1);
+      at += 2;
+      LocalDateTime end;
+      if (is(at, "to") && isDateTime(at + 1)) {
+        end = dateTime(at + 1);
+        at += 2;
+      } else {
+        // Without an end the event lasts until the end of the working day
+        end = start.toLocalDate().atTime(EndOfEvent);
+      }
+      builder.setStartDateTime(start).setEndDateTime(end);
+    } else {
+      LocalDate date = date(at + 1);
+      at += 2;
+      builder.setStartDateTime(date.atTime(StartOfEvent))
+              .setEndDateTime(date.atTime(EndOfEvent));
+    }
+    if (at == count) {
+      return builder.build();
+    }
+    if (!is(at, "repeats")) {
+      throw new IllegalArgumentException("Invalid create event command: " + line);
+    }
+    int firstDay = ++at;
+    while (at < count && !is(at, "for") && !is(at, "until")) {
+      at++;
+    }
+    if (at == firstDay) {
+      throw new IllegalArgumentException("Missing weekdays to repeat on: " + line);
+    }
+    String[] weekDays = new String[at - firstDay];
+    for (int i = 0; i < weekDays.length; i++) {
+      weekDays[i] = word(firstDay + i);
+    }
+    builder.setWeekDays(weekDays);
+    if (is(at, "for") && at + 3 == count && is(at + 2, "times")) {
+      return builder.setTimes(Integer.parseInt(word(at + 1))).build();
+    }
+    if (is(at, "until") && at + 2 == count && isDateOrDateTime(at + 1)) {
+      return builder.setUntilDateTime(dateTimeOrStartOfDay(at + 1)).build();
+    }
+    throw new IllegalArgumentException("Invalid create event command: " + line);
+  }
+
+  /**
+   * Helper for edit calendar and edit event commands.
+   * edit calendar NAME (timezone TIMEZONE | name NEWNAME)
+   * edit (event | events | series) PROPERTY SUBJECT from DATETIME [to DATETIME] with VALUE
+   */
+  private Command parseEdit() {
+    if (is(1, "calendar")) {
+      Command.CommandBuilder builder = Command.getBuilder(Command.Kind.EDIT_CALENDAR, line);
+      if (count >= 5 && is(count - 2, "timezone")) {
+        return builder.setCalendarName(text(2, count - 2))
+                .setProperty("timezone")
+                .setValue(word(count - 1))
+                .build();
+      }
+      for (int at = 3; at < count - 1; at++) {
+        if (is(at, "name")) {
+          return builder.setCalendarName(text(2, at))
+                  .setProperty("name")
+                  .setValue(text(at + 1, count))
+                  .build();
+        }
+      }
+      throw new IllegalArgumentException("Invalid edit calendar command: " + line);
+    }
+    Command.Kind kind;
+    if (is(1, "event")) {
+      kind = Command.Kind.EDIT_EVENT;
+    } else if (is(1, "events")) {
+      kind = Command.Kind.EDIT_EVENTS;
+    } else if (is(1, "series")) {
+      kind = Command.Kind.EDIT_SERIES;
+    } else {
+      throw new IllegalArgumentException("Invalid edit command: " + line);
+    }
+    int at = 4;
+    while (at < count && !(is(at, "from") && isDateTime(at + 1))) {
+      at++;
+    }
+    if (at >= count) {
+      throw new IllegalArgumentException("Invalid edit command: " + line);
+    }
+    Command.CommandBuilder builder = Command.getBuilder(kind, line)
+            .setProperty(word(2))
+            .setSubject(text(3, at))
+            .setStartDateTime(dateTime(at + 1));
+    at += 2;
+    if (is(at, "to") && isDateTime(at + 1)) {
+      builder.setEndDateTime(dateTime(at + 1));
+      at += 2;
+    }
+    if (!is(at, "with") || at + 1 == count) {
+      throw new IllegalArgumentException("Invalid edit command: " + line);
+    }
+    return builder.setValue(text(at + 1, count)).build();
+  }
+
+  /**
+   * Helper for print and show commands.
+   * print events on DATE
+   * print events from DATETIME to DATETIME
+   * show status on DATETIME
+   */
+  private Command parsePrint() {
+    if (is(0, "print") && is(1, "events")) {
+      if (count == 4 && is(2, "on") && isDate(3)) {
+        return Command.getBuilder(Command.Kind.PRINT_ON, line).setDate(date(3)).build();
+      }
+      if (count == 6 && is(2, "from") && isDateTime(3) && is(4, "to") && isDateTime(5)) {
+        return Command.getBuilder(Command.Kind.PRINT_FROM, line)
+                .setStartDateTime(dateTime(3))
+                .setEndDateTime(dateTime(5))
+                .build();
+      }
+    } else if (is(0, "show") && is(1, "status") && count == 4 && is(2, "on") && isDateTime(3)) {
+      return Command.getBuilder(Command.Kind.SHOW_STATUS, line)
+              .setStartDateTime(dateTime(3))
+              .build();
+    }
+    throw new IllegalArgumentException("Invalid formatting of input");
+  }
+
+  /**
+   * Helper for use calendar commands.
+   * use calendar NAME
+   */
+  private Command parseUse() {
+    if (!is(1, "calendar") || count < 3) {
+      throw new IllegalArgumentException("Invalid use command: " + line);
+    }
+    return Command.getBuilder(Command.Kind.USE_CALENDAR, line)
+            .setCalendarName(text(2, count))
+            .build();
+  }
+
+  /**
+   * Helper for copy commands.
+   * copy event SUBJECT from DATETIME to CALENDAR at DATETIME
+   * copy events on DATE to CALENDAR at DATE
+   * copy events between DATE and DATE to CALENDAR at DATE
+   * Dates of the copy events commands may also be given with a time.
+   */
+  private Command parseCopy() {
+    // Every copy command ends with the calendar and the place to copy to
+    boolean hasTarget = count >= 4 && is(count - 2, "at") && isDateOrDateTime(count - 1);
+    if (is(1, "event")) {
+      int at = 3;
+      while (at < count && !(is(at, "from") && isDateTime(at + 1) && is(at + 2, "to"))) {
+        at++;
+      }
+      if (!hasTarget || at + 3 >= count - 2 || !isDateTime(count - 1)) {
+        throw new IllegalArgumentException("Invalid format for copy event command");
+      }
+      return Command.getBuilder(Command.Kind.COPY_EVENT, line)
+              .setSubject(text(2, at))
+              .setStartDateTime(dateTime(at + 1))
+              .setCalendarName(text(at + 3, count - 2))
+              .setTargetDateTime(dateTime(count - 1))
+              .build();
+    }
+    if (is(1, "events") && is(2, "on")) {
+      if (!hasTarget || !isDateOrDateTime(3) || !is(4, "to") || count < 8) {
+        throw new IllegalArgumentException("Invalid format for copy events on command");
+      }
+      return Command.getBuilder(Command.Kind.COPY_EVENTS_ON, line)
+              .setStartDateTime(dateTimeOrStartOfDay(3))
+              .setCalendarName(text(5, count - 2))
+              .setTargetDateTime(dateTimeOrStartOfDay(count - 1))
+              .build();
+    }
+    if (is(1, "events") && is(2, "between")) {
+      if (!hasTarget || !isDateOrDateTime(3) || !is(4, "and") || !isDateOrDateTime(5)
+              || !is(6, "to") || count < 10) {
+        throw new IllegalArgumentException("Invalid format for copy events between command");
+      }
+      // A bare end date takes in the whole of that day
+      LocalDateTime end = isDate(5) ? date(5).atTime(LocalTime.MAX) : dateTime(5);
+      return Command.getBuilder(Command.Kind.COPY_EVENTS_BETWEEN, line)
+              .setStartDateTime(dateTimeOrStartOfDay(3))
+              .setEndDateTime(end)
+              .setCalendarName(text(7, count - 2))
+              .setTargetDateTime(dateTimeOrStartOfDay(count - 1))
+              .build();
+    }
+    throw new IllegalArgumentException("Invalid copy command format");
+  }
+
+  /**
+   * Helper that checks whether word i is the given keyword, in any case.
+   */
+  private boolean is(int i, String keyword) {
+    return i < count && ends[i] - starts[i] == keyword.length()
+            && line.regionMatches(true, starts[i], keyword, 0, keyword.length());
+  }
+
+  private String word(int i) {
+    return line.substring(starts[i], ends[i]);
+  }
+
+  /**
+   * Helper that returns words from to to (exclusive) as they were written, spaces included.
+   */
+  private String text(int from, int to) {
+    if (from >= to) {
+      throw new IllegalArgumentException("Invalid formatting of input: " + line);
+    }
+    return line.substring(starts[from], ends[to - 1]);
+  }
+
+  private boolean isDate(int i) {
+    return i < count && ends[i] - starts[i] == 10 && hasDateAt(starts[i]);
+  }
+
+  /**
+   * Helper that checks whether word i has the shape of yyyy-MM-ddTHH:mm, with optional
+   * seconds and fraction.
+   */
+  private boolean isDateTime(int i) {
+    if (i >= count) {
+      return false;
+    }
+    int s = starts[i];
+    int length = ends[i] - s;
+    if (length < 16 || !hasDateAt(s) || line.charAt(s + 10) != 'T'
+            || !hasDigits(s + 11, 2) || line.charAt(s + 13) != ':' || !hasDigits(s + 14, 2)) {
+      return false;
+    }
+    return length == 16 || length >= 19 && line.charAt(s + 16) == ':' && hasDigits(s + 17, 2)
+            && (length == 19 || line.charAt(s + 19) == '.');
+  }
+
+  private boolean isDateOrDateTime(int i) {
+    return isDate(i) || isDateTime(i);
+  }
+
+  private boolean hasDateAt(int s) {
+    return hasDigits(s, 4) && line.charAt(s + 4) == '-' && hasDigits(s + 5, 2)
+            && line.charAt(s + 7) == '-' && hasDigits(s + 8, 2);
+  }
+
+  private boolean hasDigits(int s, int length) {
+    for (int i = s; i < s + length; i++) {
+      char c = line.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private LocalDate date(int i) {
+    int s = starts[i];
+    return LocalDate.of(number(s, 4), number(s + 5, 2), number(s + 8, 2));
+  }
+
+  /**
+   * Helper that reads word i, which isDateTime accepted.
+   */
+  private LocalDateTime dateTime(int i) {
+    int s = starts[i];
+    int length = ends[i] - s;
+    if (length > 19) {
+      // Fractions of a second are rare enough to leave to the library
+      return LocalDateTime.parse(word(i));
+    }
+    int second = length == 19 ? number(s + 17, 2) : 0;
+    return LocalDateTime.of(number(s, 4), number(s + 5, 2), number(s + 8, 2),
+            number(s + 11, 2), number(s + 14, 2), second);
+  }
+
+  private LocalDateTime dateTimeOrStartOfDay(int i) {
+    return isDate(i) ? date(i).atStartOfDay() : dateTime(i);
+  }
+
+  private int number(int s, int length) {
+    int value = 0;
+    for (int i = s; i < s + length; i++) {
+      value = value * 10 + line.charAt(i) - '0';
+    }
+    return value;
+  }
+}
@@ -0,0 +1,206 @@
+package calendar.controller;
+
+import calendar.model.CalendarManager;
+import calendar.model.Journal;
+import calendar.view.EventView;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the commands of many clients on a local socket, all working on the calendars of one
+ * CalendarManager.
+ * Each connection runs on a virtual thread of its own with a controller and a Session of its
+ * own, so clients choose calendars independently. A client sends commands one per line, in
+ * UTF-8, as in headless mode. After each line the server writes the command's output, or the
+ * error it failed with, followed by a line holding only EndOfResponse, so a client knows when
+ * the answer to a command is complete. Blank lines are answered with EndOfResponse alone. An
+ * exit command or the end of the input closes the connection.
+ * A command's output is collected in memory and only sent once the command is done, since
+ * queries write it while holding the lock of a calendar: a client that stops reading must not
+ * keep that lock held.
+ * With a journal, the answer to a command that changes the calendars is only sent once the
+ * change is on disk, so a client is never told of a change a crash can lose. Changes of
+ * different connections made at about the same time are forced to disk together.
+ */
+public class CommandServer implements Closeable {
+  /**
+   * Line that ends the answer to each command.
+   */
+  public static final String EndOfResponse = ".";
+
+  private static final int Backlog = 1024;
+  // Answers larger than this do not keep their memory for the next command of the connection
+  private static final int KeptAnswerSize = 1 << 16;
+
+  private final CalendarManager manager;
+  private final Journal journal;
+  private final ServerSocket socket;
+  private final ExecutorService connections;
+
+  /**
+   * Constructs a server listening on the loopback address.
+   *
+   * @param manager the calendars the clients work on
+   * @param port    port to listen on, or 0 for any free port
+   * @throws IOException if the socket cannot be opened
+   */
+  public CommandServer(CalendarManager manager, int port) throws IOException {
+    this(manager, port, null);
+  }
+
+  /**
+   * Constructs a server listening on the loopback address that answers changes once the
+   * journal holds them on disk.
+   *
+   * @param manager the calendars the clients work on
+   * @param port    port to listen on, or 0 for any free port
+   * @param journal the journal the manager logs its changes to, or null if there is none
+   * @throws IOException if the socket cannot be opened
+   */
+  public CommandServer(CalendarManager manager, int port, Journal journal) throws IOException {
+    this.manager = manager;
+    this.journal = journal;
+    this.socket = new ServerSocket(port, Backlog, InetAddress.getLoopbackAddress());
+    this.connections = Executors.newVirtualThreadPerTaskExecutor();
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return the port
+   */
+  public int getPort() {
+    return socket.getLocalPort();
+  }
+
+  /**
+   * Accepts connections until the server is closed, serving each on a virtual thread.
+   *
+   * @throws IOException if accepting a connection fails for another reason than the server
+   *                     being closed
+   */
+  public void serve() throws IOException {
+    while (true) {
+      Socket client;
+      try {
+        client = socket.accept();
+      } catch (SocketException e) {
+        if (socket.isClosed()) {
+          return;
+        }
+        throw e;
+      }
+      connections.execute(() -> handle(client));
+    }
+  }
+
+  /**
+   * Stops accepting connections and closes the ones being served.
+   *
+   * @throws IOException if the socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    socket.close();
+    connections.shutdownNow();
+  }
+
+  /**
+   * Helper that runs the commands of one connection until it ends.
+   */
+  private void handle(Socket client) {
+    try (client;
+         BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+                 StandardCharsets.UTF_8));
+         Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(),
+                 StandardCharsets.UTF_8))) {
+      StringWriter answer = new StringWriter();
+      EventView view = new EventView(answer);
+      EventController controller = new EventController(null, null, view, manager,
+              manager.newSession());
+      CommandParser parser = new CommandParser();
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (!line.isBlank() && !runLine(parser, controller, view, line)) {
+          break;
+        }
+        StringBuffer buffer = answer.getBuffer();
+        out.append(buffer);
+        buffer.setLength(0);
+        if (buffer.capacity() > KeptAnswerSize) {
+          buffer.trimToSize();
+        }
+        out.write(EndOfResponse);
+        out.write(System.lineSeparator());
+        out.flush();
+      }
+    } catch (IOException | UncheckedIOException e) {
+      // The client went away; there is no one left to answer
+    }
+  }
+
+  /**
+   * Helper that runs one line of a client, reporting a failure as an error.
+   *
+   * @return false if the line ends the connection
+   */
+  private boolean runLine(CommandParser parser, EventController controller, EventView view,
+                          String line) {
+    try {
+      Command command = parser.parse(line);
+      switch (command.getKind()) {
+        case EXIT:
+          return false;
+        case GUI:
+        case MOCK:
+          throw new IllegalArgumentException("Not available over the server: " + line);
+        default:
+          controller.execute(command);
+          if (journal != null && changesCalendars(command.getKind())) {
+            journal.sync();
+          }
+      }
+    } catch (IOException e) {
+      view.printError("Change not saved: " + e.getMessage());
+    } catch (RuntimeException e) {
+      view.printError(e.getMessage());
+    }
+    return true;
+  }
+
+  /**
+   * Helper that tells whether a command of the kind changes the calendars and so is logged.
+   * Choosing a calendar only changes the session of the connection.
+   */
+  private static boolean changesCalendars(Command.Kind kind) {
+    switch (kind) {
+      case CREATE_CALENDAR:
+      case CREATE_EVENT:
+      case EDIT_CALENDAR:
+      case EDIT_EVENT:
+      case EDIT_EVENTS:
+      case EDIT_SERIES:
+      case COPY_EVENT:
+      case COPY_EVENTS_ON:
+      case COPY_EVENTS_BETWEEN:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -4,13 +4,15 @@ import calendar.model.Calendar;
 import calendar.model.CalendarManager;
 import calendar.model.Event;
 import calendar.model.EventModel;
+import calendar.model.Session;
 import calendar.view.CalendarGUI;
 import calendar.view.EventView;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.HashSet;
 import java.util.Scanner;
 import java.util.Set;
@@ -24,7 +26,9 @@ public class EventController implements IEventController {
   protected EventModel model;
   final Readable in;
   final Appendable out;
-  public Calendar currentCalendar;
+  private final CommandParser parser = new CommandParser();
+  // Carries the calendar in use; the shared session of the manager unless given one
+  public Session session;
   public CalendarManager calendarManager;
 
   /**
@@ -32,11 +36,36 @@ public class EventController implements IEventController {
    **/
   public EventController(Readable in, Appendable out) {
     calendarManager = new CalendarManager();
+    session = calendarManager.getSharedSession();
     this.view = new EventView(System.out);
     this.in = in;
     this.out = out;
   }
 
+  /**
+   * Constructor for EventController that shows results in the given view.
+   **/
+  public EventController(Readable in, Appendable out, EventView view) {
+    this(in, out, view, new CalendarManager(), null);
+  }
+
+  /**
+   * Constructor for EventController that works on the calendars of a manager for one session,
+   * so several controllers can serve clients of the same calendars.
+   *
+   * @param view    view to show results in
+   * @param manager manager of the calendars
+   * @param session session of the manager, or null for its shared session
+   **/
+  public EventController(Readable in, Appendable out, EventView view, CalendarManager manager,
+                         Session session) {
+    this.calendarManager = manager;
+    this.session = session == null ? manager.getSharedSession() : session;
+    this.view = view;
+    this.in = in;
+    this.out = out;
+  }
+
   /**
    * Constructor for EventController(For testing purpose).
    **/
@@ -50,36 +79,59 @@ public class EventController implements IEventController {
   public void controllerHelper() {
     Scanner scan = new Scanner(this.in);
     while (true) {
-      String input = scan.nextLine();
-      if (input.equals("exit")) {
+      Command command = parser.parse(scan.nextLine());
+      if (command.getKind() == Command.Kind.EXIT) {
         break;
-      } else {
-        if (input.startsWith("create ")) {
-          if (input.contains("calendar")) {
-            this.createCalendar(input);
-          } else {
-            this.createEvent(input);
-          }
-        } else if (input.startsWith("edit ")) {
-          if (input.contains("calendar")) {
-            this.editCalendar(input);
-          } else {
-            this.editEvent(input);
-          }
-        } else if (input.startsWith("print ")) {
-          this.printEvent(input);
-        } else if (input.startsWith("use ")) {
-          this.useCalendar(input);
-        } else if (input.startsWith("copy ")) {
-          this.copyEvent(input);
-        } else if (input.isEmpty()) {
-          this.createGui();
-        } else if (input.startsWith("mock ")) {
-          this.mockView();
-        } else {
-          view.printError("Invalid command: " + input);
-        }
       }
+      execute(command);
+    }
+  }
+
+  /**
+   * Runs a parsed command.
+   *
+   * @param command the command to run
+   * @throws IllegalArgumentException if the command cannot be carried out
+   */
+  public void execute(Command command) {
+    switch (command.getKind()) {
+      case CREATE_CALENDAR:
+        createCalendar(command);
+        break;
+      case CREATE_EVENT:
+        createEvent(command);
+        break;
+      case EDIT_CALENDAR:
+        editCalendar(command);
+        break;
+      case EDIT_EVENT:
+      case EDIT_EVENTS:
+      case EDIT_SERIES:
+        editEvent(command);
+        break;
+      case PRINT_ON:
+      case PRINT_FROM:
+      case SHOW_STATUS:
+        view.printStreamed(output -> writeEvents(command, output));
+        break;
+      case USE_CALENDAR:
+        useCalendar(command);
+        break;
+      case COPY_EVENT:
+      case COPY_EVENTS_ON:
+      case COPY_EVENTS_BETWEEN:
+        copyEvent(command);
+        break;
+      case GUI:
+        this.createGui();
+        break;
+      case MOCK:
+        this.mockView();
+        break;
+      case EXIT:
+        break;
+      default:
+        view.printError("Invalid command: " + command.getInput());
     }
   }
 
@@ -126,78 +178,90 @@ public class EventController implements IEventController {
 
   @Override
   public Event editEvent(String input) {
-
-    String property = null;
-    String subject = null;
-    LocalDateTime startTime = null;
-    String newValue = null;
-
-    if (input.startsWith("edit event ")) {
-      String propAndSubject = input.substring("edit event ".length());
-      int indexOfSplit = propAndSubject.indexOf(" ");
-      property = propAndSubject.substring(0, indexOfSplit);
-      subject = propAndSubject.substring(indexOfSplit + 1, propAndSubject.indexOf(" from "));
-      String[] details = input.split("\\s*from\\s*|\\s*to\\s*"
-              + "|\\s*with\\s*");
-
-      startTime = LocalDateTime.parse(details[1]);
-      newValue = details[3];
-      return getActiveModel().editEvent(property, subject, startTime, newValue);
-
-    } else if (input.startsWith("edit events ")) {
-      String propAndSubject = input.substring("edit events ".length());
-      int indexOfSplit = propAndSubject.indexOf(" ");
-      property = propAndSubject.substring(0, indexOfSplit);
-      subject = propAndSubject.substring(indexOfSplit + 1, propAndSubject.indexOf(" from "));
-      String[] details = input.split("\\s*from\\s*|\\s*with\\s*");
-      startTime = LocalDateTime.parse(details[1]);
-      newValue = details[2];
-      return getActiveModel().editEvents(property, subject, startTime, newValue);
-
-    } else if (input.startsWith("edit series ")) {
-      String propAndSubject = input.substring("edit series ".length());
-      int indexOfSplit = propAndSubject.indexOf(" ");
-      property = propAndSubject.substring(0, indexOfSplit);
-      subject = propAndSubject.substring(indexOfSplit + 1, propAndSubject.indexOf(" from "));
-      String[] details = input.split("\\s*from\\s*|\\s*with\\s*");
-      startTime = LocalDateTime.parse(details[1]);
-      newValue = details[2];
-      return getActiveModel().editSeries(property, subject, startTime, newValue);
-    }
-    // Validate inputs
-    if (property == null) {
-      throw new IllegalArgumentException("Property to edit cannot be null");
-    }
-    if (subject == null) {
-      throw new IllegalArgumentException("Event subject cannot be null");
-    }
-    if (startTime == null) {
-      throw new IllegalArgumentException("Event start time cannot be null");
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.EDIT_EVENT
+            && command.getKind() != Command.Kind.EDIT_EVENTS
+            && command.getKind() != Command.Kind.EDIT_SERIES) {
+      throw new IllegalArgumentException("Invalid edit command: " + input);
     }
-    if (newValue == null) {
-      throw new IllegalArgumentException("New value cannot be null");
+    return editEvent(command);
+  }
+
+  /**
+   * Helper that runs an edit event, edit events or edit series command.
+   */
+  private Event editEvent(Command command) {
+    String property = command.getProperty();
+    String subject = command.getSubject();
+    LocalDateTime startTime = command.getStartDateTime();
+    String newValue = command.getValue();
+    switch (command.getKind()) {
+      case EDIT_EVENT:
+        return getActiveModel().editEvent(property, subject, startTime, newValue);
+      case EDIT_EVENTS:
+        return getActiveModel().editEvents(property, subject, startTime, newValue);
+      default:
+        return getActiveModel().editSeries(property, subject, startTime, newValue);
     }
-    return null;
   }
 
   @Override
   public String printEvent(String input) {
-    if (input.startsWith("print events on ")) {
-      LocalDate date = LocalDate.parse(input.substring
-              ("print events on ".length()));
-      return view.printEvent(getActiveModel().printDate(date));
-    } else if (input.startsWith("print events from ")) {
-      int fromIndex = "print events from ".length();
-      int toIndex = input.indexOf(" to ");
-      LocalDateTime startTime = LocalDateTime.parse(input.substring(fromIndex, toIndex));
-      LocalDateTime endTime = LocalDateTime.parse(input.substring(toIndex + 4));
-      return view.printEvent(getActiveModel().printDateTimeString(startTime, endTime));
-    } else if (input.startsWith("show status on ")) {
-      LocalDateTime dateTime = LocalDateTime.parse(input.substring("show status on ".length()));
-      return view.printEvent(getActiveModel().printStatus("show status on ", dateTime));
-    } else {
+    Command command = printCommand(input);
+    StringBuilder output = new StringBuilder();
+    try {
+      writeEvents(command, output);
+    } catch (IOException e) {
+      // A StringBuilder never fails to append
+      throw new UncheckedIOException(e);
+    }
+    return view.printEvent(output.toString());
+  }
+
+  /**
+   * Runs a print command like printEvent, but streams each matching event to the view as it
+   * is found instead of building the whole output first.
+   *
+   * @param input the print command
+   * @throws IllegalArgumentException if the command is not a print command
+   */
+  public void streamEvent(String input) {
+    // Parsed before anything is printed, so bad input fails like printEvent does
+    Command command = printCommand(input);
+    view.printStreamed(output -> writeEvents(command, output));
+  }
+
+  /**
+   * Helper that parses a print or show status command.
+   */
+  private Command printCommand(String input) {
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.PRINT_ON && command.getKind() != Command.Kind.PRINT_FROM
+            && command.getKind() != Command.Kind.SHOW_STATUS) {
       throw new IllegalArgumentException("Invalid formatting of input");
     }
+    return command;
+  }
+
+  /**
+   * Helper that writes the model's output for a print command.
+   */
+  private void writeEvents(Command command, Appendable output) throws IOException {
+    switch (command.getKind()) {
+      case PRINT_ON:
+        getActiveModel().printDate(command.getDate(), output);
+        break;
+      case PRINT_FROM:
+        getActiveModel().printDateTime(command.getStartDateTime(), command.getEndDateTime(),
+                output);
+        break;
+      case SHOW_STATUS:
+        output.append(getActiveModel().printStatus("show status on ",
+                command.getStartDateTime()));
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid formatting of input");
+    }
   }
 
   /**
@@ -207,143 +271,35 @@ public class EventController implements IEventController {
    * @throws IllegalArgumentException if the input format is invalid
    */
   public String createEvent(String input) {
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.CREATE_EVENT) {
+      throw new IllegalArgumentException("Invalid create event command: " + input);
+    }
+    return createEvent(command);
+  }
 
-    // Check if this is an "until" format event
-    if (input.contains(" until ")) {
-      // Find index for repeats
-      int repeatsIndex = input.indexOf(" repeats ");
-      // Find the last occurrence of either "on" or "from" before repeats
-      String beforeRepeats = input.substring(0, repeatsIndex);
-      int lastOnIndex = beforeRepeats.lastIndexOf(" on ");
-      int lastFromIndex = beforeRepeats.lastIndexOf(" from ");
-      int lastIndex = Math.max(lastOnIndex, lastFromIndex);
-
-      if (lastIndex == -1) {
-        throw new IllegalArgumentException("Invalid input format: missing 'on' or 'from' keyword");
-      }
-
-      // Extract subject by cutting off before on/from, and after create event
-      String subject = input.substring("create event ".length(), lastIndex);
-
-      // Extract start date and time
-      int dateStart;
-      if (lastIndex == lastOnIndex) {
-        dateStart = lastIndex + 4;  // Space + on + Space
-      } else {
-        dateStart = lastIndex + 6;  // Space + from + Space
-      }
-
-      // Start searching of "to" from dataStart
-      int toIndex = input.indexOf(" to ", dateStart);
-      if (toIndex == -1) {         // If no "to" is found, treat as all-day event
-        String startDate = input.substring(dateStart, repeatsIndex);
-        LocalDateTime startDateTime = LocalDateTime.parse(startDate + "T08:00");
-        LocalDateTime endDateTime = LocalDateTime.parse(startDate + "T17:00");
-
-        // Extract weekdays and until date
-        int weekdaysStart = repeatsIndex + 9;  // After " repeats "
-        // Find index of "until"
-        int weekdaysEnd = input.indexOf(" until ");
-        String weekdays = input.substring(weekdaysStart, weekdaysEnd);
-        String untilDate = input.substring(input.indexOf(" until ") + 7);
-
-        // Calculate days between
-        LocalDateTime untilDateTime = LocalDateTime.parse(untilDate + "T08:00");
-        int daysBetween = java.time.Period.between(
-                startDateTime.toLocalDate(),
-                untilDateTime.toLocalDate()
-        ).getDays();
-
-        // Create the initial event
-        Event.EventBuilder builder = Event.getBuilder()
-                .setSubject(subject)
-                .setStartDateTime(startDateTime)
-                .setEndDateTime(endDateTime)
-                // Separate weekDays
-                .setWeekDays(weekdays.split("\\s+"))
-                .setRepeatCount(daysBetween);
-
-        // Create the event
-        return createEventHelper(builder).getSubject();
+  /**
+   * Helper that runs a create event command.
+   */
+  private String createEvent(Command command) {
+    Event.EventBuilder builder = Event.getBuilder()
+            .setSubject(command.getSubject())
+            .setStartDateTime(command.getStartDateTime())
+            .setEndDateTime(command.getEndDateTime());
+
+    String[] weekDays = command.getWeekDays();
+    if (weekDays != null) {
+      Set<DayOfWeek> daysToRepeat = mapLettersToDays(weekDays);
+      builder.setWeekDays(weekDays);
+      if (command.getUntilDateTime() != null) {
+        builder.setRepeatCount(countMatchingDays(command.getStartDateTime(),
+                command.getUntilDateTime(), daysToRepeat));
       } else {
-        String startDateTimeStr = input.substring(dateStart, toIndex);
-        String endDateTimeStr = input.substring(toIndex + 4, repeatsIndex);
-
-        // Parse the actual start and end times
-        LocalDateTime startDateTime = LocalDateTime.parse(startDateTimeStr);
-        LocalDateTime endDateTime = LocalDateTime.parse(endDateTimeStr);
-
-        // Extract weekdays and until date
-        int weekdaysStart = repeatsIndex + 9;  // After " repeats "
-        int weekdaysEnd = input.indexOf(" until ");
-        String weekdays = input.substring(weekdaysStart, weekdaysEnd);
-        String untilDate = input.substring(input.indexOf(" until ") + 7);
-
-        // Calculate days between
-        LocalDateTime untilDateTime = LocalDateTime.parse(untilDate);
-        int daysBetween = java.time.Period.between(
-                startDateTime.toLocalDate(),
-                untilDateTime.toLocalDate()
-        ).getDays();
-
-        Set<DayOfWeek> daysToCount = mapLettersToDays(weekdays.split("\\s+"));
-        int count = countMatchingDays(startDateTime, untilDateTime, daysToCount);
-
-        // Create the event with actual times
-        Event.EventBuilder builder = Event.getBuilder()
-                .setSubject(subject)
-                .setStartDateTime(startDateTime)
-                .setEndDateTime(endDateTime)
-                // Separate weekDays
-                .setWeekDays(weekdays.split("\\s+"))
-                .setRepeatCount(count);
-
-        // Create the event
-        return createEventHelper(builder).getSubject();
+        // "for N times" repeats N times on each of the weekdays
+        builder.setRepeatCount(command.getTimes() * daysToRepeat.size());
       }
     }
 
-    // Original format handling
-    String[] userDetails = input.split("\\s*create event\\s*|\\s*from\\s*|\\s*to\\s*"
-            + "|\\s*repeats\\s*|\\s*for\\s*|\\s*times\\s*");
-
-    String userSubject = userDetails[1];
-    String userStartTime = userDetails[2];
-    LocalDate tempEndTime = LocalDateTime.parse(userStartTime).toLocalDate();
-    String userEndTime = tempEndTime.atTime(17, 0).toString();
-    if (userDetails.length == 4) {
-      userEndTime = userDetails[3];
-    }
-    int userRepeat = 0;
-    String userStatus = null;
-    String userLocation = null;
-
-
-    try {
-      String weekdays = userDetails[4];
-      Set<DayOfWeek> daysToRepeat = mapLettersToDays(weekdays.split("\\s+"));
-      userRepeat = Integer.valueOf(userDetails[5]) * daysToRepeat.size();
-    } catch (Exception e) {
-      userRepeat = 0;
-    }
-
-    try {
-      userStatus = userDetails[5];
-    } catch (Exception e) {
-      userStatus = null;
-    }
-
-    try {
-      userLocation = userDetails[6];
-    } catch (Exception e) {
-      userLocation = null;
-    }
-    Event.EventBuilder builder = Event.getBuilder()
-            .setSubject(userSubject)
-            .setStartDateTime(LocalDateTime.parse(userStartTime))
-            .setEndDateTime(LocalDateTime.parse(userEndTime))
-            .setRepeatCount(userRepeat);
-
     return createEventHelper(builder).getSubject();
   }
 
@@ -354,18 +310,15 @@ public class EventController implements IEventController {
    * @throws IllegalArgumentException if the input format is invalid
    */
   public Calendar createCalendar(String input) {
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.CREATE_CALENDAR) {
+      throw new IllegalArgumentException("Invalid create calendar command: " + input);
+    }
+    return createCalendar(command);
+  }
 
-    // Remove "create calendar "
-    String remaining = input.substring("create calendar ".length());
-
-    // Find the last space to separate timezone from calendar name
-    int lastSpaceIndex = remaining.lastIndexOf(" ");
-
-    ZoneId userTimeZone = ZoneId.of(remaining.
-            substring(lastSpaceIndex + 1));
-    String userCalendarName = remaining.substring(0, lastSpaceIndex);
-
-    return calendarManager.createCalendar(userCalendarName, userTimeZone);
+  private Calendar createCalendar(Command command) {
+    return calendarManager.createCalendar(command.getCalendarName(), command.getTimezone());
   }
 
   /**
@@ -375,49 +328,46 @@ public class EventController implements IEventController {
    * @throws IllegalArgumentException if the input format is invalid
    */
   public Calendar editCalendar(String input) {
-
-    // Remove "edit calendar "
-    String remaining = input.substring("edit calendar ".length());
-
-    // If editing field timezone
-    if (input.contains("timezone")) {
-      int lastSpaceIndex = remaining.lastIndexOf(" ");
-      String newtimeZone = remaining.substring(lastSpaceIndex + 1);
-      String userCalendarName = remaining.substring(0, lastSpaceIndex);
-      return calendarManager.editCalendar(userCalendarName, "timezone", newtimeZone);
-    } else if (input.contains("name")) {
-      String[] details = remaining.split("\\s*name\\s*");
-      String userCalendarName = details[0];
-      String newValue = details[1];
-      return calendarManager.editCalendar(userCalendarName, "name", newValue);
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.EDIT_CALENDAR) {
+      throw new IllegalArgumentException("Invalid edit calendar command: " + input);
     }
-    return null;
+    return editCalendar(command);
+  }
+
+  private Calendar editCalendar(Command command) {
+    return calendarManager.editCalendar(command.getCalendarName(), command.getProperty(),
+            command.getValue());
   }
 
   public Calendar useCalendar(String input) {
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.USE_CALENDAR) {
+      throw new IllegalArgumentException("Invalid use command: " + input);
+    }
+    return useCalendar(command);
+  }
 
-    String calendarName = input.substring("use calendar ".length());
-    currentCalendar = calendarManager.useCalendar(calendarName);
+  private Calendar useCalendar(Command command) {
+    Calendar calendar = calendarManager.useCalendar(session, command.getCalendarName());
 
-    if (currentCalendar == null) {
+    if (calendar == null) {
       throw new IllegalArgumentException("Calendar not found");
     }
 
-    return currentCalendar;
+    return calendar;
   }
 
   private EventModel getActiveModel() {
-    if (currentCalendar == null) {
-      throw new IllegalStateException("No calendar is currently in use.");
-    }
-    return currentCalendar.getEventModel();
+    return getCurrentCalendar().getEventModel();
   }
 
   public Calendar getCurrentCalendar() {
-    if (currentCalendar == null) {
+    Calendar calendar = session == null ? null : session.getCalendarInUse();
+    if (calendar == null) {
       throw new IllegalStateException("No calendar is currently in use.");
     }
-    return currentCalendar;
+    return calendar;
   }
 
   /**
@@ -427,46 +377,32 @@ public class EventController implements IEventController {
    * @throws IllegalArgumentException if the input format is invalid
    */
   public void copyEvent(String input) {
-    if (input.startsWith("copy event ")) {
-      // Format: copy event [eventName] from [startDate] to [calendarName] at [newStartDate]
-      String[] parts = input.split("\\s*from\\s*|\\s*to\\s*|\\s*at\\s*");
-      if (parts.length != 4) {
-        throw new IllegalArgumentException("Invalid format for copy event command");
-      }
-      String eventName = parts[0].substring("copy event ".length());
-      String startDate = parts[1];
-      String calendarName = parts[2];
-      String newStartDate = parts[3];
-
-      calendarManager.copyEvent(eventName, startDate, calendarName, newStartDate);
-
-    } else if (input.startsWith("copy events on ")) {
-      // Format: copy events on [startDate] to [calendarName] at [newStartDate]
-      String[] parts = input.split("\\s*on\\s*|\\s*to\\s*|\\s*at\\s*");
-      if (parts.length != 4) {
-        throw new IllegalArgumentException("Invalid format for copy events on command");
-      }
-      String startDate = parts[1];
-      String calendarName = parts[2];
-      String newStartDate = parts[3];
-
-      calendarManager.copyEventsOn(startDate, calendarName, newStartDate);
-
-    } else if (input.startsWith("copy events between ")) {
-      // Format: copy events between [startDate] and [endDate] to [calendarName] at [newStartDate]
-      String[] parts = input.split("\\s*between\\s*|\\s*and\\s*|\\s*to\\s*|\\s*at\\s*");
-      if (parts.length != 5) {
-        throw new IllegalArgumentException("Invalid format for copy events between command");
-      }
-      String startDate = parts[1];
-      String endDate = parts[2];
-      String calendarName = parts[3];
-      String newStartDate = parts[4];
-
-      calendarManager.copyEventsBetween(startDate, endDate, calendarName, newStartDate);
-    } else {
+    Command command = parser.parse(input);
+    if (command.getKind() != Command.Kind.COPY_EVENT
+            && command.getKind() != Command.Kind.COPY_EVENTS_ON
+            && command.getKind() != Command.Kind.COPY_EVENTS_BETWEEN) {
       throw new IllegalArgumentException("Invalid copy command format");
     }
+    copyEvent(command);
+  }
+
+  /**
+   * Helper that runs a copy event, copy events on or copy events between command.
+   */
+  private void copyEvent(Command command) {
+    switch (command.getKind()) {
+      case COPY_EVENT:
+        calendarManager.copyEvent(session, command.getSubject(), command.getStartDateTime(),
+                command.getCalendarName(), command.getTargetDateTime());
+        break;
+      case COPY_EVENTS_ON:
+        calendarManager.copyEventsOn(session, command.getStartDateTime(),
+                command.getCalendarName(), command.getTargetDateTime());
+        break;
+      default:
+        calendarManager.copyEventsBetween(session, command.getStartDateTime(),
+                command.getEndDateTime(), command.getCalendarName(), command.getTargetDateTime());
+    }
   }
 
   protected Set<DayOfWeek> mapLettersToDays(String[] dayLetters) {
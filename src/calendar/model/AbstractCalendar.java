@@ -24,6 +24,19 @@ public abstract class AbstractCalendar {
     this.eventModel = new EventModel();
   }
 
+  /**
+   * Constructs a new AbstractCalendar holding an existing event model.
+   *
+   * @param name       name of the calendar
+   * @param timezone   timezone format
+   * @param eventModel events of the calendar
+   */
+  protected AbstractCalendar(String name, ZoneId timezone, EventModel eventModel) {
+    this.name = name;
+    this.timezone = timezone;
+    this.eventModel = eventModel;
+  }
+
   /**
    * Gets the name of the calendar.
    *
@@ -0,0 +1,244 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Occupancy bitmaps of a calendar at one minute granularity, one per day.
+ * Each day holds two bitmaps of 1440 bits: minutes entirely covered by some event, and minutes
+ * touched by some event at all. A status probe is then a single bit test, except in a minute an
+ * event only partly covers, where the caller has to check the events themselves.
+ * Days are built on first use from the events the loader supplies and kept in a bounded cache.
+ * Added events are set in copies of the cached days; days an event is removed from are dropped
+ * and built again when next probed.
+ * Probes run under the model's read lock, side by side: a cached day is read from a concurrent
+ * map without locking, and a missing one is built outside any lock, so two probes may build the
+ * same day and one of them is kept. The bitmaps of a cached day are never changed. Changes run
+ * under the model's write lock, while no probe runs. When the cache is full, an eighth of the
+ * days, whichever the map lists first, is dropped.
+ */
+public class BusyTimeIndex {
+  /**
+   * Status of an instant that is covered by an event.
+   */
+  public static final int Busy = 1;
+  /**
+   * Status of an instant no event covers.
+   */
+  public static final int Available = 0;
+  /**
+   * Status of an instant in a minute that an event only partly covers.
+   */
+  public static final int Unknown = -1;
+
+  private static final int MinutesPerDay = 24 * 60;
+  private static final long SecondsPerDay = MinutesPerDay * 60L;
+  private static final int WordsPerBitmap = (MinutesPerDay + 63) / 64;
+  private static final int MaxCachedDays = 4096;
+
+  private final BiConsumer<LocalDate, List<Event>> dayLoader;
+  private final ConcurrentHashMap<LocalDate, long[]> days;
+
+  /**
+   * Constructs an empty index.
+   *
+   * @param dayLoader adds to the list every event that overlaps the given day, including
+   *                  occurrences of series
+   */
+  public BusyTimeIndex(BiConsumer<LocalDate, List<Event>> dayLoader) {
+    this.dayLoader = dayLoader;
+    this.days = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Looks up whether the instant is covered by an event, building its day if needed.
+   *
+   * @param dateTime instant to check
+   * @return Busy, Available or Unknown
+   */
+  public int status(LocalDateTime dateTime) {
+    LocalDate date = dateTime.toLocalDate();
+    long[] bits = days.get(date);
+    if (bits == null) {
+      bits = build(date);
+      long[] built = days.putIfAbsent(date, bits);
+      if (built != null) {
+        bits = built;
+      } else if (days.size() > MaxCachedDays) {
+        evict();
+      }
+    }
+    int minute = dateTime.getHour() * 60 + dateTime.getMinute();
+    long mask = 1L << minute;
+    if ((bits[minute >>> 6] & mask) != 0) {
+      return Busy;
+    }
+    if ((bits[WordsPerBitmap + (minute >>> 6)] & mask) == 0) {
+      return Available;
+    }
+    return Unknown;
+  }
+
+  /**
+   * Sets the minutes of a new event in the days that are cached.
+   *
+   * @param event event that was added
+   */
+  public void add(Event event) {
+    long firstDay = Math.floorDiv(event.startSecond(), SecondsPerDay);
+    long lastDay = Math.floorDiv(event.endSecond(), SecondsPerDay);
+    if (days.size() < lastDay - firstDay + 1) {
+      for (Map.Entry<LocalDate, long[]> entry : days.entrySet()) {
+        long day = entry.getKey().toEpochDay();
+        if (day >= firstDay && day <= lastDay) {
+          entry.setValue(marked(entry.getValue(), day, event));
+        }
+      }
+    } else {
+      for (long day = firstDay; day <= lastDay; day++) {
+        long epochDay = day;
+        days.computeIfPresent(LocalDate.ofEpochDay(day),
+                (date, bits) -> marked(bits, epochDay, event));
+      }
+    }
+  }
+
+  /**
+   * Drops the cached days an event or series between the two instants touches, after it was
+   * removed or changed.
+   *
+   * @param start start of the first affected event
+   * @param end   end of the last affected event
+   */
+  public void invalidate(LocalDateTime start, LocalDateTime end) {
+    if (days.size() < daysBetween(start, end)) {
+      Iterator<LocalDate> dates = days.keySet().iterator();
+      while (dates.hasNext()) {
+        if (spans(start, end, dates.next())) {
+          dates.remove();
+        }
+      }
+    } else {
+      for (LocalDate date = start.toLocalDate(); !date.isAfter(end.toLocalDate());
+           date = date.plusDays(1)) {
+        days.remove(date);
+      }
+    }
+  }
+
+  /**
+   * Drops every cached day.
+   */
+  public void clear() {
+    days.clear();
+  }
+
+  /**
+   * Helper that builds the bitmaps of a day from the events overlapping it.
+   */
+  private long[] build(LocalDate date) {
+    List<Event> events = new ArrayList<>();
+    dayLoader.accept(date, events);
+    long[] bits = new long[2 * WordsPerBitmap];
+    long day = date.toEpochDay();
+    for (Event event : events) {
+      mark(bits, day, event);
+    }
+    return bits;
+  }
+
+  /**
+   * Helper that drops an eighth of the cached days, so the cache is not trimmed on every build
+   * once it is full.
+   */
+  private void evict() {
+    int excess = days.size() - (MaxCachedDays - MaxCachedDays / 8);
+    Iterator<LocalDate> dates = days.keySet().iterator();
+    while (excess-- > 0 && dates.hasNext()) {
+      dates.next();
+      dates.remove();
+    }
+  }
+
+  /**
+   * Helper that returns a copy of a day's bitmaps with the minutes of the event set.
+   */
+  private static long[] marked(long[] bits, long day, Event event) {
+    long[] copy = Arrays.copyOf(bits, bits.length);
+    mark(copy, day, event);
+    return copy;
+  }
+
+  /**
+   * Helper that sets the minutes of the given epoch day covered and touched by the event,
+   * working on the seconds the event stores.
+   */
+  private static void mark(long[] bits, long day, Event event) {
+    long dayStart = day * SecondsPerDay;
+    long start = event.startSecond();
+    long end = event.endSecond();
+    if (end < dayStart || start >= dayStart + SecondsPerDay) {
+      return;
+    }
+    int firstTouched;
+    int firstFull;
+    if (start < dayStart) {
+      firstTouched = 0;
+      firstFull = 0;
+    } else {
+      int secondOfDay = (int) (start - dayStart);
+      firstTouched = secondOfDay / 60;
+      boolean onMinute = secondOfDay % 60 == 0 && event.startNano() == 0;
+      firstFull = onMinute ? firstTouched : firstTouched + 1;
+    }
+    int lastTouched;
+    int lastFull;
+    if (end >= dayStart + SecondsPerDay) {
+      lastTouched = MinutesPerDay - 1;
+      lastFull = MinutesPerDay - 1;
+    } else {
+      // The end is included, so an event ending on a minute still touches that minute
+      lastTouched = (int) (end - dayStart) / 60;
+      lastFull = lastTouched - 1;
+    }
+    setRange(bits, WordsPerBitmap, firstTouched, lastTouched);
+    setRange(bits, 0, firstFull, lastFull);
+  }
+
+  /**
+   * Helper that sets the bits first to last, inclusive, of the bitmap starting at offset.
+   */
+  private static void setRange(long[] bits, int offset, int first, int last) {
+    if (first > last) {
+      return;
+    }
+    int firstWord = first >>> 6;
+    int lastWord = last >>> 6;
+    long firstMask = -1L << first;
+    long lastMask = -1L >>> (63 - (last & 63));
+    if (firstWord == lastWord) {
+      bits[offset + firstWord] |= firstMask & lastMask;
+      return;
+    }
+    bits[offset + firstWord] |= firstMask;
+    for (int word = firstWord + 1; word < lastWord; word++) {
+      bits[offset + word] = -1L;
+    }
+    bits[offset + lastWord] |= lastMask;
+  }
+
+  private static boolean spans(LocalDateTime start, LocalDateTime end, LocalDate date) {
+    return !date.isBefore(start.toLocalDate()) && !date.isAfter(end.toLocalDate());
+  }
+
+  private static long daysBetween(LocalDateTime start, LocalDateTime end) {
+    return end.toLocalDate().toEpochDay() - start.toLocalDate().toEpochDay() + 1;
+  }
+}
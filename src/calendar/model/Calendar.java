@@ -15,7 +15,7 @@ public class Calendar extends AbstractCalendar implements ICalendar {
    * @param eventModel new model
    */
   public Calendar(String name, ZoneId timezone, EventModel eventModel) {
-    super(name, timezone);
+    super(name, timezone, eventModel);
   }
 
   /**
@@ -1,27 +1,77 @@
 package calendar.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the calendars of the system and the sessions using them.
+ * Calendars are listed in the order they were created; a map from name to position in that
+ * list resolves names in constant time.
+ * Each Session has a calendar in use of its own. The methods without a session act on the
+ * shared session, whose calendar in use is the one snapshots and the journal record.
+ * Changes to the set of calendars and to the calendar the shared session uses are
+ * synchronized; lookups of calendars and changes to other sessions take no lock.
+ * The copy commands hold the read lock of the source calendar's event model and the write lock
+ * of the target's for the whole copy, taken in the order the calendars were created, so a copy
+ * is not mixed with other changes to either calendar, copies between unrelated calendars run
+ * side by side and two copies in opposite directions cannot deadlock.
+ */
 public class CalendarManager {
-  private List<Calendar> seriesOfCalendar = new ArrayList<>();
-  private Calendar calendarInUse;
+  /**
+   * Work done while every calendar is locked, which may read or write files.
+   */
+  @FunctionalInterface
+  interface LockedAction {
+    /**
+     * Does the work.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    void run() throws IOException;
+  }
+
+  // Calendars change rarely, so lookups read them without locking
+  private final List<Calendar> seriesOfCalendar = new CopyOnWriteArrayList<>();
+  private final Map<String, Integer> calendarIndex = new ConcurrentHashMap<>();
+  // Position of each event model, which stays with a calendar through edits
+  private final Map<EventModel, Integer> modelIndex = new ConcurrentHashMap<>();
+  private final Session sharedSession = new Session(seriesOfCalendar);
+  private Journal journal;
+  private boolean columnar;
 
   /**
    * Creates a new calendar.
    *
    * @param userCalendarName Name of calendar
    * @param userTimeZone     TimeZone of calendar
-   * @throws IllegalArgumentException if duplicate events
+   * @throws IllegalArgumentException if a calendar with the name already exists
    */
-  public Calendar createCalendar(String userCalendarName, ZoneId userTimeZone) {
+  public synchronized Calendar createCalendar(String userCalendarName, ZoneId userTimeZone) {
+    if (calendarIndex.containsKey(userCalendarName)) {
+      throw new IllegalArgumentException("Calendar already exists: " + userCalendarName);
+    }
     Calendar calendar = new Calendar(userCalendarName, userTimeZone, new EventModel());
+    calendar.getEventModel().setColumnar(columnar);
+    // Listed before its name resolves, so lookups without a lock never miss it
+    modelIndex.put(calendar.getEventModel(), seriesOfCalendar.size());
     seriesOfCalendar.add(calendar);
+    calendarIndex.put(userCalendarName, seriesOfCalendar.size() - 1);
+    if (journal != null) {
+      journal.createCalendar(userCalendarName, userTimeZone);
+      calendar.getEventModel().setJournal(journal, seriesOfCalendar.size() - 1);
+    }
     return calendar;
   }
 
@@ -32,28 +82,33 @@ public class CalendarManager {
    * @param property subject of event
    * @param newValue value of change applied to field
    * @throws IllegalArgumentException if invalid property are given
-   * @throws IllegalArgumentException if event is not found
+   * @throws IllegalArgumentException if the calendar is not found
+   * @throws IllegalArgumentException if the new name is already taken
    */
-  public Calendar editCalendar(String name, String property, String newValue) {
-    // Create a new calendar object with the existing event list
+  public synchronized Calendar editCalendar(String name, String property, String newValue) {
     int idx = findAllCalendarInSeries(name);
-    Calendar calendar = new Calendar(name,
-            seriesOfCalendar.get(idx).getTimezone(), seriesOfCalendar.get(idx).getEventModel());
+    Calendar calendar = seriesOfCalendar.get(idx);
 
-    // If editing name, create a new calendar with the new name
+    // Both edits create a new calendar object that keeps the existing event model
+    Calendar newCalendar;
     if (property.equalsIgnoreCase("name")) {
-      Calendar newCalendar = new Calendar(newValue, calendar.getTimezone(),
-              seriesOfCalendar.get(idx).getEventModel());
-      return seriesOfCalendar.set(idx, newCalendar);
+      if (!newValue.equals(name) && calendarIndex.containsKey(newValue)) {
+        throw new IllegalArgumentException("Calendar already exists: " + newValue);
+      }
+      newCalendar = new Calendar(newValue, calendar.getTimezone(), calendar.getEventModel());
+      calendarIndex.remove(name);
+      calendarIndex.put(newValue, idx);
     } else if (property.equalsIgnoreCase("timezone")) {
       ZoneId newTimezone = ZoneId.of(newValue);
-      // If editing timezone, create a new calendar with the new timezone
-      Calendar newCalendar = new Calendar(calendar.getName(), newTimezone,
-              seriesOfCalendar.get(idx).getEventModel());
-      return seriesOfCalendar.set(idx, newCalendar);
+      newCalendar = new Calendar(name, newTimezone, calendar.getEventModel());
+    } else {
+      return null;
     }
-    return null;
-
+    seriesOfCalendar.set(idx, newCalendar);
+    if (journal != null) {
+      journal.editCalendar(name, property, newValue);
+    }
+    return newCalendar;
   }
 
   /**
@@ -65,21 +120,56 @@ public class CalendarManager {
    * @param newStartDateTime The new start date/time for the copied event
    */
   public void copyEvent(String eventName, String startDateTime, String targetCalendarName, String newStartDateTime) {
+    copyEvent(eventName, LocalDateTime.parse(startDateTime), targetCalendarName,
+            LocalDateTime.parse(newStartDateTime));
+  }
+
+  /**
+   * Copy specific event to the given DateTime in the given Calendar.
+   *
+   * @param eventName          The name of the event to copy
+   * @param eventStartTime     The start date/time of the event to copy
+   * @param targetCalendarName The name of the target calendar
+   * @param newStartTime       The new start date/time for the copied event
+   */
+  public void copyEvent(String eventName, LocalDateTime eventStartTime, String targetCalendarName,
+                        LocalDateTime newStartTime) {
+    copyEvent(sharedSession, eventName, eventStartTime, targetCalendarName, newStartTime);
+  }
+
+  /**
+   * Copy specific event of the calendar a session uses to the given DateTime in the given
+   * Calendar.
+   *
+   * @param session            the session whose calendar in use holds the event
+   * @param eventName          The name of the event to copy
+   * @param eventStartTime     The start date/time of the event to copy
+   * @param targetCalendarName The name of the target calendar
+   * @param newStartTime       The new start date/time for the copied event
+   * @throws IllegalStateException if the session uses no calendar
+   */
+  public void copyEvent(Session session, String eventName, LocalDateTime eventStartTime,
+                        String targetCalendarName, LocalDateTime newStartTime) {
     // Get source and target calendars
-    Calendar sourceCalendar = calendarInUse;
+    Calendar sourceCalendar = calendarInUse(session);
     Calendar targetCalendar = seriesOfCalendar.get(findAllCalendarInSeries(targetCalendarName));
+    lockForCopy(sourceCalendar, targetCalendar, () -> copyEvent(eventName, eventStartTime,
+            sourceCalendar, targetCalendar, newStartTime));
+  }
 
-    // Parse the date/time strings
-    LocalDateTime eventStartTime = LocalDateTime.parse(startDateTime);
-    LocalDateTime newStartTime = LocalDateTime.parse(newStartDateTime);
-
+  /**
+   * Helper that copies an event once the calendars are locked.
+   */
+  private void copyEvent(String eventName, LocalDateTime eventStartTime, Calendar sourceCalendar,
+                         Calendar targetCalendar, LocalDateTime newStartTime) {
     // Get source and target calendar timezones
     ZoneId sourceZone = sourceCalendar.getTimezone();
     ZoneId targetZone = targetCalendar.getTimezone();
 
-    // Find the event in source calendar using startTime
+    // Find the event in source calendar using startTime, among the events around that time
     Event event = null;
-    for (Event e : sourceCalendar.getEventModel().getEvents()) {
+    for (Event e : sourceCalendar.getEventModel().eventsOverlapping(eventStartTime,
+            eventStartTime)) {
       if (e.getSubject().equals(eventName) && e.getStartDateTime().equals(eventStartTime)) {
         event = e;
         break;
@@ -136,17 +226,56 @@ public class CalendarManager {
    *                                  due to uniquely identify between events
    */
   public void copyEventsOn(String startDate, String calendarName, String newStartDate) {
+    copyEventsOn(LocalDateTime.parse(startDate), calendarName, LocalDateTime.parse(newStartDate));
+  }
+
+  /**
+   * Copy all events that occur on the day of eventDateTime to the given Calendar.
+   *
+   * @param eventDateTime    a time on the day to copy
+   * @param calendarName     name of the calendar
+   * @param newEventDateTime a time on the day to copy the events to
+   * @throws IllegalArgumentException if the calendar does not exist
+   */
+  public void copyEventsOn(LocalDateTime eventDateTime, String calendarName,
+                           LocalDateTime newEventDateTime) {
+    copyEventsOn(sharedSession, eventDateTime, calendarName, newEventDateTime);
+  }
+
+  /**
+   * Copy all events that occur on the day of eventDateTime in the calendar a session uses to
+   * the given Calendar.
+   *
+   * @param session          the session whose calendar in use holds the events
+   * @param eventDateTime    a time on the day to copy
+   * @param calendarName     name of the calendar
+   * @param newEventDateTime a time on the day to copy the events to
+   * @throws IllegalArgumentException if the calendar does not exist
+   * @throws IllegalStateException    if the session uses no calendar
+   */
+  public void copyEventsOn(Session session, LocalDateTime eventDateTime, String calendarName,
+                           LocalDateTime newEventDateTime) {
+    Calendar sourceCalendar = calendarInUse(session);
+    Calendar targetCalendar = seriesOfCalendar.get(findAllCalendarInSeries(calendarName));
+    lockForCopy(sourceCalendar, targetCalendar,
+            () -> copyEventsOn(eventDateTime, sourceCalendar, targetCalendar, newEventDateTime));
+  }
+
+  /**
+   * Helper that copies the events of a day once the calendars are locked.
+   */
+  private void copyEventsOn(LocalDateTime eventDateTime, Calendar sourceCalendar,
+                            Calendar targetCalendar, LocalDateTime newEventDateTime) {
     List<Event> copiedEvents = new ArrayList<>();
 
-    Calendar sourceCalendar = calendarInUse;
     EventModel sourceModel = sourceCalendar.getEventModel();
-    List<Event> sourceEvents = sourceModel.getEvents();
-    LocalDateTime eventDateTime = LocalDateTime.parse(startDate);
-    LocalDateTime newEventDateTime = LocalDateTime.parse(newStartDate);
+    // Every event starting on the day overlaps it
+    LocalDate day = eventDateTime.toLocalDate();
+    List<Event> sourceEvents = sourceModel.eventsOverlapping(day.atStartOfDay(),
+            day.atTime(LocalTime.MAX));
 
     // Get source and target timezones
     ZoneId sourceZone = sourceCalendar.getTimezone();
-    Calendar targetCalendar = seriesOfCalendar.get(findAllCalendarInSeries(calendarName));
     ZoneId targetZone = targetCalendar.getTimezone();
 
     for (Event event : sourceEvents) {
@@ -196,19 +325,58 @@ public class CalendarManager {
    */
   public void copyEventsBetween(String startDate, String endDate, String calendarName,
                                 String newStartDate) {
+    copyEventsBetween(LocalDateTime.parse(startDate), LocalDateTime.parse(endDate), calendarName,
+            LocalDateTime.parse(newStartDate));
+  }
+
+  /**
+   * Copy all events that occur between the specified times to the given Calendar.
+   *
+   * @param intervalStart    start of the interval (inclusive)
+   * @param intervalEnd      end of the interval (inclusive)
+   * @param calendarName     name of the target calendar
+   * @param newStartDateTime a time on the day the interval is copied to
+   * @throws IllegalArgumentException if the date range is invalid
+   */
+  public void copyEventsBetween(LocalDateTime intervalStart, LocalDateTime intervalEnd,
+                                String calendarName, LocalDateTime newStartDateTime) {
+    copyEventsBetween(sharedSession, intervalStart, intervalEnd, calendarName, newStartDateTime);
+  }
+
+  /**
+   * Copy all events that occur between the specified times in the calendar a session uses to
+   * the given Calendar.
+   *
+   * @param session          the session whose calendar in use holds the events
+   * @param intervalStart    start of the interval (inclusive)
+   * @param intervalEnd      end of the interval (inclusive)
+   * @param calendarName     name of the target calendar
+   * @param newStartDateTime a time on the day the interval is copied to
+   * @throws IllegalArgumentException if the date range is invalid
+   * @throws IllegalStateException    if the session uses no calendar
+   */
+  public void copyEventsBetween(Session session, LocalDateTime intervalStart,
+                                LocalDateTime intervalEnd, String calendarName,
+                                LocalDateTime newStartDateTime) {
+    Calendar sourceCalendar = calendarInUse(session);
+    Calendar targetCalendar = seriesOfCalendar.get(findAllCalendarInSeries(calendarName));
+    lockForCopy(sourceCalendar, targetCalendar,
+            () -> copyEventsBetween(intervalStart, intervalEnd, sourceCalendar, targetCalendar,
+                    newStartDateTime));
+  }
+
+  /**
+   * Helper that copies the events of an interval once the calendars are locked.
+   */
+  private void copyEventsBetween(LocalDateTime intervalStart, LocalDateTime intervalEnd,
+                                 Calendar sourceCalendar, Calendar targetCalendar,
+                                 LocalDateTime newStartDateTime) {
     List<Event> copiedEvents = new ArrayList<>();
 
-    Calendar sourceCalendar = calendarInUse;
     EventModel sourceModel = sourceCalendar.getEventModel();
-    List<Event> sourceEvents = sourceModel.getEvents();
-
-    LocalDateTime intervalStart = LocalDateTime.parse(startDate);
-    LocalDateTime intervalEnd = LocalDateTime.parse(endDate);
-    LocalDateTime newStartDateTime = LocalDateTime.parse(newStartDate);
 
     // Get source and target timezones
     ZoneId sourceZone = sourceCalendar.getTimezone();
-    Calendar targetCalendar = seriesOfCalendar.get(findAllCalendarInSeries(calendarName));
     ZoneId targetZone = targetCalendar.getTimezone();
 
     // Calculate the time difference between the interval start and new start date
@@ -221,7 +389,7 @@ public class CalendarManager {
       throw new IllegalArgumentException("End date must be after start date");
     }
 
-    for (Event event : sourceEvents) {
+    for (Event event : sourceModel.eventsOverlapping(intervalStart, intervalEnd)) {
       // Check if event overlaps with the specified interval
       if (!event.getEndDateTime().isBefore(intervalStart) &&
               !event.getStartDateTime().isAfter(intervalEnd)) {
@@ -262,37 +430,164 @@ public class CalendarManager {
   }
 
   /**
-   * Finds all calendar in a series.
+   * Finds a calendar in the series of calendars by its name.
    *
    * @param name name of calendar
    * @return index of the calendar in the series of calendars.
+   * @throws IllegalArgumentException if no calendar has the name
    */
   private int findAllCalendarInSeries(String name) {
-    int j = 0;
-    for (int i = 0; i < seriesOfCalendar.size(); i++) {
-      Calendar calendar = seriesOfCalendar.get(i);
-      if (calendar.getName().equals(name)) {
-        j = i;
-      }
+    Integer idx = calendarIndex.get(name);
+    if (idx == null) {
+      throw new IllegalArgumentException("Calendar not found: " + name);
+    }
+    return idx;
+  }
+
+  /**
+   * Helper that returns the calendar a session uses as the source of a copy.
+   */
+  private static Calendar calendarInUse(Session session) {
+    Calendar calendar = session.getCalendarInUse();
+    if (calendar == null) {
+      throw new IllegalStateException("No calendar is currently in use.");
+    }
+    return calendar;
+  }
+
+  /**
+   * Helper that runs a copy with the read lock of the source calendar's model and the write
+   * lock of the target's held, the one of the calendar created first taken first. A copy within
+   * one calendar only takes its write lock.
+   */
+  private void lockForCopy(Calendar source, Calendar target, Runnable copy) {
+    EventModel sourceModel = source.getEventModel();
+    EventModel targetModel = target.getEventModel();
+    if (sourceModel == targetModel) {
+      targetModel.update(model -> copy.run());
+    } else if (modelIndex.get(sourceModel) < modelIndex.get(targetModel)) {
+      sourceModel.readLocked(() -> targetModel.update(model -> copy.run()));
+    } else {
+      targetModel.update(model -> sourceModel.readLocked(copy));
     }
-    return j;
   }
 
   /**
+   * Runs an action while no calendar can change. The monitor of the manager is held, so no
+   * calendar is created, edited or put in use, and so is the read lock of every event model,
+   * taken in the order the calendars were created like the locks of a copy. Used to save the
+   * calendars.
    *
+   * @param action the action to run
+   * @throws IOException if the action fails
+   */
+  synchronized void readLocked(LockedAction action) throws IOException {
+    try {
+      lockModels(0, () -> {
+        try {
+          action.run();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Helper that takes the read locks of the models of the calendars from the given position
+   * on, in order, and runs the action with all of them held.
    */
-  public Calendar useCalendar(String calendarName) {
+  private void lockModels(int from, Runnable action) {
+    if (from == seriesOfCalendar.size()) {
+      action.run();
+      return;
+    }
+    seriesOfCalendar.get(from).getEventModel().readLocked(() -> lockModels(from + 1, action));
+  }
+
+  /**
+   * Makes the calendar with the given name the one in use.
+   *
+   * @param calendarName name of the calendar
+   * @return the calendar now in use, or null if no calendar has the name
+   */
+  public synchronized Calendar useCalendar(String calendarName) {
+    Integer idx = calendarIndex.get(calendarName);
+    if (idx == null) {
+      return null;
+    }
+    sharedSession.setCalendarInUse(idx);
+    if (journal != null) {
+      journal.useCalendar(calendarName);
+    }
+    return seriesOfCalendar.get(idx);
+  }
+
+  /**
+   * Makes the calendar with the given name the one a session uses.
+   *
+   * @param session      the session
+   * @param calendarName name of the calendar
+   * @return the calendar now in use, or null if no calendar has the name
+   */
+  public Calendar useCalendar(Session session, String calendarName) {
+    if (session == sharedSession) {
+      return useCalendar(calendarName);
+    }
+    Integer idx = calendarIndex.get(calendarName);
+    if (idx == null) {
+      return null;
+    }
+    session.setCalendarInUse(idx);
+    return seriesOfCalendar.get(idx);
+  }
+
+  /**
+   * Starts a session of its own for a client, using no calendar yet.
+   *
+   * @return the new session
+   */
+  public Session newSession() {
+    return new Session(seriesOfCalendar);
+  }
+
+  /**
+   * Returns the session the methods without a session act on.
+   *
+   * @return the shared session
+   */
+  public Session getSharedSession() {
+    return sharedSession;
+  }
+
+  /**
+   * Logs the changes made to the calendars, and to their events, to the journal from now on.
+   * Calendars are known to the journal by their position, which never changes.
+   */
+  synchronized void setJournal(Journal journal) {
+    this.journal = journal;
     for (int i = 0; i < seriesOfCalendar.size(); i++) {
-      if (seriesOfCalendar.get(i).getName().equals(calendarName)) {
-        calendarInUse = seriesOfCalendar.get(i);
-        return seriesOfCalendar.get(i);
-      }
+      seriesOfCalendar.get(i).getEventModel().setJournal(journal, i);
+    }
+  }
+
+  /**
+   * Switches how the single events of every calendar are held, including calendars created
+   * from now on.
+   *
+   * @param columnar true to hold them as columns of primitive values, false as objects
+   */
+  public synchronized void setColumnar(boolean columnar) {
+    this.columnar = columnar;
+    for (Calendar calendar : seriesOfCalendar) {
+      calendar.getEventModel().setColumnar(columnar);
     }
-    return null;
   }
 
   public Calendar getCalendarInUse() {
-    return calendarInUse;
+    return sharedSession.getCalendarInUse();
   }
 }
 
@@ -0,0 +1,436 @@
+package calendar.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves all calendars of a CalendarManager to a binary file and loads them back.
+ * The file holds, in order: a header with the number of the last Journal record the snapshot
+ * holds, each calendar with its single events in start order, its series rules and the path of
+ * its EventArchive if it has one, and the calendar in use. The archive itself is not copied,
+ * so it has to stay where it is for the snapshot to load. Strings are stored once: the first time a
+ * string is written it gets the next number of a dictionary and is written out in full, and
+ * later uses only write its number. Times are seconds and nanoseconds of the epoch in UTC.
+ * Reading and writing go through a FileChannel in large blocks, and loading builds each
+ * model's indexes in one pass, so loading takes time proportional to the size of the file.
+ * A snapshot is written to a temporary file that then replaces the target, so a crash while
+ * saving leaves the previous snapshot in place. The calendars are saved with the manager and
+ * every event model locked, so changes made meanwhile wait and none is saved half made.
+ */
+public class CalendarSnapshot {
+  private static final int Magic = 0x43414C53; // "CALS"
+  private static final int Version = 3;
+  private static final int BlockSize = 1 << 20;
+
+  private static final int NullString = -1;
+  private static final int HasNanos = 1 << 6;
+  private static final Location[] Locations = Location.values();
+  private static final Status[] Statuses = Status.values();
+
+  private CalendarSnapshot() {
+    // only static methods
+  }
+
+  /**
+   * Saves every calendar of the manager and the calendar in use.
+   *
+   * @param manager the calendars to save
+   * @param file    the snapshot file, replaced if it exists
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(CalendarManager manager, Path file) throws IOException {
+    write(manager, file, 0);
+  }
+
+  /**
+   * Saves the calendars along with the number of the last journal record they hold.
+   */
+  static void write(CalendarManager manager, Path file, long journalSequence)
+          throws IOException {
+    manager.readLocked(() -> writeLocked(manager, file, journalSequence));
+  }
+
+  /**
+   * Helper that saves the calendars once they are locked.
+   */
+  private static void writeLocked(CalendarManager manager, Path file, long journalSequence)
+          throws IOException {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      Output out = new Output(channel);
+      out.putInt(Magic);
+      out.putInt(Version);
+      out.putLong(journalSequence);
+      List<Calendar> calendars = manager.getCalendars();
+      out.putInt(calendars.size());
+      int inUse = -1;
+      for (int i = 0; i < calendars.size(); i++) {
+        Calendar calendar = calendars.get(i);
+        if (calendar == manager.getCalendarInUse()) {
+          inUse = i;
+        }
+        out.putString(calendar.getName());
+        out.putString(calendar.getTimezone().getId());
+        writeModel(out, calendar.getEventModel());
+      }
+      out.putInt(inUse);
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Loads the calendars of a snapshot into a new manager.
+   *
+   * @param file the snapshot file
+   * @return a manager with the saved calendars, using the saved calendar in use
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public static CalendarManager read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      Input in = new Input(channel);
+      if (in.getInt() != Magic) {
+        throw new IOException("Not a calendar snapshot: " + file);
+      }
+      int version = in.getInt();
+      if (version >= 2 && version <= Version) {
+        in.getLong();
+      } else if (version != 1) {
+        // Version 1 had no journal sequence, and versions before 3 no archives
+        throw new IOException("Unsupported snapshot version " + version + ": " + file);
+      }
+      CalendarManager manager = new CalendarManager();
+      int calendars = in.getCount();
+      List<String> names = new ArrayList<>(Math.min(calendars, 1 << 16));
+      for (int i = 0; i < calendars; i++) {
+        String name = in.getString();
+        ZoneId timezone = ZoneId.of(in.getString());
+        names.add(name);
+        readModel(in, manager.createCalendar(name, timezone).getEventModel(), version);
+      }
+      int inUse = in.getInt();
+      if (inUse >= calendars) {
+        throw new IOException("Corrupt snapshot: " + file);
+      }
+      if (inUse >= 0) {
+        manager.useCalendar(names.get(inUse));
+      }
+      return manager;
+    }
+  }
+
+  /**
+   * Returns the number of the last journal record a snapshot holds, 0 if it holds none.
+   */
+  static long journalSequence(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      Input in = new Input(channel);
+      if (in.getInt() != Magic) {
+        throw new IOException("Not a calendar snapshot: " + file);
+      }
+      return in.getInt() >= 2 ? in.getLong() : 0;
+    }
+  }
+
+  /**
+   * Helper that writes the single events and the series rules of a model.
+   */
+  private static void writeModel(Output out, EventModel model) throws IOException {
+    List<Event> singles = model.singleEvents();
+    out.putInt(singles.size());
+    for (Event event : singles) {
+      out.putString(event.getSubject());
+      out.putString(event.getDescription());
+      boolean nanos = event.startNano() != 0 || event.endNano() != 0;
+      out.ensure(1 + 8 + 8 + 8 + 2 * 4);
+      out.buffer.put((byte) (flagsOf(event.getLocation(), event.getStatus())
+              | (nanos ? HasNanos : 0)));
+      out.buffer.putLong(event.startSecond());
+      out.buffer.putLong(event.endSecond());
+      if (nanos) {
+        out.buffer.putInt(event.startNano());
+        out.buffer.putInt(event.endNano());
+      }
+      out.buffer.putLong(event.getSeriesId());
+    }
+
+    List<EventSeries> rules = model.seriesRules();
+    out.putInt(rules.size());
+    for (EventSeries series : rules) {
+      out.putString(series.getSubject());
+      out.putString(series.getDescription());
+      long[] exceptions = series.getExceptions().toLongArray();
+      out.ensure(8 + 1 + 2 * 12 + 2 * 8 + 1 + 4 + 4);
+      out.buffer.putLong(series.getId());
+      out.buffer.put((byte) flagsOf(series.getLocation(), series.getStatus()));
+      putDateTime(out.buffer, series.getFirstStart());
+      putDateTime(out.buffer, series.getFirstEnd());
+      out.buffer.putLong(series.getStartTime().toNanoOfDay());
+      out.buffer.putLong(series.getEndTime().toNanoOfDay());
+      out.buffer.put((byte) series.getWeekdayMask());
+      out.buffer.putInt(series.getRepeatCount());
+      out.buffer.putInt(exceptions.length);
+      for (long word : exceptions) {
+        out.putLong(word);
+      }
+    }
+    EventArchive archive = model.getArchive();
+    out.putString(archive == null ? null : archive.getFile().toAbsolutePath().toString());
+  }
+
+  /**
+   * Helper that reads what writeModel wrote into an empty model.
+   */
+  private static void readModel(Input in, EventModel model, int version) throws IOException {
+    int count = in.getCount();
+    List<Event> singles = new ArrayList<>(Math.min(count, 1 << 16));
+    for (int i = 0; i < count; i++) {
+      String subject = in.getString();
+      String description = in.getString();
+      in.ensure(1 + 8 + 8);
+      int flags = in.buffer.get();
+      long start = in.buffer.getLong();
+      long end = in.buffer.getLong();
+      int startNano = 0;
+      int endNano = 0;
+      if ((flags & HasNanos) != 0) {
+        in.ensure(2 * 4);
+        startNano = in.buffer.getInt();
+        endNano = in.buffer.getInt();
+      }
+      // Events store their times the way the snapshot does, so none has to be converted
+      singles.add(Event.restore(subject, description, start, startNano, end, endNano,
+              locationOf(flags), statusOf(flags), in.getLong()));
+    }
+
+    count = in.getCount();
+    List<EventSeries> rules = new ArrayList<>(Math.min(count, 1 << 16));
+    for (int i = 0; i < count; i++) {
+      String subject = in.getString();
+      String description = in.getString();
+      in.ensure(8 + 1 + 2 * 12 + 2 * 8 + 1 + 4 + 4);
+      long id = in.buffer.getLong();
+      int flags = in.buffer.get();
+      LocalDateTime firstStart = getDateTime(in.buffer);
+      LocalDateTime firstEnd = getDateTime(in.buffer);
+      LocalTime startTime = LocalTime.ofNanoOfDay(in.buffer.getLong());
+      LocalTime endTime = LocalTime.ofNanoOfDay(in.buffer.getLong());
+      int weekdayMask = in.buffer.get();
+      int repeatCount = in.buffer.getInt();
+      long[] exceptions = new long[in.getCountOf(in.buffer.getInt())];
+      for (int w = 0; w < exceptions.length; w++) {
+        exceptions[w] = in.getLong();
+      }
+      rules.add(EventSeries.restore(id, subject, description, locationOf(flags),
+              statusOf(flags), firstStart, firstEnd, startTime, endTime, weekdayMask,
+              repeatCount, BitSet.valueOf(exceptions)));
+    }
+    model.load(singles, rules);
+    if (version >= 3) {
+      String archive = in.getString();
+      if (archive != null) {
+        model.setArchive(EventArchive.open(Path.of(archive)));
+      }
+    }
+  }
+
+  private static int flagsOf(Location location, Status status) {
+    // 0 stands for no value, so each enum keeps three bits for its ordinal plus one
+    return (location == null ? 0 : location.ordinal() + 1)
+            | (status == null ? 0 : status.ordinal() + 1) << 3;
+  }
+
+  private static Location locationOf(int flags) {
+    int value = flags & 7;
+    return value == 0 ? null : Locations[value - 1];
+  }
+
+  private static Status statusOf(int flags) {
+    int value = (flags >> 3) & 7;
+    return value == 0 ? null : Statuses[value - 1];
+  }
+
+  private static void putDateTime(ByteBuffer buffer, LocalDateTime dateTime) {
+    buffer.putLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+    buffer.putInt(dateTime.getNano());
+  }
+
+  private static LocalDateTime getDateTime(ByteBuffer buffer) {
+    long seconds = buffer.getLong();
+    return LocalDateTime.ofEpochSecond(seconds, buffer.getInt(), ZoneOffset.UTC);
+  }
+
+  /**
+   * A block buffer in front of a channel being written, with the string dictionary.
+   */
+  private static class Output {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BlockSize);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    private Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Makes room for the given number of bytes, writing out the buffer if needed.
+     */
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    private void putInt(int value) throws IOException {
+      ensure(4);
+      buffer.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException {
+      ensure(8);
+      buffer.putLong(value);
+    }
+
+    /**
+     * Writes the number of a string, followed by the string itself the first time.
+     */
+    private void putString(String value) throws IOException {
+      if (value == null) {
+        putInt(NullString);
+        return;
+      }
+      Integer known = dictionary.get(value);
+      if (known != null) {
+        putInt(known);
+        return;
+      }
+      int number = dictionary.size();
+      dictionary.put(value, number);
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putInt(number);
+      putInt(bytes.length);
+      if (bytes.length <= buffer.capacity()) {
+        ensure(bytes.length);
+        buffer.put(bytes);
+      } else {
+        flush();
+        ByteBuffer whole = ByteBuffer.wrap(bytes);
+        while (whole.hasRemaining()) {
+          channel.write(whole);
+        }
+      }
+    }
+  }
+
+  /**
+   * A block buffer in front of a channel being read, with the string dictionary.
+   */
+  private static class Input {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BlockSize);
+    private final List<String> dictionary = new ArrayList<>();
+
+    private Input(FileChannel channel) {
+      this.channel = channel;
+      buffer.limit(0);
+    }
+
+    /**
+     * Makes sure the given number of bytes can be taken from the buffer, reading more of
+     * the file if needed.
+     */
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() >= bytes) {
+        return;
+      }
+      buffer.compact();
+      while (buffer.position() < bytes) {
+        if (channel.read(buffer) == -1) {
+          throw new IOException("Snapshot ends too early");
+        }
+      }
+      buffer.flip();
+    }
+
+    private int getInt() throws IOException {
+      ensure(4);
+      return buffer.getInt();
+    }
+
+    private long getLong() throws IOException {
+      ensure(8);
+      return buffer.getLong();
+    }
+
+    /**
+     * Reads a count and checks that it is not negative, as a corrupt file could make it.
+     */
+    private int getCount() throws IOException {
+      return getCountOf(getInt());
+    }
+
+    private int getCountOf(int count) throws IOException {
+      if (count < 0) {
+        throw new IOException("Corrupt snapshot: negative count");
+      }
+      return count;
+    }
+
+    private String getString() throws IOException {
+      int number = getInt();
+      if (number == NullString) {
+        return null;
+      }
+      if (number < dictionary.size()) {
+        return dictionary.get(number);
+      }
+      if (number != dictionary.size()) {
+        throw new IOException("Corrupt snapshot: unknown string " + number);
+      }
+      int length = getCount();
+      byte[] bytes = new byte[length];
+      if (length <= buffer.capacity()) {
+        ensure(length);
+        buffer.get(bytes);
+      } else {
+        int copied = buffer.remaining();
+        buffer.get(bytes, 0, copied);
+        ByteBuffer rest = ByteBuffer.wrap(bytes, copied, length - copied);
+        while (rest.hasRemaining()) {
+          if (channel.read(rest) == -1) {
+            throw new IOException("Snapshot ends too early");
+          }
+        }
+      }
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      dictionary.add(value);
+      return value;
+    }
+  }
+}
@@ -2,9 +2,15 @@ package calendar.model;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
 
 /**
  * Represents an event in a calendar system.
+ * Start and end are kept as seconds of the epoch and nanoseconds, counted as if the local
+ * date/time were in UTC, rather than as LocalDateTime objects. An event then takes a fraction
+ * of the memory, the model compares and orders events on plain numbers, and a LocalDateTime is
+ * only built when one is asked for.
  */
 public class Event {
   private static final LocalTime StartOfEvent = LocalTime.of(8, 0); // 8:00 AM
@@ -12,12 +18,13 @@ public class Event {
 
   private final String subject;
   private final String description;
-  private final LocalDateTime startDateTime;
-  private final LocalDateTime endDateTime;
+  private final long startSecond;
+  private final long endSecond;
+  private final int startNano;
+  private final int endNano;
   private final Location location;
   private final Status status;
-  private String[] weekdays;
-  private int repeatCount;
+  private final long seriesId;
 
   /**
    * Constructs a new Event.Event with the specified parameters.
@@ -28,12 +35,13 @@ public class Event {
    * @param endDateTime   the end date and time of the event, or null for all-day events
    * @param location      whether the event has a location
    * @param status        the status of the event
+   * @param seriesId      id of the series the event belongs to, or 0 if it is on its own
    * @throws IllegalArgumentException if subject is null
    * @throws IllegalArgumentException if startDateTime is null
    * @throws IllegalArgumentException if endDateTime is before startDateTime
    */
   private Event(String subject, String description, LocalDateTime startDateTime,
-                LocalDateTime endDateTime, Location location, Status status) {
+                LocalDateTime endDateTime, Location location, Status status, long seriesId) {
     if (subject == null) {
       throw new IllegalArgumentException("Subject cannot be null");
     }
@@ -45,18 +53,54 @@ public class Event {
     this.description = description;
     this.location = location;
     this.status = status;
+    this.seriesId = seriesId;
 
     // If end date is not given, it's an all-day event for 8 to 17
     if (endDateTime == null) {
-      this.startDateTime = startDateTime.toLocalDate().atTime(StartOfEvent);
-      this.endDateTime = startDateTime.toLocalDate().atTime(EndOfEvent);
-    } else {
-      if (endDateTime.isBefore(startDateTime)) {
-        throw new IllegalArgumentException("EndDateTime cannot be before startDateTime");
-      }
-      this.startDateTime = startDateTime;
-      this.endDateTime = endDateTime;
+      startDateTime = startDateTime.toLocalDate().atTime(StartOfEvent);
+      endDateTime = startDateTime.toLocalDate().atTime(EndOfEvent);
+    } else if (endDateTime.isBefore(startDateTime)) {
+      throw new IllegalArgumentException("EndDateTime cannot be before startDateTime");
+    }
+    this.startSecond = startDateTime.toEpochSecond(ZoneOffset.UTC);
+    this.startNano = startDateTime.getNano();
+    this.endSecond = endDateTime.toEpochSecond(ZoneOffset.UTC);
+    this.endNano = endDateTime.getNano();
+  }
+
+  /**
+   * Constructs an Event straight from the encoded times, for events read back from a file.
+   */
+  private Event(String subject, String description, long startSecond, int startNano,
+                long endSecond, int endNano, Location location, Status status, long seriesId) {
+    if (subject == null) {
+      throw new IllegalArgumentException("Subject cannot be null");
+    }
+    if (compare(endSecond, endNano, startSecond, startNano) < 0) {
+      throw new IllegalArgumentException("EndDateTime cannot be before startDateTime");
     }
+    this.subject = subject;
+    this.description = description;
+    this.startSecond = startSecond;
+    this.startNano = startNano;
+    this.endSecond = endSecond;
+    this.endNano = endNano;
+    this.location = location;
+    this.status = status;
+    this.seriesId = seriesId;
+  }
+
+  /**
+   * Rebuilds an event from times in seconds of the epoch and nanoseconds, as CalendarSnapshot
+   * and EventArchive store them, without building a LocalDateTime.
+   *
+   * @throws IllegalArgumentException if the event would end before it starts
+   */
+  static Event restore(String subject, String description, long startSecond, int startNano,
+                       long endSecond, int endNano, Location location, Status status,
+                       long seriesId) {
+    return new Event(subject, description, startSecond, startNano, endSecond, endNano,
+            location, status, seriesId);
   }
 
   /**
@@ -78,6 +122,7 @@ public class Event {
     private LocalDateTime endDateTime;
     private Location location;
     private Status status;
+    private long seriesId;
     private String[] weekDays;
     private int repeatCount;
 
@@ -152,6 +197,17 @@ public class Event {
       return this;
     }
 
+    /**
+     * Sets the series the event belongs to.
+     *
+     * @param seriesId id of the series, or 0 if the event is on its own
+     * @return this builder instance for method chaining
+     */
+    public EventBuilder setSeriesId(long seriesId) {
+      this.seriesId = seriesId;
+      return this;
+    }
+
     /**
      * Sets the weekDays of the event.
      *
@@ -199,7 +255,8 @@ public class Event {
      * @throws IllegalArgumentException if required properties are not set or invalid
      */
     public Event build() {
-      return new Event(subject, description, startDateTime, endDateTime, location, status);
+      return new Event(subject, description, startDateTime, endDateTime, location, status,
+              seriesId);
     }
   }
 
@@ -227,7 +284,7 @@ public class Event {
    * @return the start date and time
    */
   public LocalDateTime getStartDateTime() {
-    return startDateTime;
+    return LocalDateTime.ofEpochSecond(startSecond, startNano, ZoneOffset.UTC);
   }
 
   /**
@@ -236,7 +293,65 @@ public class Event {
    * @return the end date and time
    */
   public LocalDateTime getEndDateTime() {
-    return endDateTime;
+    return LocalDateTime.ofEpochSecond(endSecond, endNano, ZoneOffset.UTC);
+  }
+
+  /**
+   * Returns the start in seconds of the epoch, for code that compares times without building
+   * them.
+   */
+  long startSecond() {
+    return startSecond;
+  }
+
+  /**
+   * Returns the nanoseconds of the start.
+   */
+  int startNano() {
+    return startNano;
+  }
+
+  /**
+   * Returns the end in seconds of the epoch.
+   */
+  long endSecond() {
+    return endSecond;
+  }
+
+  /**
+   * Returns the nanoseconds of the end.
+   */
+  int endNano() {
+    return endNano;
+  }
+
+  /**
+   * Orders two events by start.
+   */
+  int compareStart(Event other) {
+    return compare(startSecond, startNano, other.startSecond, other.startNano);
+  }
+
+  /**
+   * Compares the start of the event with a time given in seconds and nanoseconds.
+   */
+  int compareStart(long second, int nano) {
+    return compare(startSecond, startNano, second, nano);
+  }
+
+  /**
+   * Compares the end of the event with a time given in seconds and nanoseconds.
+   */
+  int compareEnd(long second, int nano) {
+    return compare(endSecond, endNano, second, nano);
+  }
+
+  /**
+   * Compares two times given in seconds of the epoch and nanoseconds.
+   */
+  static int compare(long second, int nano, long otherSecond, int otherNano) {
+    int result = Long.compare(second, otherSecond);
+    return result != 0 ? result : Integer.compare(nano, otherNano);
   }
 
   /**
@@ -257,6 +372,45 @@ public class Event {
     return status;
   }
 
+  /**
+   * Returns a copy of this event with the given changes applied, built in one step.
+   *
+   * @param edit changes to apply
+   * @return the edited event
+   * @throws IllegalArgumentException if the edited event would end before it starts
+   */
+  Event withEdit(EventEdit edit) {
+    LocalDateTime startDateTime = getStartDateTime();
+    LocalDateTime endDateTime = getEndDateTime();
+    edit.check(startDateTime, endDateTime);
+    return new Event(edit.subjectOr(subject), edit.descriptionOr(description),
+            edit.startOr(startDateTime), edit.endOr(endDateTime), edit.locationOr(location),
+            edit.statusOr(status), seriesId);
+  }
+
+  /**
+   * Returns the id of the series the event was created in. Events of one series share it even
+   * when they were edited on their own; unrelated events with the same subject do not.
+   *
+   * @return the series id, or 0 if the event is not part of a series
+   */
+  public long getSeriesId() {
+    return seriesId;
+  }
+
+  /**
+   * Checks whether another event matches this one in every field, unlike equals, which only
+   * compares the subject and times.
+   *
+   * @param other the event to compare with
+   * @return true if every field is the same
+   */
+  boolean sameAs(Event other) {
+    return equals(other) && Objects.equals(description, other.description)
+            && location == other.location && status == other.status
+            && seriesId == other.seriesId;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -267,12 +421,16 @@ public class Event {
     }
     Event event = (Event) o;
     return subject.equals(event.subject) &&
-            startDateTime.equals(event.startDateTime) &&
-            endDateTime.equals(event.endDateTime);
+            startSecond == event.startSecond && startNano == event.startNano &&
+            endSecond == event.endSecond && endNano == event.endNano;
   }
 
   @Override
   public int hashCode() {
-    return java.util.Objects.hash(subject, startDateTime, endDateTime);
+    // Same fields as equals, without the varargs array Objects.hash allocates per call
+    int result = subject.hashCode();
+    result = 31 * result + Long.hashCode(startSecond) + startNano;
+    result = 31 * result + Long.hashCode(endSecond) + endNano;
+    return result;
   }
 }
\ No newline at end of file
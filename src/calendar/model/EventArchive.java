@@ -0,0 +1,398 @@
+package calendar.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A read-only file of past single events that queries search in place.
+ * Events are stored in start order as fixed-width records, followed by the strings they use,
+ * each stored once. The file is mapped into memory, so searches are binary searches over the
+ * records and an Event is only built for a record a query returns. Besides its own start and
+ * end, every record holds the latest end of all records up to it, which only grows along the
+ * file, so the first record that can overlap a window is found by binary search as well.
+ * A mapping is limited to 2 GiB, about 40 million events.
+ */
+public class EventArchive {
+  private static final int Magic = 0x43414C41; // "CALA"
+  private static final int Version = 1;
+  // Magic, version, number of records and position of the strings
+  private static final int HeaderSize = 4 + 4 + 4 + 4;
+  // Start, end and latest end so far in epoch seconds, nanos of start and end, subject,
+  // description and the location and status of the event
+  private static final int RecordSize = 8 + 8 + 8 + 4 + 4 + 4 + 4 + 4;
+  private static final int Start = 0;
+  private static final int End = 8;
+  private static final int LatestEnd = 16;
+  private static final int StartNano = 24;
+  private static final int EndNano = 28;
+  private static final int Subject = 32;
+  private static final int Description = 36;
+  private static final int Flags = 40;
+  private static final int NoString = -1;
+
+  private static final Location[] Locations = Location.values();
+  private static final Status[] Statuses = Status.values();
+
+  private final Path file;
+  private final ByteBuffer records;
+  private final int size;
+  private final int strings;
+
+  private EventArchive(Path file, ByteBuffer records, int size, int strings) {
+    this.file = file;
+    this.records = records;
+    this.size = size;
+    this.strings = strings;
+  }
+
+  /**
+   * Writes events to a new archive, replacing the file if it exists.
+   * A file that is open as an archive can be replaced; the open archive keeps reading the
+   * events it had.
+   *
+   * @param file   the archive file
+   * @param events single events in start order
+   * @throws IOException if the file cannot be written or the events do not fit in one file
+   * @throws IllegalArgumentException if the events are not in start order
+   */
+  public static void write(Path file, List<Event> events) throws IOException {
+    Map<String, Integer> offsets = new HashMap<>();
+    ByteBuffer stringBytes = ByteBuffer.allocate(1 << 12);
+    long recordBytes = (long) events.size() * RecordSize;
+    if (HeaderSize + recordBytes > Integer.MAX_VALUE) {
+      throw new IOException("Too many events for one archive: " + events.size());
+    }
+    ByteBuffer out = ByteBuffer.allocate(HeaderSize + (int) recordBytes);
+    out.position(HeaderSize);
+    long latestEnd = Long.MIN_VALUE;
+    Event previous = null;
+    for (Event event : events) {
+      if (previous != null && event.compareStart(previous) < 0) {
+        throw new IllegalArgumentException("Archived events must be in start order");
+      }
+      previous = event;
+      latestEnd = Math.max(latestEnd, event.endSecond());
+      for (String value : new String[]{event.getSubject(), event.getDescription()}) {
+        if (value != null && !offsets.containsKey(value)) {
+          byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          if (stringBytes.remaining() < 4 + bytes.length) {
+            long needed = (long) stringBytes.position() + 4 + bytes.length;
+            if (out.capacity() + needed > Integer.MAX_VALUE) {
+              throw new IOException("Too many strings for one archive");
+            }
+            stringBytes = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE,
+                    Math.max(needed, 2L * stringBytes.capacity()))).put(stringBytes.flip());
+          }
+          offsets.put(value, stringBytes.position());
+          stringBytes.putInt(bytes.length).put(bytes);
+        }
+      }
+      out.putLong(event.startSecond());
+      out.putLong(event.endSecond());
+      out.putLong(latestEnd);
+      out.putInt(event.startNano());
+      out.putInt(event.endNano());
+      out.putInt(offsetOf(offsets, event.getSubject()));
+      out.putInt(offsetOf(offsets, event.getDescription()));
+      out.putInt((event.getLocation() == null ? 0 : event.getLocation().ordinal() + 1)
+              | (event.getStatus() == null ? 0 : event.getStatus().ordinal() + 1) << 3);
+    }
+    out.putInt(0, Magic).putInt(4, Version).putInt(8, events.size())
+            .putInt(12, out.capacity());
+    out.flip();
+    stringBytes.flip();
+
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer[] parts = {out, stringBytes};
+      while (out.hasRemaining() || stringBytes.hasRemaining()) {
+        channel.write(parts);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Maps an archive into memory. The file stays mapped for as long as the archive is used.
+   *
+   * @param file the archive file
+   * @return the archive
+   * @throws IOException if the file cannot be read or is not an archive
+   */
+  public static EventArchive open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < HeaderSize || length > Integer.MAX_VALUE) {
+        throw new IOException("Not an event archive: " + file);
+      }
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      if (mapped.getInt(0) != Magic) {
+        throw new IOException("Not an event archive: " + file);
+      }
+      int version = mapped.getInt(4);
+      if (version != Version) {
+        throw new IOException("Unsupported archive version " + version + ": " + file);
+      }
+      int size = mapped.getInt(8);
+      int strings = mapped.getInt(12);
+      if (size < 0 || strings != HeaderSize + (long) size * RecordSize || strings > length) {
+        throw new IOException("Corrupt event archive: " + file);
+      }
+      return new EventArchive(file, mapped, size, strings);
+    }
+  }
+
+  /**
+   * Returns the file the archive was opened from.
+   *
+   * @return the archive file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the number of archived events.
+   *
+   * @return number of events
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Hands, in start order, every event that overlaps the closed interval [from, to] to the
+   * action. Only those events are built.
+   *
+   * @param from   start of the interval
+   * @param to     end of the interval
+   * @param action called once per matching event
+   */
+  public void forEachOverlapping(LocalDateTime from, LocalDateTime to,
+                                 Consumer<? super Event> action) {
+    long fromSecond = from.toEpochSecond(ZoneOffset.UTC);
+    int fromNano = from.getNano();
+    int last = firstStartingAfter(to);
+    for (int i = firstEndingFrom(fromSecond); i < last; i++) {
+      if (compareEnd(i, fromSecond, fromNano) >= 0) {
+        action.accept(eventAt(i));
+      }
+    }
+  }
+
+  /**
+   * Checks whether any event contains the given instant, end points included, without
+   * building any event.
+   *
+   * @param dateTime instant to check
+   * @return true if an event starts at or before and ends at or after the instant
+   */
+  public boolean anyContaining(LocalDateTime dateTime) {
+    long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+    int nano = dateTime.getNano();
+    int last = firstStartingAfter(dateTime);
+    for (int i = firstEndingFrom(second); i < last; i++) {
+      if (compareEnd(i, second, nano) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the events that start before the given time.
+   *
+   * @param dateTime the time
+   * @return number of events starting before it
+   */
+  public int countStartingBefore(LocalDateTime dateTime) {
+    return firstStartingFrom(dateTime);
+  }
+
+  /**
+   * Adds, in start order, at most limit events starting at or after the given time.
+   *
+   * @param from  earliest start
+   * @param limit most events to add
+   * @param out   list the events are added to
+   */
+  public void collectStartingFrom(LocalDateTime from, int limit, List<Event> out) {
+    int first = firstStartingFrom(from);
+    int last = (int) Math.min(size, (long) first + limit);
+    for (int i = first; i < last; i++) {
+      out.add(eventAt(i));
+    }
+  }
+
+  /**
+   * Checks whether an event equal to the given one, with the same subject, start and end, is
+   * archived.
+   *
+   * @param event the event to look for
+   * @return true if such an event is archived
+   */
+  public boolean contains(Event event) {
+    long startSecond = event.startSecond();
+    int startNano = event.startNano();
+    for (int i = firstStartingFrom(startSecond, startNano); i < size; i++) {
+      if (compareStart(i, startSecond, startNano) != 0) {
+        return false;
+      }
+      if (compareEnd(i, event.endSecond(), event.endNano()) == 0
+              && event.getSubject().equals(stringAt(records.getInt(offset(i) + Subject)))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether an event with the given subject starts within [from, to], where a null to
+   * means any time from on. Looks at every event starting in the range, so it is meant for
+   * ranges after most of the archive.
+   *
+   * @param subject subject of the event
+   * @param from    earliest start
+   * @param to      latest start, or null for no limit
+   * @return true if such an event is archived
+   */
+  public boolean containsSubject(String subject, LocalDateTime from, LocalDateTime to) {
+    int last = to == null ? size : firstStartingAfter(to);
+    for (int i = firstStartingFrom(from); i < last; i++) {
+      if (subject.equals(stringAt(records.getInt(offset(i) + Subject)))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Builds every archived event, in start order.
+   *
+   * @param out list the events are added to
+   */
+  public void collectAll(List<Event> out) {
+    for (int i = 0; i < size; i++) {
+      out.add(eventAt(i));
+    }
+  }
+
+  /**
+   * Helper that finds the first record that starts at or after the given time.
+   */
+  private int firstStartingFrom(LocalDateTime dateTime) {
+    return firstStartingFrom(dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano());
+  }
+
+  private int firstStartingFrom(long second, int nano) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareStart(mid, second, nano) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Helper that finds the first record that starts after the given time.
+   */
+  private int firstStartingAfter(LocalDateTime dateTime) {
+    long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+    int nano = dateTime.getNano();
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareStart(mid, second, nano) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Helper that finds the first record up to which some event ends in or after the given
+   * second. No record before it can end at or after the second.
+   */
+  private int firstEndingFrom(long second) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (records.getLong(offset(mid) + LatestEnd) < second) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int compareStart(int i, long second, int nano) {
+    int at = offset(i);
+    return Event.compare(records.getLong(at + Start), records.getInt(at + StartNano), second,
+            nano);
+  }
+
+  private int compareEnd(int i, long second, int nano) {
+    int at = offset(i);
+    return Event.compare(records.getLong(at + End), records.getInt(at + EndNano), second, nano);
+  }
+
+  /**
+   * Helper that builds the event of a record.
+   */
+  private Event eventAt(int i) {
+    int at = offset(i);
+    int flags = records.getInt(at + Flags);
+    int location = flags & 7;
+    int status = (flags >>> 3) & 7;
+    return Event.restore(stringAt(records.getInt(at + Subject)),
+            stringAt(records.getInt(at + Description)), records.getLong(at + Start),
+            records.getInt(at + StartNano), records.getLong(at + End),
+            records.getInt(at + EndNano), location == 0 ? null : Locations[location - 1],
+            status == 0 ? null : Statuses[status - 1], 0);
+  }
+
+  private String stringAt(int offset) {
+    if (offset == NoString) {
+      return null;
+    }
+    int at = strings + offset;
+    int length = records.getInt(at);
+    byte[] bytes = new byte[length];
+    records.get(at + 4, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int offset(int i) {
+    return HeaderSize + i * RecordSize;
+  }
+
+  private static int offsetOf(Map<String, Integer> offsets, String value) {
+    return value == null ? NoString : offsets.get(value);
+  }
+}
@@ -0,0 +1,456 @@
+package calendar.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Single events of an EventModel held column by column: one primitive array per field, all in
+ * start order, with subjects and descriptions replaced by their number in a StringDictionary.
+ * An Event is only built for an event a query returns, so a scan over a window is a loop over
+ * a few long arrays.
+ * Like EventArchive, every position also holds the latest end of all events up to it. That
+ * column never decreases, so the first event that can overlap a window is found by binary
+ * search, and inserts and removals only fix it up as far as it changes.
+ * Inserting or removing shifts the columns behind the position, like ArrayList does.
+ * The start times are also listed per subject id, for lookups by subject, and per series id,
+ * so the members of a series are found without a scan over every event.
+ */
+class EventColumns implements IEventStore {
+  private static final Location[] Locations = Location.values();
+  private static final Status[] Statuses = Status.values();
+
+  private int size;
+  private long[] startSecond;
+  private int[] startNano;
+  private long[] endSecond;
+  private int[] endNano;
+  private long[] latestEnd;
+  private int[] subject;
+  private int[] description;
+  // Ordinal plus one, or 0 for none
+  private byte[] location;
+  private byte[] status;
+  private long[] seriesId;
+
+  private final StringDictionary strings;
+  private final List<StartTimes> startsBySubject;
+  private final Map<Long, StartTimes> startsBySeries;
+
+  /**
+   * Constructs an empty store.
+   */
+  EventColumns() {
+    this.strings = new StringDictionary();
+    this.startsBySubject = new ArrayList<>();
+    this.startsBySeries = new HashMap<>();
+    allocate(16);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Event get(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(i);
+    }
+    return Event.restore(strings.stringAt(subject[i]), strings.stringAt(description[i]),
+            startSecond[i],
+            startNano[i], endSecond[i], endNano[i],
+            location[i] == 0 ? null : Locations[location[i] - 1],
+            status[i] == 0 ? null : Statuses[status[i] - 1], seriesId[i]);
+  }
+
+  @Override
+  public List<Event> view() {
+    return new View();
+  }
+
+  @Override
+  public int lowerBound(long second, int nano) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareStart(mid, second, nano) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public void insert(Event event) {
+    int at = upperBound(event.startSecond(), event.startNano());
+    if (size == startSecond.length) {
+      grow(size * 2);
+    }
+    int moved = size - at;
+    System.arraycopy(startSecond, at, startSecond, at + 1, moved);
+    System.arraycopy(startNano, at, startNano, at + 1, moved);
+    System.arraycopy(endSecond, at, endSecond, at + 1, moved);
+    System.arraycopy(endNano, at, endNano, at + 1, moved);
+    System.arraycopy(latestEnd, at, latestEnd, at + 1, moved);
+    System.arraycopy(subject, at, subject, at + 1, moved);
+    System.arraycopy(description, at, description, at + 1, moved);
+    System.arraycopy(location, at, location, at + 1, moved);
+    System.arraycopy(status, at, status, at + 1, moved);
+    System.arraycopy(seriesId, at, seriesId, at + 1, moved);
+    size++;
+    set(at, event);
+    startSecond[at] = event.startSecond();
+    startNano[at] = event.startNano();
+    addStart(at);
+    latestEnd[at] = at == 0 ? endSecond[at] : Math.max(latestEnd[at - 1], endSecond[at]);
+    // Further on the latest end only changes where it was lower than this event's end
+    for (int i = at + 1; i < size && latestEnd[i] < endSecond[at]; i++) {
+      latestEnd[i] = endSecond[at];
+    }
+  }
+
+  @Override
+  public void remove(Event event) {
+    int at = positionOf(event);
+    forgetStart(at);
+    int moved = size - at - 1;
+    System.arraycopy(startSecond, at + 1, startSecond, at, moved);
+    System.arraycopy(startNano, at + 1, startNano, at, moved);
+    System.arraycopy(endSecond, at + 1, endSecond, at, moved);
+    System.arraycopy(endNano, at + 1, endNano, at, moved);
+    System.arraycopy(latestEnd, at + 1, latestEnd, at, moved);
+    System.arraycopy(subject, at + 1, subject, at, moved);
+    System.arraycopy(description, at + 1, description, at, moved);
+    System.arraycopy(location, at + 1, location, at, moved);
+    System.arraycopy(status, at + 1, status, at, moved);
+    System.arraycopy(seriesId, at + 1, seriesId, at, moved);
+    size--;
+    fixLatestEnd(at);
+  }
+
+  @Override
+  public void replace(Event event, Event replacement) {
+    if (event.compareStart(replacement) != 0) {
+      throw new IllegalArgumentException("Replacement must start at the same time");
+    }
+    int at = positionOf(event);
+    forgetStart(at);
+    set(at, replacement);
+    addStart(at);
+    fixLatestEnd(at);
+  }
+
+  @Override
+  public boolean contains(Event event) {
+    Integer subjectId = strings.find(event.getSubject());
+    if (subjectId == null) {
+      return false;
+    }
+    for (int i = lowerBound(event.startSecond(), event.startNano());
+         i < size && compareStart(i, event.startSecond(), event.startNano()) == 0; i++) {
+      if (subject[i] == subjectId && endSecond[i] == event.endSecond()
+              && endNano[i] == event.endNano()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Event find(String subjectValue, long second, int nano) {
+    Integer subjectId = strings.find(subjectValue);
+    StartTimes starts = startsOf(subjectId);
+    if (starts == null) {
+      return null;
+    }
+    int k = starts.firstFrom(second, nano);
+    if (k == starts.size() || starts.secondAt(k) != second || starts.nanoAt(k) != nano) {
+      return null;
+    }
+    // Only the match is built
+    for (int i = lowerBound(second, nano); i < size && compareStart(i, second, nano) == 0; i++) {
+      if (subject[i] == subjectId) {
+        return get(i);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<Event> firstWithSubject(String subjectValue, long second, int nano) {
+    Integer subjectId = strings.find(subjectValue);
+    StartTimes starts = startsOf(subjectId);
+    List<Event> first = new ArrayList<>();
+    if (starts == null) {
+      return first;
+    }
+    int k = starts.firstFrom(second, nano);
+    if (k == starts.size()) {
+      return first;
+    }
+    long firstSecond = starts.secondAt(k);
+    int firstNano = starts.nanoAt(k);
+    for (int i = lowerBound(firstSecond, firstNano);
+         i < size && compareStart(i, firstSecond, firstNano) == 0; i++) {
+      if (subject[i] == subjectId) {
+        first.add(get(i));
+      }
+    }
+    return first;
+  }
+
+  @Override
+  public String intern(String value) {
+    return strings.intern(value);
+  }
+
+  @Override
+  public List<Event> members(long id) {
+    List<Event> members = new ArrayList<>();
+    StartTimes starts = startsBySeries.get(id);
+    if (starts == null) {
+      return members;
+    }
+    for (int k = 0; k < starts.size(); k++) {
+      long second = starts.secondAt(k);
+      int nano = starts.nanoAt(k);
+      // A time is listed once per member starting at it; the first listing takes them all
+      if (k > 0 && starts.secondAt(k - 1) == second && starts.nanoAt(k - 1) == nano) {
+        continue;
+      }
+      for (int i = lowerBound(second, nano); i < size && compareStart(i, second, nano) == 0;
+           i++) {
+        if (seriesId[i] == id) {
+          members.add(get(i));
+        }
+      }
+    }
+    return members;
+  }
+
+  @Override
+  public void forEachOverlapping(long fromSecond, int fromNano, long toSecond, int toNano,
+                                 TimeFilter filter, Consumer<? super Event> action) {
+    int last = upperBound(toSecond, toNano);
+    for (int i = firstEndingFrom(fromSecond); i < last; i++) {
+      if (Event.compare(endSecond[i], endNano[i], fromSecond, fromNano) >= 0
+              && (filter == null
+              || filter.test(startSecond[i], startNano[i], endSecond[i], endNano[i]))) {
+        action.accept(get(i));
+      }
+    }
+  }
+
+  @Override
+  public boolean anyContaining(long second, int nano) {
+    int last = upperBound(second, nano);
+    for (int i = firstEndingFrom(second); i < last; i++) {
+      if (Event.compare(endSecond[i], endNano[i], second, nano) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean readsAlwaysFinish() {
+    // Every loop is bounded by an index into the arrays
+    return true;
+  }
+
+  @Override
+  public void load(List<Event> events) {
+    size = 0;
+    strings.clear();
+    startsBySubject.clear();
+    startsBySeries.clear();
+    allocate(Math.max(16, events.size()));
+    for (Event event : events) {
+      int at = size++;
+      set(at, event);
+      startSecond[at] = event.startSecond();
+      startNano[at] = event.startNano();
+      addStart(at);
+      latestEnd[at] = at == 0 ? endSecond[at] : Math.max(latestEnd[at - 1], endSecond[at]);
+    }
+  }
+
+  /**
+   * Helper that sets every column but the start and the latest end at a position.
+   */
+  private void set(int at, Event event) {
+    endSecond[at] = event.endSecond();
+    endNano[at] = event.endNano();
+    subject[at] = strings.idOf(event.getSubject());
+    description[at] = strings.idOf(event.getDescription());
+    location[at] = (byte) (event.getLocation() == null ? 0 : event.getLocation().ordinal() + 1);
+    status[at] = (byte) (event.getStatus() == null ? 0 : event.getStatus().ordinal() + 1);
+    seriesId[at] = event.getSeriesId();
+  }
+
+  /**
+   * Helper that lists the start at a position under the subject there, and under the series if
+   * the event there has one.
+   */
+  private void addStart(int at) {
+    while (startsBySubject.size() <= subject[at]) {
+      startsBySubject.add(null);
+    }
+    if (startsBySubject.get(subject[at]) == null) {
+      startsBySubject.set(subject[at], new StartTimes());
+    }
+    startsBySubject.get(subject[at]).add(startSecond[at], startNano[at]);
+    if (seriesId[at] != 0) {
+      startsBySeries.computeIfAbsent(seriesId[at], id -> new StartTimes())
+              .add(startSecond[at], startNano[at]);
+    }
+  }
+
+  /**
+   * Helper that drops the start at a position from the lists of the subject and series there.
+   */
+  private void forgetStart(int at) {
+    startsBySubject.get(subject[at]).remove(startSecond[at], startNano[at]);
+    if (seriesId[at] != 0) {
+      StartTimes starts = startsBySeries.get(seriesId[at]);
+      starts.remove(startSecond[at], startNano[at]);
+      if (starts.size() == 0) {
+        startsBySeries.remove(seriesId[at]);
+      }
+    }
+  }
+
+  /**
+   * Helper that returns the start times listed for a subject id, or null if it has none.
+   */
+  private StartTimes startsOf(Integer subjectId) {
+    if (subjectId == null || subjectId < 0 || subjectId >= startsBySubject.size()) {
+      return null;
+    }
+    StartTimes starts = startsBySubject.get(subjectId);
+    return starts == null || starts.size() == 0 ? null : starts;
+  }
+
+  /**
+   * Helper that recomputes the latest end from a position on, after the end there changed or
+   * an event there was removed, stopping where the column is right again.
+   */
+  private void fixLatestEnd(int from) {
+    for (int i = from; i < size; i++) {
+      long fixed = i == 0 ? endSecond[i] : Math.max(latestEnd[i - 1], endSecond[i]);
+      if (i > from && fixed == latestEnd[i]) {
+        return;
+      }
+      latestEnd[i] = fixed;
+    }
+  }
+
+  /**
+   * Helper that finds the position of the first event equal in every field to the given one.
+   */
+  private int positionOf(Event event) {
+    Integer subjectId = strings.find(event.getSubject());
+    Integer descriptionId = strings.find(event.getDescription());
+    if (subjectId != null && descriptionId != null) {
+      byte locationCode = (byte) (event.getLocation() == null ? 0
+              : event.getLocation().ordinal() + 1);
+      byte statusCode = (byte) (event.getStatus() == null ? 0 : event.getStatus().ordinal() + 1);
+      for (int i = lowerBound(event.startSecond(), event.startNano());
+           i < size && compareStart(i, event.startSecond(), event.startNano()) == 0; i++) {
+        if (subject[i] == subjectId && description[i] == descriptionId
+                && endSecond[i] == event.endSecond() && endNano[i] == event.endNano()
+                && location[i] == locationCode && status[i] == statusCode
+                && seriesId[i] == event.getSeriesId()) {
+          return i;
+        }
+      }
+    }
+    throw new IllegalStateException("Event is not in the model");
+  }
+
+  private int upperBound(long second, int nano) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareStart(mid, second, nano) > 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Helper that finds the first position up to which some event ends in or after the given
+   * second. No event before it can end at or after that second.
+   */
+  private int firstEndingFrom(long second) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (latestEnd[mid] < second) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int compareStart(int i, long second, int nano) {
+    return Event.compare(startSecond[i], startNano[i], second, nano);
+  }
+
+  private void allocate(int capacity) {
+    startSecond = new long[capacity];
+    startNano = new int[capacity];
+    endSecond = new long[capacity];
+    endNano = new int[capacity];
+    latestEnd = new long[capacity];
+    subject = new int[capacity];
+    description = new int[capacity];
+    location = new byte[capacity];
+    status = new byte[capacity];
+    seriesId = new long[capacity];
+  }
+
+  private void grow(int capacity) {
+    startSecond = Arrays.copyOf(startSecond, capacity);
+    startNano = Arrays.copyOf(startNano, capacity);
+    endSecond = Arrays.copyOf(endSecond, capacity);
+    endNano = Arrays.copyOf(endNano, capacity);
+    latestEnd = Arrays.copyOf(latestEnd, capacity);
+    subject = Arrays.copyOf(subject, capacity);
+    description = Arrays.copyOf(description, capacity);
+    location = Arrays.copyOf(location, capacity);
+    status = Arrays.copyOf(status, capacity);
+    seriesId = Arrays.copyOf(seriesId, capacity);
+  }
+
+  /**
+   * Read-only list over the columns that builds each event as it is read.
+   */
+  private class View extends AbstractList<Event> implements RandomAccess {
+    @Override
+    public Event get(int i) {
+      return EventColumns.this.get(i);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
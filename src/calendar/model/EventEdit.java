@@ -0,0 +1,204 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A set of property changes to apply to one or more events.
+ * Values are parsed and validated once, when the edit is built, so applying it to many events
+ * only copies the already parsed values into each of them.
+ */
+public class EventEdit {
+  private static final int SubjectChanged = 1;
+  private static final int DescriptionChanged = 1 << 1;
+  private static final int StartChanged = 1 << 2;
+  private static final int EndChanged = 1 << 3;
+  private static final int LocationChanged = 1 << 4;
+  private static final int StatusChanged = 1 << 5;
+
+  private final int changed;
+  private final String subject;
+  private final String description;
+  private final LocalDateTime startDateTime;
+  private final LocalDateTime endDateTime;
+  private final Location location;
+  private final Status status;
+
+  private EventEdit(EditBuilder builder) {
+    this.changed = builder.changed;
+    this.subject = builder.subject;
+    this.description = builder.description;
+    this.startDateTime = builder.startDateTime;
+    this.endDateTime = builder.endDateTime;
+    this.location = builder.location;
+    this.status = builder.status;
+  }
+
+  /**
+   * Returns a new EditBuilder instance for creating an EventEdit.
+   *
+   * @return a new EditBuilder instance
+   */
+  public static EditBuilder getBuilder() {
+    return new EditBuilder();
+  }
+
+  /**
+   * Creates an edit that changes a single property.
+   *
+   * @param property name of the property, in any case
+   * @param newValue new value of the property
+   * @return the parsed edit
+   * @throws IllegalArgumentException if the property or the value is invalid
+   */
+  public static EventEdit of(String property, String newValue) {
+    return getBuilder().set(property, newValue).build();
+  }
+
+  /**
+   * Rebuilds an edit from the values a journal kept, without parsing or checking them again.
+   */
+  static EventEdit restore(int changes, String subject, String description,
+                           LocalDateTime startDateTime, LocalDateTime endDateTime,
+                           Location location, Status status) {
+    EditBuilder builder = getBuilder();
+    builder.changed = changes;
+    builder.subject = subject;
+    builder.description = description;
+    builder.startDateTime = startDateTime;
+    builder.endDateTime = endDateTime;
+    builder.location = location;
+    builder.status = status;
+    return new EventEdit(builder);
+  }
+
+  /**
+   * Builder class for creating EventEdit instances.
+   */
+  public static class EditBuilder {
+    private int changed;
+    private String subject;
+    private String description;
+    private LocalDateTime startDateTime;
+    private LocalDateTime endDateTime;
+    private Location location;
+    private Status status;
+
+    private EditBuilder() {
+      //initialize
+    }
+
+    /**
+     * Adds the change of one property, replacing an earlier change of the same property.
+     *
+     * @param property name of the property, in any case
+     * @param newValue new value of the property
+     * @return this builder instance for method chaining
+     * @throws IllegalArgumentException if the property or the value is invalid
+     * @throws java.time.format.DateTimeParseException if a new start or end cannot be parsed
+     */
+    public EditBuilder set(String property, String newValue) {
+      switch (property.toLowerCase()) {
+        case "subject":
+          if (newValue == null) {
+            throw new IllegalArgumentException("Subject cannot be null");
+          }
+          subject = newValue;
+          changed |= SubjectChanged;
+          break;
+        case "description":
+          description = newValue;
+          changed |= DescriptionChanged;
+          break;
+        case "start":
+          startDateTime = LocalDateTime.parse(newValue);
+          changed |= StartChanged;
+          break;
+        case "end":
+          endDateTime = LocalDateTime.parse(newValue);
+          changed |= EndChanged;
+          break;
+        case "location":
+          location = Location.valueOf(newValue.toUpperCase());
+          changed |= LocationChanged;
+          break;
+        case "status":
+          status = Status.valueOf(newValue.toUpperCase());
+          changed |= StatusChanged;
+          break;
+        default:
+          throw new IllegalArgumentException("Invalid property");
+      }
+      return this;
+    }
+
+    /**
+     * Builds the edit.
+     *
+     * @return the new EventEdit
+     * @throws IllegalArgumentException if no property is changed
+     * @throws IllegalArgumentException if the new end is before the new start
+     */
+    public EventEdit build() {
+      if (changed == 0) {
+        throw new IllegalArgumentException("No property to edit");
+      }
+      if (startDateTime != null && endDateTime != null && endDateTime.isBefore(startDateTime)) {
+        throw new IllegalArgumentException("New end time cannot be before start time");
+      }
+      return new EventEdit(this);
+    }
+  }
+
+  /**
+   * Checks whether the edit moves the start or the end of the events it is applied to.
+   *
+   * @return true if the start or the end is changed
+   */
+  public boolean changesTime() {
+    return (changed & (StartChanged | EndChanged)) != 0;
+  }
+
+  /**
+   * Checks that the edit can be applied to an event with the given times.
+   *
+   * @param start start of the event
+   * @param end   end of the event
+   * @throws IllegalArgumentException if the edited event would end before it starts
+   */
+  public void check(LocalDateTime start, LocalDateTime end) {
+    if ((changed & StartChanged) != 0 && startDateTime.isAfter(endOr(end))) {
+      throw new IllegalArgumentException("New start time cannot be after end time");
+    }
+    if ((changed & EndChanged) != 0 && endDateTime.isBefore(startOr(start))) {
+      throw new IllegalArgumentException("New end time cannot be before start time");
+    }
+  }
+
+  int changes() {
+    return changed;
+  }
+
+  String subjectOr(String current) {
+    return (changed & SubjectChanged) != 0 ? subject : current;
+  }
+
+  String descriptionOr(String current) {
+    return (changed & DescriptionChanged) != 0 ? description : current;
+  }
+
+  LocalDateTime startOr(LocalDateTime current) {
+    return (changed & StartChanged) != 0 ? startDateTime : current;
+  }
+
+  LocalDateTime endOr(LocalDateTime current) {
+    return (changed & EndChanged) != 0 ? endDateTime : current;
+  }
+
+  Location locationOr(Location current) {
+    return (changed & LocationChanged) != 0 ? location : current;
+  }
+
+  Status statusOr(Status current) {
+    return (changed & StatusChanged) != 0 ? status : current;
+  }
+}
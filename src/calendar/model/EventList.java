@@ -0,0 +1,306 @@
+package calendar.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Single events of an EventModel held as Event objects: a list in start order, an IntervalTree
+ * over the same events for overlap queries, a count of equal events for duplicate checks and
+ * the members of each series. Events are stored with their subject and description swapped
+ * for the instances a StringDictionary keeps, so equal subjects are one string however many
+ * events have them. The start times of the events are also listed per subject, keyed by those
+ * instances, for lookups by subject. The events handed out are the stored instances, and
+ * remove and replace look for the very instance they are given.
+ */
+class EventList implements IEventStore {
+  private final List<Event> events;
+  private final IntervalTree index;
+  private Map<Event, Integer> eventCounts;
+  private final Map<Long, List<Event>> detachedById;
+  private final StringDictionary strings;
+  private final Map<String, StartTimes> startsBySubject;
+
+  /**
+   * Constructs an empty list.
+   */
+  EventList() {
+    this.events = new ArrayList<>();
+    this.index = new IntervalTree();
+    this.eventCounts = new HashMap<>();
+    this.detachedById = new HashMap<>();
+    this.strings = new StringDictionary();
+    this.startsBySubject = new IdentityHashMap<>();
+  }
+
+  @Override
+  public int size() {
+    return events.size();
+  }
+
+  @Override
+  public Event get(int i) {
+    return events.get(i);
+  }
+
+  @Override
+  public List<Event> view() {
+    return Collections.unmodifiableList(events);
+  }
+
+  @Override
+  public int lowerBound(long second, int nano) {
+    int low = 0;
+    int high = events.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (events.get(mid).compareStart(second, nano) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public void insert(Event added) {
+    Event event = interned(added);
+    // O(log n) comparisons to find the place, after every event starting no later
+    events.add(upperBound(event), event);
+    index.insert(event);
+    // Edits can make two events equal, so the identity index counts them
+    eventCounts.merge(event, 1, Integer::sum);
+    addMember(event);
+    addStart(event);
+  }
+
+  @Override
+  public void remove(Event event) {
+    events.remove(positionOf(event));
+    index.remove(event);
+    forgetIdentity(event);
+    forgetMember(event);
+    forgetStart(event);
+  }
+
+  @Override
+  public void replace(Event event, Event edited) {
+    Event replacement = interned(edited);
+    events.set(positionOf(event), replacement);
+    index.replace(event, replacement);
+    forgetIdentity(event);
+    eventCounts.merge(replacement, 1, Integer::sum);
+    forgetMember(event);
+    addMember(replacement);
+    forgetStart(event);
+    addStart(replacement);
+  }
+
+  @Override
+  public boolean contains(Event event) {
+    return eventCounts.containsKey(event);
+  }
+
+  @Override
+  public Event find(String subject, long second, int nano) {
+    List<Event> first = firstWithSubject(subject, second, nano);
+    return first.isEmpty() || first.get(0).compareStart(second, nano) != 0 ? null : first.get(0);
+  }
+
+  @Override
+  public List<Event> firstWithSubject(String subject, long second, int nano) {
+    String kept = strings.lookup(subject);
+    StartTimes starts = kept == null ? null : startsBySubject.get(kept);
+    if (starts == null) {
+      return Collections.emptyList();
+    }
+    int k = starts.firstFrom(second, nano);
+    if (k == starts.size()) {
+      return Collections.emptyList();
+    }
+    // Only the events starting at that time need to be looked at
+    long firstSecond = starts.secondAt(k);
+    int firstNano = starts.nanoAt(k);
+    List<Event> first = new ArrayList<>();
+    for (int i = lowerBound(firstSecond, firstNano); i < events.size(); i++) {
+      Event event = events.get(i);
+      if (event.compareStart(firstSecond, firstNano) != 0) {
+        break;
+      }
+      if (event.getSubject() == kept) {
+        first.add(event);
+      }
+    }
+    return first;
+  }
+
+  @Override
+  public String intern(String value) {
+    return strings.intern(value);
+  }
+
+  @Override
+  public List<Event> members(long seriesId) {
+    List<Event> members = detachedById.get(seriesId);
+    return members == null ? Collections.emptyList() : new ArrayList<>(members);
+  }
+
+  @Override
+  public void forEachOverlapping(long fromSecond, int fromNano, long toSecond, int toNano,
+                                 TimeFilter filter, Consumer<? super Event> action) {
+    if (filter == null) {
+      index.forEachOverlapping(fromSecond, fromNano, toSecond, toNano, action);
+    } else {
+      index.forEachOverlapping(fromSecond, fromNano, toSecond, toNano, event -> {
+        if (filter.test(event.startSecond(), event.startNano(), event.endSecond(),
+                event.endNano())) {
+          action.accept(event);
+        }
+      });
+    }
+  }
+
+  @Override
+  public boolean anyContaining(long second, int nano) {
+    return index.anyContaining(second, nano);
+  }
+
+  @Override
+  public boolean readsAlwaysFinish() {
+    // A tree walked during a rotation can run in a cycle
+    return false;
+  }
+
+  @Override
+  public void load(List<Event> loaded) {
+    events.clear();
+    strings.clear();
+    startsBySubject.clear();
+    for (Event event : loaded) {
+      events.add(interned(event));
+    }
+    index.buildFrom(events);
+    // Sized up front, so a large calendar is not rehashed over and over while it loads
+    eventCounts = HashMap.newHashMap(events.size());
+    detachedById.clear();
+    for (Event event : events) {
+      eventCounts.merge(event, 1, Integer::sum);
+      addMember(event);
+      addStart(event);
+    }
+  }
+
+  /**
+   * Helper that returns the event with the kept instances of its subject and description,
+   * building a copy only if it does not have them already.
+   */
+  private Event interned(Event event) {
+    String subject = strings.intern(event.getSubject());
+    String description = strings.intern(event.getDescription());
+    if (subject == event.getSubject() && description == event.getDescription()) {
+      return event;
+    }
+    return Event.restore(subject, description, event.startSecond(), event.startNano(),
+            event.endSecond(), event.endNano(), event.getLocation(), event.getStatus(),
+            event.getSeriesId());
+  }
+
+  /**
+   * Helper that returns the index of the first event starting after the given event.
+   */
+  private int upperBound(Event event) {
+    long second = event.startSecond();
+    int nano = event.startNano();
+    int low = 0;
+    int high = events.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (events.get(mid).compareStart(second, nano) > 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Helper that finds the position of the given event instance.
+   */
+  private int positionOf(Event event) {
+    for (int i = lowerBound(event.startSecond(), event.startNano()); i < events.size(); i++) {
+      Event candidate = events.get(i);
+      if (candidate == event) {
+        return i;
+      }
+      if (candidate.compareStart(event) != 0) {
+        break;
+      }
+    }
+    throw new IllegalStateException("Event is not in the model");
+  }
+
+  /**
+   * Helper that records an event under its series id, if it has one.
+   */
+  private void addMember(Event event) {
+    if (event.getSeriesId() != 0) {
+      detachedById.computeIfAbsent(event.getSeriesId(), id -> new ArrayList<>()).add(event);
+    }
+  }
+
+  /**
+   * Helper that drops the given event instance from the members of its series.
+   */
+  private void forgetMember(Event event) {
+    List<Event> members = detachedById.get(event.getSeriesId());
+    if (members == null) {
+      return;
+    }
+    for (int i = 0; i < members.size(); i++) {
+      if (members.get(i) == event) {
+        members.remove(i);
+        break;
+      }
+    }
+    if (members.isEmpty()) {
+      detachedById.remove(event.getSeriesId());
+    }
+  }
+
+  /**
+   * Helper that lists the start of an event under its subject.
+   */
+  private void addStart(Event event) {
+    startsBySubject.computeIfAbsent(event.getSubject(), subject -> new StartTimes())
+            .add(event.startSecond(), event.startNano());
+  }
+
+  /**
+   * Helper that drops the start of an event from the list of its subject.
+   */
+  private void forgetStart(Event event) {
+    StartTimes starts = startsBySubject.get(event.getSubject());
+    starts.remove(event.startSecond(), event.startNano());
+    if (starts.size() == 0) {
+      startsBySubject.remove(event.getSubject());
+    }
+  }
+
+  /**
+   * Helper that drops one occurrence of the event from the duplicate index.
+   */
+  private void forgetIdentity(Event event) {
+    Integer count = eventCounts.get(event);
+    if (count != null && count > 1) {
+      eventCounts.put(event, count - 1);
+    } else {
+      eventCounts.remove(event);
+    }
+  }
+}
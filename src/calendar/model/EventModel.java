@@ -1,24 +1,139 @@
 package calendar.model;
 
-import java.time.DayOfWeek;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Implementation of the event model interface.
  * Manages a collection of events and provides methods to query and modify them.
+ * Single events are kept sorted by start time; events starting at the same time keep the order
+ * they were added in, which makes the order total. They are held in an IEventStore, as Event
+ * objects or, after setColumnar, as columns of primitive values. Repeating events are stored as one
+ * EventSeries rule each and only expanded into occurrences inside the window a query asks for.
+ * When results mix the two, ties on start time list single events first, then occurrences in
+ * the order their series were created.
+ * Past single events can be moved into an EventArchive, a file the queries search in place.
+ * Archived events are read-only, and on equal starts they come after the single events still
+ * in memory and before occurrences.
+ * Every repeating event gets a series id when it is created. Its occurrences keep that id even
+ * after being edited on their own, so series edits reach exactly the members of one series.
+ * A model can be used from several threads. Changes take a write lock and queries a read lock,
+ * so queries run in parallel with each other but never see a change half made. With the
+ * column store, queries that only read the events first run without taking the lock and are
+ * only repeated under it if a change was made in the meantime.
  */
 public class EventModel {
-  private final List<Event> seriesOfEvents;
+  // Stable sort by start time keeps the tie order described above
+  private static final Comparator<Event> StartOrder = Event::compareStart;
+  private static final int MaxReplaced = 64;
+  private static final long SecondsPerDay = 24 * 60 * 60;
+  // Shared by all models so events pasted between calendars never mix two series
+  private static final AtomicLong SeriesIds = new AtomicLong();
+
+  private IEventStore singles;
+  private final List<EventSeries> recurringSeries;
+  private final Map<Long, List<EventSeries>> rulesById;
+  private final BusyTimeIndex busyTimes;
+  private EventArchive archive;
+  private boolean crossCheck;
+  private Journal journal;
+  private int journalCalendar;
+  private final StampedLock lock;
+  // Thread running update, which already holds the write lock
+  private Thread batchOwner;
+  // Threads running readLocked, which already hold the read lock
+  private final Set<Thread> lockedReaders;
+  // Version getEvents hands out, or null after a change until the next one is built
+  private volatile EventSnapshot published;
+  // Set by the first getEvents; from then on each write publishes a version as it finishes
+  private volatile boolean versionsRead;
+  private EventSnapshot previous;
+  private LocalDateTime changedFrom;
+  // Events edited in place since the last version, and what they were replaced with
+  private final List<Event> replaced;
+  private final List<Event> replacements;
+  private final Object publishing;
 
   /**
    * Constructs a new EventModel.
    */
   public EventModel() {
-    this.seriesOfEvents = new ArrayList<>();
+    this.singles = new EventList();
+    this.recurringSeries = new ArrayList<>();
+    this.rulesById = new HashMap<>();
+    this.lock = new StampedLock();
+    this.lockedReaders = ConcurrentHashMap.newKeySet();
+    this.published = EventSnapshot.Empty;
+    this.previous = EventSnapshot.Empty;
+    this.publishing = new Object();
+    this.replaced = new ArrayList<>();
+    this.replacements = new ArrayList<>();
+    this.busyTimes = new BusyTimeIndex((date, events) -> {
+      LocalDateTime from = date.atStartOfDay();
+      LocalDateTime to = date.atTime(LocalTime.MAX);
+      long day = date.toEpochDay() * SecondsPerDay;
+      singles.forEachOverlapping(day, 0, day + SecondsPerDay - 1, to.getNano(), null,
+              events::add);
+      if (archive != null) {
+        archive.forEachOverlapping(from, to, events::add);
+      }
+      for (EventSeries series : recurringSeries) {
+        series.collectOverlapping(from, to, events);
+      }
+    });
+  }
+
+  /**
+   * Chooses how single events are held in memory. As columns, each field of the events is kept
+   * in an array of primitive values, subjects and descriptions are stored once each, and an
+   * Event is only built for an event a query returns or getEvents lists. Range queries then
+   * loop over those arrays instead of walking an interval tree of objects, at the cost of
+   * building the events they return. The events already in the model are moved over.
+   *
+   * @param columnar true to hold events as columns, false to hold Event objects
+   */
+  public void setColumnar(boolean columnar) {
+    long stamp = writeLock();
+    try {
+      if (columnar == singles instanceof EventColumns) {
+        return;
+      }
+      IEventStore store = columnar ? new EventColumns() : new EventList();
+      store.load(singles.view());
+      singles = store;
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Turns on or off the correctness mode. While it is on, every range or point query answered
+   * by the interval index is repeated with a linear scan of all events, and an
+   * IllegalStateException is thrown if the two disagree. Meant for tests only, as the scan
+   * expands every occurrence of every series.
+   *
+   * @param crossCheck true to verify the index on every query
+   */
+  public void setCrossCheck(boolean crossCheck) {
+    this.crossCheck = crossCheck;
   }
 
   /**
@@ -37,110 +152,44 @@ public class EventModel {
   public void createEvent(String userSubject, String userDescription, LocalDateTime userStartTime,
                           LocalDateTime userEndTime, Location location, Status status,
                           String[] weekDays, int repeatCount) {
-    // Create the initial event
-    Event newEvent = Event.getBuilder()
-            .setSubject(userSubject)
-            .setDescription(userDescription)
-            .setStartDateTime(userStartTime)
-            .setEndDateTime(userEndTime)
-            .setLocation(location)
-            .setStatus(status)
-            .build();
-
-    // Check for duplicates
-    if (seriesOfEvents.contains(newEvent)) {
-      throw new IllegalArgumentException("An event with the same subject, start time, and " +
-              "end time already exists");
-    }
-
-    // Add the event to the list
-    if (seriesOfEvents.isEmpty()) {
-      seriesOfEvents.add(newEvent);
-    } else {
-      sortSequence(newEvent);
-    }
-
-    // If repeatCount is provided, create recurring events
-    if (repeatCount > 0) {
-      // Get the time of the start/end time
-      LocalTime startTime;
-      LocalTime endTime;
-      if (userEndTime == null) {
-        startTime = LocalTime.of(8, 0);  // Default to 8 AM for all-day events
-        endTime = LocalTime.of(17, 0);   // Default to 5 PM for all-day events
-      } else {
-        startTime = userStartTime.toLocalTime();
-        endTime = userEndTime.toLocalTime();
-      }
-
-      // Set the current date to start the recurring events as the date of the startDateTime
-      LocalDateTime currentDate = userStartTime;
-      int createdCount = 0;
-
-      while (createdCount < repeatCount) {
-        // Move one day at a time
-        currentDate = currentDate.plusDays(1);
-
-        // If weekDays is provided, only create events on specified days
-        if (weekDays != null && weekDays.length > 0) {
-          // Convert weekDays array to list of DayOfWeek
-          List<DayOfWeek> daysToRepeat = new ArrayList<>();
-          for (String day : weekDays) {
-            switch (day.toUpperCase()) {
-              case "M":
-                daysToRepeat.add(DayOfWeek.MONDAY);
-                break;
-              case "T":
-                daysToRepeat.add(DayOfWeek.TUESDAY);
-                break;
-              case "W":
-                daysToRepeat.add(DayOfWeek.WEDNESDAY);
-                break;
-              case "R":
-                daysToRepeat.add(DayOfWeek.THURSDAY);
-                break;
-              case "F":
-                daysToRepeat.add(DayOfWeek.FRIDAY);
-                break;
-              case "S":
-                daysToRepeat.add(DayOfWeek.SATURDAY);
-                break;
-              case "U":
-                daysToRepeat.add(DayOfWeek.SUNDAY);
-                break;
-              default:
-                throw new IllegalArgumentException("Invalid Weekday");
-            }
-          }
+    long stamp = writeLock();
+    try {
+      // Shared with the stored events, and with every occurrence if the event repeats
+      String subject = singles.intern(userSubject);
+      String description = singles.intern(userDescription);
+      // Create the initial event
+      Event newEvent = Event.getBuilder()
+              .setSubject(subject)
+              .setDescription(description)
+              .setStartDateTime(userStartTime)
+              .setEndDateTime(userEndTime)
+              .setLocation(location)
+              .setStatus(status)
+              .build();
 
-          // Only create event if current day is in daysToRepeat
-          if (!daysToRepeat.contains(currentDate.getDayOfWeek())) {
-            continue;
-          }
-        }
-
-        // Create new start/end times for the current day
-        LocalDateTime newStartTime = currentDate.toLocalDate().atTime(startTime);
-        LocalDateTime newEndTime = currentDate.toLocalDate().atTime(endTime);
-
-        // Build the event
-        Event recurringEvent = Event.getBuilder()
-                .setSubject(userSubject)
-                .setDescription(userDescription)
-                .setStartDateTime(newStartTime)
-                .setEndDateTime(newEndTime)
-                .setLocation(location)
-                .setStatus(status)
-                .build();
+      // Check for duplicates
+      if (isDuplicate(newEvent)) {
+        throw new IllegalArgumentException("An event with the same subject, start time, and " +
+                "end time already exists");
+      }
 
-        // Add the event to the list and createdCount++
-        seriesOfEvents.add(recurringEvent);
-        createdCount++;
+      if (repeatCount > 0) {
+        // A repeating event is stored once as a rule and expanded when it is queried
+        addSeries(new EventSeries(SeriesIds.incrementAndGet(), subject, description,
+                userStartTime, userEndTime, location, status, weekDays, repeatCount));
+      } else {
+        // Add the event to the list
+        insertSorted(newEvent);
       }
+      if (journal != null) {
+        journal.createEvent(journalCalendar, userSubject, userDescription, userStartTime,
+                userEndTime, location, status, weekDays, repeatCount);
+      }
+    } finally {
+      unlockWrite(stamp);
     }
   }
 
-
   /**
    * Edits an existing event in the calendar system.
    *
@@ -153,21 +202,51 @@ public class EventModel {
    */
   public Event editEvent(String property, String userSubject,
                          LocalDateTime userStartTime, String newPropertyValue) {
-    // Change property to proper format using validateProperty
-    String fieldToEdit = validateProperty(property);
-    // Find the event with given information
-    Object[] found = findEvent(userSubject, userStartTime);
-    if (found == null) {
-      throw new IllegalArgumentException("Event not found");
+    return editEvent(userSubject, userStartTime, EventEdit.of(property, newPropertyValue));
+  }
+
+  /**
+   * Applies a set of property changes to an existing event.
+   *
+   * @param userSubject   subject of event
+   * @param userStartTime start date/time of event
+   * @param edit          changes to apply
+   * @return the edited event
+   * @throws IllegalArgumentException if event is not found
+   * @throws IllegalArgumentException if the edited event would end before it starts
+   */
+  public Event editEvent(String userSubject, LocalDateTime userStartTime, EventEdit edit) {
+    long stamp = writeLock();
+    try {
+      // Find the event with given information
+      Event eventToEdit = findEvent(userSubject, userStartTime);
+      Event edited;
+      if (eventToEdit != null) {
+        edited = applyEdit(eventToEdit, edit);
+      } else {
+        // An occurrence edited on its own becomes an exception of its series
+        edited = editOccurrence(userSubject, userStartTime, edit);
+        if (edited == null && archive != null
+                && archive.containsSubject(userSubject, userStartTime, userStartTime)) {
+          throw new IllegalArgumentException("Archived events cannot be edited");
+        }
+        if (edited == null) {
+          throw new IllegalArgumentException("Event not found");
+        }
+      }
+      if (journal != null) {
+        journal.editEvent(journalCalendar, userSubject, userStartTime, edit);
+      }
+      return edited;
+    } finally {
+      unlockWrite(stamp);
     }
-    Event eventToEdit = (Event) found[0];
-    int index = (int) found[1];
-    updateEventProperty(eventToEdit, fieldToEdit, newPropertyValue, index);
-    return seriesOfEvents.get(index);
   }
 
   /**
-   * Edits all events in a series from a given date.
+   * Edits all events in a series from a given date. The series is the one of the event with the
+   * given subject that starts first at or after the given date; an event that is not part of a
+   * series is edited on its own.
    *
    * @param property         property to change
    * @param userSubject      subject of event
@@ -176,23 +255,37 @@ public class EventModel {
    */
   public Event editEvents(String property, String userSubject,
                           LocalDateTime userStartTime, String newPropertyValue) {
-    // Change property to proper format using validateProperty
-    String fieldToEdit = validateProperty(property);
-    // Find events that match the given information with findEventsInSeries
-    List<Integer> indices = findEventsInSeries(userSubject, userStartTime);
-    if (indices.isEmpty()) {
-      throw new IllegalArgumentException("No events found in series");
-    }
-    for (int index : indices) {
-      Event eventToEdit = seriesOfEvents.get(index);
-      updateEventProperty(eventToEdit, fieldToEdit, newPropertyValue, index);
-      Event testEvent = seriesOfEvents.get(index);
+    return editEvents(userSubject, userStartTime, EventEdit.of(property, newPropertyValue));
+  }
+
+  /**
+   * Applies a set of property changes to all events in a series from a given date, found as in
+   * the single property version. Either every targeted event is changed or, if the edit does
+   * not fit one of them, none is.
+   *
+   * @param userSubject   subject of event
+   * @param userStartTime start date/time of event
+   * @param edit          changes to apply
+   * @return the first event of the model
+   * @throws IllegalArgumentException if no event is found
+   * @throws IllegalArgumentException if an edited event would end before it starts
+   */
+  public Event editEvents(String userSubject, LocalDateTime userStartTime, EventEdit edit) {
+    long stamp = writeLock();
+    try {
+      editAnchoredSeries(userSubject, userStartTime, userStartTime, edit);
+      if (journal != null) {
+        journal.editEvents(journalCalendar, userSubject, userStartTime, edit);
+      }
+      return firstEvent();
+    } finally {
+      unlockWrite(stamp);
     }
-    return seriesOfEvents.get(0);
   }
 
   /**
-   * Edits all events in a series regardless of date.
+   * Edits all events in a series regardless of date. The series is found the same way as in
+   * editEvents.
    *
    * @param property         property to change
    * @param userSubject      subject of event
@@ -201,149 +294,297 @@ public class EventModel {
    */
   public Event editSeries(String property, String userSubject,
                           LocalDateTime userStartTime, String newPropertyValue) {
-    // Change property to proper format using validateProperty
-    String fieldToEdit = validateProperty(property);
-    // Find events that match the given information iwht findEventsInSeries
-    List<Integer> indices = findAllEventsInSeries(userSubject);
-    if (indices.isEmpty()) {
+    return editSeries(userSubject, userStartTime, EventEdit.of(property, newPropertyValue));
+  }
+
+  /**
+   * Applies a set of property changes to all events in a series regardless of date, all or
+   * nothing like editEvents.
+   *
+   * @param userSubject   subject of event
+   * @param userStartTime start date/time of event
+   * @param edit          changes to apply
+   * @return the first event of the model
+   * @throws IllegalArgumentException if no event is found
+   * @throws IllegalArgumentException if an edited event would end before it starts
+   */
+  public Event editSeries(String userSubject, LocalDateTime userStartTime, EventEdit edit) {
+    long stamp = writeLock();
+    try {
+      editAnchoredSeries(userSubject, userStartTime, LocalDateTime.MIN, edit);
+      if (journal != null) {
+        journal.editSeries(journalCalendar, userSubject, userStartTime, edit);
+      }
+      return firstEvent();
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Helper that edits the series of every anchor event, from the given instant on. Every target
+   * is checked before the first one is changed.
+   */
+  private void editAnchoredSeries(String subject, LocalDateTime anchorTime, LocalDateTime from,
+                                  EventEdit edit) {
+    List<Event> anchors = findAnchors(subject, anchorTime);
+    // An archived event starting no later than the anchors would be one of them
+    if (archive != null && archive.containsSubject(subject, anchorTime,
+            anchors.isEmpty() ? null : anchors.get(0).getStartDateTime())) {
+      throw new IllegalArgumentException("Archived events cannot be edited");
+    }
+    if (anchors.isEmpty()) {
       throw new IllegalArgumentException("No events found in series");
     }
-    for (int index : indices) {
-      Event eventToEdit = seriesOfEvents.get(index);
-      updateEventProperty(eventToEdit, fieldToEdit, newPropertyValue, index);
+    List<Event> targets = new ArrayList<>();
+    List<EventSeries> rules = new ArrayList<>();
+    Set<Long> seriesIds = new HashSet<>();
+    for (Event anchor : anchors) {
+      long seriesId = anchor.getSeriesId();
+      if (seriesId == 0) {
+        targets.add(anchor);
+      } else if (seriesIds.add(seriesId)) {
+        rules.addAll(rulesById.getOrDefault(seriesId, Collections.emptyList()));
+        for (Event member : singles.members(seriesId)) {
+          if (!member.getStartDateTime().isBefore(from)) {
+            targets.add(member);
+          }
+        }
+      }
+    }
+
+    if (edit.changesTime()) {
+      for (Event event : targets) {
+        edit.check(event.getStartDateTime(), event.getEndDateTime());
+      }
+      for (EventSeries series : rules) {
+        for (int k = series.nextOccurrence(series.countStartingBefore(from)); k >= 0;
+             k = series.nextOccurrence(k + 1)) {
+          edit.check(series.startOf(k), series.endOf(k));
+        }
+      }
+    }
+
+    for (EventSeries series : rules) {
+      int k = series.countStartingBefore(from);
+      if (series.nextOccurrence(k) < 0) {
+        continue;
+      }
+      if (k == 0) {
+        editWholeSeries(series, edit);
+      } else {
+        // Split off the occurrences from the given date on and edit them as their own rule
+        EventSeries tail = series.tail(k);
+        replaceSeries(series, series.head(k));
+        addSeries(tail);
+        editWholeSeries(tail, edit);
+      }
+    }
+    for (Event event : targets) {
+      applyEdit(event, edit);
     }
-    return seriesOfEvents.get(0);
   }
 
   /**
-   * Helper method that turn Property to lowercase for edit, if it doesn't throw an IAE.
+   * Helper that finds the events with the given subject that start first at or after the given
+   * time. Several are returned when they start at the same time.
    */
-  private String validateProperty(String property) {
-    switch (property.toLowerCase()) {
-      case "subject":
-      case "start":
-      case "end":
-      case "description":
-      case "location":
-      case "status":
-        return property.toLowerCase();
-      default:
-        throw new IllegalArgumentException("Invalid property");
+  private List<Event> findAnchors(String subject, LocalDateTime startTime) {
+    // The store lists the starts of each subject, so this is a lookup rather than a walk
+    List<Event> anchors = new ArrayList<>(singles.firstWithSubject(subject,
+            startTime.toEpochSecond(ZoneOffset.UTC), startTime.getNano()));
+    LocalDateTime earliest = anchors.isEmpty() ? null : anchors.get(0).getStartDateTime();
+    for (EventSeries series : recurringSeries) {
+      if (!series.getSubject().equals(subject)) {
+        continue;
+      }
+      int k = series.nextOccurrence(series.countStartingBefore(startTime));
+      if (k < 0) {
+        continue;
+      }
+      int order = earliest == null ? -1 : series.startOf(k).compareTo(earliest);
+      if (order < 0) {
+        anchors.clear();
+        earliest = series.startOf(k);
+      }
+      if (order <= 0) {
+        anchors.add(series.occurrence(k));
+      }
     }
+    return anchors;
   }
 
   /**
-   * Helper that updates a property of an event.
+   * Helper that applies an edit to every occurrence of a series in the model.
+   * Subject, description, location and status are changed on the rule itself. A new start or
+   * end is an absolute date/time that no rule can express, so those occurrences become single
+   * events.
    */
-  private void updateEventProperty(Event event, String fieldToEdit, String newValue, int index) {
-    Event updatedEvent = null;
-    switch (fieldToEdit) {
-      case "subject":
-        updatedEvent = Event.getBuilder()
-                .setSubject(newValue)
-                .setDescription(event.getDescription())
-                .setStartDateTime(event.getStartDateTime())
-                .setEndDateTime(event.getEndDateTime())
-                .setLocation(event.getLocation())
-                .setStatus(event.getStatus())
-                .build();
-        break;
-      case "start":
-        LocalDateTime newStart = LocalDateTime.parse(newValue);
-        if (newStart.isAfter(event.getEndDateTime())) {
-          throw new IllegalArgumentException("New start time cannot be after end time");
-        }
-        updatedEvent = Event.getBuilder()
-                .setSubject(event.getSubject())
-                .setDescription(event.getDescription())
-                .setStartDateTime(newStart)
-                .setEndDateTime(event.getEndDateTime())
-                .setLocation(event.getLocation())
-                .setStatus(event.getStatus())
-                .build();
-        break;
-      case "end":
-        LocalDateTime newEnd = LocalDateTime.parse(newValue);
-        if (newEnd.isBefore(event.getStartDateTime())) {
-          throw new IllegalArgumentException("New end time cannot be before start time");
-        }
-        updatedEvent = Event.getBuilder()
-                .setSubject(event.getSubject())
-                .setDescription(event.getDescription())
-                .setStartDateTime(event.getStartDateTime())
-                .setEndDateTime(newEnd)
-                .setLocation(event.getLocation())
-                .setStatus(event.getStatus())
-                .build();
-        break;
-      case "description":
-        updatedEvent = Event.getBuilder()
-                .setSubject(event.getSubject())
-                .setDescription(newValue)
-                .setStartDateTime(event.getStartDateTime())
-                .setEndDateTime(event.getEndDateTime())
-                .setLocation(event.getLocation())
-                .setStatus(event.getStatus())
-                .build();
-        break;
-      case "location":
-        Location newLocation = Location.valueOf(newValue.toUpperCase());
-        updatedEvent = Event.getBuilder()
-                .setSubject(event.getSubject())
-                .setDescription(event.getDescription())
-                .setStartDateTime(event.getStartDateTime())
-                .setEndDateTime(event.getEndDateTime())
-                .setLocation(newLocation)
-                .setStatus(event.getStatus())
-                .build();
-        break;
-      case "status":
-        Status newStatus = Status.valueOf(newValue.toUpperCase());
-        updatedEvent = Event.getBuilder()
-                .setSubject(event.getSubject())
-                .setDescription(event.getDescription())
-                .setStartDateTime(event.getStartDateTime())
-                .setEndDateTime(event.getEndDateTime())
-                .setLocation(event.getLocation())
-                .setStatus(newStatus)
-                .build();
-        break;
-      default:
-        throw new IllegalArgumentException("Invalid fieldToEdit");
-    }
-    seriesOfEvents.set(index, updatedEvent);
-  }
-
-  /**
-   * Helper method that find all events in a series from a given date.
-   */
-  private List<Integer> findEventsInSeries(String subject, LocalDateTime startTime) {
-    List<Integer> indices = new ArrayList<>();
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      Event event = seriesOfEvents.get(i);
-      if (event.getSubject().equals(subject) &&
-              !event.getStartDateTime().isBefore(startTime)) {
-        indices.add(i);
-      }
-    }
-    return indices;
-  }
-
-  /**
-   * Finds all events in a series regardless of date.
+  private void editWholeSeries(EventSeries series, EventEdit edit) {
+    if (edit.changesTime()) {
+      removeSeries(series);
+      List<Event> occurrences = new ArrayList<>();
+      series.collectStartingFrom(LocalDateTime.MIN, Integer.MAX_VALUE, occurrences);
+      for (Event occurrence : occurrences) {
+        insertSorted(occurrence.withEdit(edit));
+      }
+    } else {
+      replaceSeries(series, series.withEdit(edit));
+    }
+  }
+
+  /**
+   * Helper that edits the occurrence with the given subject and start, turning it into an
+   * exception of its series and adding the edited version as a single event.
    *
-   * @param subject subject of event
-   * @return list of indices of events in the series
+   * @return the edited event, or null if no occurrence matches
    */
-  private List<Integer> findAllEventsInSeries(String subject) {
-    List<Integer> indices = new ArrayList<>();
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      Event event = seriesOfEvents.get(i);
-      if (event.getSubject().equals(subject)) {
-        indices.add(i);
+  private Event editOccurrence(String subject, LocalDateTime startTime, EventEdit edit) {
+    for (EventSeries series : recurringSeries) {
+      if (!series.getSubject().equals(subject)) {
+        continue;
+      }
+      int k = series.indexOf(startTime);
+      if (k >= 0) {
+        // Built before the series changes, so an invalid edit leaves the series as it was
+        Event edited = series.occurrence(k).withEdit(edit);
+        replaceSeries(series, series.withException(k));
+        insertSorted(edited);
+        return edited;
       }
     }
-    return indices;
+    return null;
+  }
+
+  /**
+   * Helper that puts a changed series in the place of the old one, or drops it once every
+   * occurrence is an exception.
+   */
+  private void replaceSeries(EventSeries series, EventSeries changed) {
+    if (changed.remaining() == 0) {
+      removeSeries(series);
+      return;
+    }
+    recurringSeries.set(recurringSeries.indexOf(series), changed);
+    List<EventSeries> rules = rulesById.get(series.getId());
+    rules.set(rules.indexOf(series), changed);
+    busyTimes.invalidate(series.getFirstStart(), series.lastEnd());
+    markChanged(series.getFirstStart());
+    markChanged(changed.getFirstStart());
+  }
+
+  /**
+   * Helper that adds a rule after the existing ones and registers it under its series id.
+   */
+  private void addSeries(EventSeries series) {
+    recurringSeries.add(series);
+    rulesById.computeIfAbsent(series.getId(), id -> new ArrayList<>()).add(series);
+    busyTimes.invalidate(series.getFirstStart(), series.lastEnd());
+    markChanged(series.getFirstStart());
+  }
+
+  /**
+   * Helper that removes a rule and forgets it under its series id.
+   */
+  private void removeSeries(EventSeries series) {
+    recurringSeries.remove(series);
+    List<EventSeries> rules = rulesById.get(series.getId());
+    rules.remove(series);
+    if (rules.isEmpty()) {
+      rulesById.remove(series.getId());
+    }
+    busyTimes.invalidate(series.getFirstStart(), series.lastEnd());
+    markChanged(series.getFirstStart());
+  }
+
+  /**
+   * Helper that checks whether an equal event is already stored, on its own or as an
+   * occurrence of a series.
+   */
+  private boolean isDuplicate(Event event) {
+    if (singles.contains(event)) {
+      return true;
+    }
+    if (archive != null && archive.contains(event)) {
+      return true;
+    }
+    for (EventSeries series : recurringSeries) {
+      if (series.getSubject().equals(event.getSubject())) {
+        int k = series.indexOf(event.getStartDateTime());
+        if (k >= 0 && series.endOf(k).equals(event.getEndDateTime())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Helper that returns the first event of the model in order, or null if it is empty.
+   */
+  private Event firstEvent() {
+    List<Event> firsts = new ArrayList<>();
+    if (singles.size() > 0) {
+      firsts.add(singles.get(0));
+    }
+    if (archive != null) {
+      archive.collectStartingFrom(LocalDateTime.MIN, 1, firsts);
+    }
+    for (EventSeries series : recurringSeries) {
+      series.collectStartingFrom(LocalDateTime.MIN, 1, firsts);
+    }
+    firsts.sort(StartOrder);
+    return firsts.isEmpty() ? null : firsts.get(0);
+  }
+
+  /**
+   * Helper that applies an edit to a single event in the model and returns the edited event.
+   */
+  private Event applyEdit(Event event, EventEdit edit) {
+    Event updatedEvent = event.withEdit(edit);
+    replaceEvent(event, updatedEvent);
+    return updatedEvent;
+  }
+
+  /**
+   * Helper that swaps an event for its edited version, moving it if its start time changed.
+   */
+  private void replaceEvent(Event event, Event updatedEvent) {
+    if (event.compareStart(updatedEvent) == 0) {
+      // Same key, so the edited event keeps its place in the order
+      singles.replace(event, updatedEvent);
+      busyTimes.invalidate(event.getStartDateTime(), event.getEndDateTime());
+      busyTimes.add(updatedEvent);
+      markReplaced(event, updatedEvent);
+    } else {
+      removeSorted(event);
+      insertSorted(updatedEvent);
+    }
+  }
+
+  /**
+   * Helper that adds an event after every event starting no later than it.
+   */
+  private void insertSorted(Event event) {
+    singles.insert(event);
+    busyTimes.add(event);
+    markChanged(event.getStartDateTime());
+  }
+
+  /**
+   * Helper that removes an event the store handed out.
+   */
+  private void removeSorted(Event event) {
+    singles.remove(event);
+    busyTimes.invalidate(event.getStartDateTime(), event.getEndDateTime());
+    markChanged(event.getStartDateTime());
+  }
+
+  /**
+   * Helper that returns the index of the first event starting at or after the given time.
+   */
+  private int lowerBound(LocalDateTime dateTime) {
+    return singles.lowerBound(dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano());
   }
 
   /**
@@ -353,25 +594,56 @@ public class EventModel {
    * @param endTime endTime of the event
    */
   public String printDateTimeString(LocalDateTime startTime, LocalDateTime endTime) {
-    String output = "";
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      if ((startTime.isAfter(seriesOfEvents.get(i).getStartDateTime())
-              || startTime.equals(seriesOfEvents.get(i).getStartDateTime()))
-              && (endTime.isBefore(seriesOfEvents.get(i).getEndDateTime())
-              || endTime.equals(seriesOfEvents.get(i).getEndDateTime()))) {
-        String locationLocal = "";
-        try {
-          locationLocal = seriesOfEvents.get(i).getLocation().toString();
-        } catch (NullPointerException e) {
-          // Catching IAE
+    return read(() -> {
+      StringBuilder output = new StringBuilder();
+      try {
+        writeDateTime(startTime, endTime, output);
+      } catch (IOException e) {
+        // A StringBuilder never fails to append
+        throw new UncheckedIOException(e);
+      }
+      return output.toString();
+    });
+  }
+
+  /**
+   * Writes the events containing the given time interval to out, one at a time as they are
+   * found, in the same format as printDateTimeString.
+   *
+   * @param startTime startTime of the event
+   * @param endTime   endTime of the event
+   * @param out       where the output is written
+   * @throws IOException if out fails to append
+   */
+  public void printDateTime(LocalDateTime startTime, LocalDateTime endTime, Appendable out)
+          throws IOException {
+    long stamp = readLock();
+    try {
+      writeDateTime(startTime, endTime, out);
+    } finally {
+      unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Helper that writes the events containing the interval, with the lock held or not.
+   */
+  private void writeDateTime(LocalDateTime startTime, LocalDateTime endTime, Appendable out)
+          throws IOException {
+    // An event contains the interval exactly when it starts by startTime and ends at or after
+    // endTime, which is an overlap query from endTime to startTime
+    IEventStore.TimeFilter filter = containing(startTime, endTime);
+    MatchWriter writer = new MatchWriter(filter, true, out);
+    writeOverlapping(endTime, startTime, writer);
+    if (crossCheck) {
+      List<Event> scanned = new ArrayList<>();
+      for (Event event : allEvents()) {
+        if (matches(filter, event)) {
+          scanned.add(event);
         }
-        output = output + "*" + locationLocal
-                + " " + seriesOfEvents.get(i).getSubject() + " between "
-                + seriesOfEvents.get(i).getStartDateTime() + " and "
-                + seriesOfEvents.get(i).getEndDateTime();
       }
+      verifyIndex(writer.written, scanned);
     }
-    return output;
   }
 
   /**
@@ -380,23 +652,133 @@ public class EventModel {
    * @param date date of the event
    */
   public String printDate(LocalDate date) {
-    String output = "";
+    return read(() -> {
+      StringBuilder output = new StringBuilder();
+      try {
+        writeDate(date, output);
+      } catch (IOException e) {
+        // A StringBuilder never fails to append
+        throw new UncheckedIOException(e);
+      }
+      return output.toString();
+    });
+  }
 
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      if (date.isEqual(seriesOfEvents.get(i).getStartDateTime().toLocalDate())
-              || date.isEqual(seriesOfEvents.get(i).getEndDateTime().toLocalDate())) {
-        String locationLocal = "";
-        try {
-          locationLocal = seriesOfEvents.get(i).getLocation().toString();
-        } catch (NullPointerException e) {
-          // Catching IAE
+  /**
+   * Writes the events starting or ending on the given day to out, one at a time as they are
+   * found, in the same format as printDate(LocalDate).
+   *
+   * @param date date of the event
+   * @param out  where the output is written
+   * @throws IOException if out fails to append
+   */
+  public void printDate(LocalDate date, Appendable out) throws IOException {
+    long stamp = readLock();
+    try {
+      writeDate(date, out);
+    } finally {
+      unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Helper that writes the events starting or ending on the day, with the lock held or not.
+   */
+  private void writeDate(LocalDate date, Appendable out) throws IOException {
+    IEventStore.TimeFilter filter = startingOrEndingOn(date);
+    MatchWriter writer = new MatchWriter(filter, false, out);
+    writeOverlapping(date.atStartOfDay(), date.atTime(LocalTime.MAX), writer);
+    if (crossCheck) {
+      List<Event> scanned = new ArrayList<>();
+      for (Event event : allEvents()) {
+        if (matches(filter, event)) {
+          scanned.add(event);
+        }
+      }
+      verifyIndex(writer.written, scanned);
+    }
+  }
+
+  /**
+   * Helper that hands the events overlapping [from, to] to the writer in order. Single events
+   * come straight from the store; the archived events and the occurrences of series in
+   * the window are the only ones held in memory, and are merged in between.
+   */
+  private void writeOverlapping(LocalDateTime from, LocalDateTime to, MatchWriter writer)
+          throws IOException {
+    if (archive != null) {
+      archive.forEachOverlapping(from, to, writer.occurrences::add);
+    }
+    for (EventSeries series : recurringSeries) {
+      series.collectOverlapping(from, to, writer.occurrences);
+    }
+    writer.occurrences.sort(StartOrder);
+    try {
+      // The store can drop events that do not match before building them
+      singles.forEachOverlapping(from.toEpochSecond(ZoneOffset.UTC), from.getNano(),
+              to.toEpochSecond(ZoneOffset.UTC), to.getNano(), writer.filter, writer);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writer.finish();
+  }
+
+  /**
+   * Writes the matching events it is handed to an Appendable, merging in the archived events
+   * and the occurrences of series so the output stays in order. On equal starts single events
+   * go first, as in the rest of the model.
+   */
+  private class MatchWriter implements Consumer<Event> {
+    private final IEventStore.TimeFilter filter;
+    private final boolean withTimes;
+    private final Appendable out;
+    private final List<Event> occurrences;
+    private final List<Event> written;
+    private int nextOccurrence;
+
+    private MatchWriter(IEventStore.TimeFilter filter, boolean withTimes, Appendable out) {
+      this.filter = filter;
+      this.withTimes = withTimes;
+      this.out = out;
+      this.occurrences = new ArrayList<>();
+      // Only kept for the correctness mode
+      this.written = crossCheck ? new ArrayList<>() : null;
+    }
+
+    @Override
+    public void accept(Event event) {
+      try {
+        while (nextOccurrence < occurrences.size()
+                && occurrences.get(nextOccurrence).compareStart(event) < 0) {
+          write(occurrences.get(nextOccurrence++));
         }
-        output = output + "*" + locationLocal
-                + " " + seriesOfEvents.get(i).getSubject() + " on "
-                + seriesOfEvents.get(i).getStartDateTime().toLocalDate();
+        write(event);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void finish() throws IOException {
+      while (nextOccurrence < occurrences.size()) {
+        write(occurrences.get(nextOccurrence++));
+      }
+    }
+
+    private void write(Event event) throws IOException {
+      if (!matches(filter, event)) {
+        return;
+      }
+      out.append('*').append(locationOf(event)).append(' ').append(event.getSubject());
+      if (withTimes) {
+        out.append(" between ").append(event.getStartDateTime().toString())
+                .append(" and ").append(event.getEndDateTime().toString());
+      } else {
+        out.append(" on ").append(event.getStartDateTime().toLocalDate().toString());
+      }
+      if (written != null) {
+        written.add(event);
       }
     }
-    return output;
   }
 
   /**
@@ -406,32 +788,156 @@ public class EventModel {
    * @param dateTime dateTime of the event
    */
   public String printStatus(String userInput, LocalDateTime dateTime) {
-    String output = "available";
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      if ((dateTime.isAfter(seriesOfEvents.get(i).getStartDateTime())
-              || dateTime.equals(seriesOfEvents.get(i).getStartDateTime()))
-              && (dateTime.isBefore(seriesOfEvents.get(i).getEndDateTime())
-              || dateTime.equals(seriesOfEvents.get(i).getEndDateTime()))) {
-        output = "busy";
+    // The busy-time cache fills as it is probed, so this never reads optimistically
+    long stamp = readLock();
+    try {
+      return statusAt(dateTime);
+    } finally {
+      unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Helper that answers a status probe under the read lock.
+   */
+  private String statusAt(LocalDateTime dateTime) {
+    int status = busyTimes.status(dateTime);
+    boolean busy = status == BusyTimeIndex.Busy
+            || (status == BusyTimeIndex.Unknown && anyContaining(dateTime));
+    if (crossCheck) {
+      boolean scanned = false;
+      IEventStore.TimeFilter filter = containing(dateTime, dateTime);
+      for (Event event : allEvents()) {
+        if (matches(filter, event)) {
+          scanned = true;
+        }
+      }
+      if (busy != scanned) {
+        throw new IllegalStateException("Interval index disagrees with linear scan");
       }
     }
-    return output;
+    return busy ? "busy" : "available";
   }
 
   /**
-   * Helper method to find an event by subject and start time.
+   * Helper that checks the events themselves for one containing the instant, for the minutes
+   * the busy-time bitmap cannot answer.
    */
-  private Object[] findEvent(String userSubject, LocalDateTime userStartTime) {
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      Event event = seriesOfEvents.get(i);
-      if (event.getSubject().equals(userSubject) &&
-              event.getStartDateTime().equals(userStartTime)) {
-        return new Object[]{event, i};
+  private boolean anyContaining(LocalDateTime dateTime) {
+    if (singles.anyContaining(dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano())) {
+      return true;
+    }
+    if (archive != null && archive.anyContaining(dateTime)) {
+      return true;
+    }
+    List<Event> occurrences = new ArrayList<>();
+    for (EventSeries series : recurringSeries) {
+      series.collectOverlapping(dateTime, dateTime, occurrences);
+      if (!occurrences.isEmpty()) {
+        return true;
       }
     }
-    return null;
+    return false;
+  }
+
+  /**
+   * Helper that checks whether an event covers the whole interval, end points included.
+   */
+  private static IEventStore.TimeFilter containing(LocalDateTime startTime,
+                                                  LocalDateTime endTime) {
+    long startSecond = startTime.toEpochSecond(ZoneOffset.UTC);
+    int startNano = startTime.getNano();
+    long endSecond = endTime.toEpochSecond(ZoneOffset.UTC);
+    int endNano = endTime.getNano();
+    return (eventStart, eventStartNano, eventEnd, eventEndNano) ->
+            Event.compare(eventStart, eventStartNano, startSecond, startNano) <= 0
+            && Event.compare(eventEnd, eventEndNano, endSecond, endNano) >= 0;
   }
 
+  /**
+   * Helper that checks whether an event starts or ends on the given date.
+   */
+  private static IEventStore.TimeFilter startingOrEndingOn(LocalDate date) {
+    long day = date.toEpochDay();
+    return (eventStart, eventStartNano, eventEnd, eventEndNano) ->
+            Math.floorDiv(eventStart, SecondsPerDay) == day
+            || Math.floorDiv(eventEnd, SecondsPerDay) == day;
+  }
+
+  private static boolean matches(IEventStore.TimeFilter filter, Event event) {
+    return filter.test(event.startSecond(), event.startNano(), event.endSecond(),
+            event.endNano());
+  }
+
+  /**
+   * Helper that returns the location of an event as printed, or an empty string if it has none.
+   */
+  private static String locationOf(Event event) {
+    return event.getLocation() == null ? "" : event.getLocation().toString();
+  }
+
+  /**
+   * Helper for the correctness mode that checks the index found exactly the events the linear
+   * scan found, regardless of order. Occurrences are built per query, so events are matched
+   * by equality rather than identity.
+   */
+  private static void verifyIndex(List<Event> indexed, List<Event> scanned) {
+    Map<Event, Integer> counts = new HashMap<>();
+    for (Event event : scanned) {
+      counts.merge(event, 1, Integer::sum);
+    }
+    for (Event event : indexed) {
+      Integer count = counts.get(event);
+      if (count == null) {
+        throw new IllegalStateException("Interval index disagrees with linear scan");
+      }
+      if (count == 1) {
+        counts.remove(event);
+      } else {
+        counts.put(event, count - 1);
+      }
+    }
+    if (!counts.isEmpty()) {
+      throw new IllegalStateException("Interval index disagrees with linear scan");
+    }
+  }
+
+  /**
+   * Helper that answers a query while no change is being made to the model. With a store
+   * whose reads always finish, however a change in progress leaves it, the query is first
+   * run without the lock and kept if no change was made meanwhile; an exception from reading
+   * a half made change is dropped and the query run again under the read lock.
+   */
+  private <T> T read(Supplier<T> query) {
+    if (singles.readsAlwaysFinish()) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          T result = query.get();
+          if (lock.validate(stamp)) {
+            return result;
+          }
+        } catch (RuntimeException e) {
+          // Read a change half made, answered again below
+        }
+      }
+    }
+    long stamp = readLock();
+    try {
+      return query.get();
+    } finally {
+      unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Helper method to find an event by subject and start time.
+   */
+  private Event findEvent(String userSubject, LocalDateTime userStartTime) {
+    // Only events with exactly this start need to be looked at
+    return singles.find(userSubject, userStartTime.toEpochSecond(ZoneOffset.UTC),
+            userStartTime.getNano());
+  }
 
   /**
    * Gets all events in the model. This method is primarily for testing purposes.
@@ -439,87 +945,423 @@ public class EventModel {
    * @return List of all events
    */
   public List<Event> getEvents() {
-    return new ArrayList<>(seriesOfEvents);
+    if (batchOwner == Thread.currentThread()) {
+      // Changes of a running update are seen by its own thread only, so are not published
+      return hasChanges() ? build() : previous;
+    }
+    if (!versionsRead) {
+      versionsRead = true;
+    }
+    // Readers share the version published by the last write, without locking or copying
+    EventSnapshot snapshot = published;
+    if (snapshot != null) {
+      return snapshot;
+    }
+    // Only until the first write that finishes after versions were first read
+    long stamp = readLock();
+    try {
+      return publish();
+    } finally {
+      unlockRead(stamp);
+    }
   }
 
   /**
-   * Pastes a list of events into the calendar.
+   * Runs several changes as one: other threads see the model either before all of them or
+   * after all of them, and a single new version is published for the lot. The changes
+   * are made by calling the methods of this model from the given action, on this thread.
    *
-   * @param events the list of events to paste
+   * @param changes the changes to make
    */
-  public void paste(List<Event> events) {
-    for (Event event : events) {
-      if (!seriesOfEvents.contains(event)) {
-        seriesOfEvents.add(event);
+  public void update(Consumer<EventModel> changes) {
+    long stamp = writeLock();
+    Thread owner = batchOwner;
+    batchOwner = Thread.currentThread();
+    try {
+      changes.accept(this);
+    } finally {
+      batchOwner = owner;
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Runs an action with the read lock held, so the model does not change while the action
+   * reads it. Reads of this model the action makes on this thread take no further lock. Used
+   * by CalendarManager to hold the source of a copy while it writes the target.
+   *
+   * @param action the action to run
+   */
+  void readLocked(Runnable action) {
+    Thread current = Thread.currentThread();
+    if (batchOwner == current || lockedReaders.contains(current)) {
+      action.run();
+      return;
+    }
+    long stamp = lock.readLock();
+    lockedReaders.add(current);
+    try {
+      action.run();
+    } finally {
+      lockedReaders.remove(current);
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Helper that publishes the version of the events after the changes made since the last
+   * one. Called with the read or write lock held; builders take turns on their own monitor.
+   */
+  private EventSnapshot publish() {
+    synchronized (publishing) {
+      if (hasChanges()) {
+        previous = build();
+        changedFrom = null;
+        replaced.clear();
+        replacements.clear();
+        published = previous;
       }
+      return previous;
     }
   }
 
-  private void sortSequence(Event e2) {
-    int lastOfIndex = seriesOfEvents.size() - 1;
-    Event e1 = seriesOfEvents.get(lastOfIndex);
+  /**
+   * Helper that builds the version of the events after the changes made since the last one.
+   * Events edited in place are swapped into copies of their chunks; from the earliest other
+   * change on, the events are listed again.
+   */
+  private EventSnapshot build() {
+    EventSnapshot snapshot = previous;
+    if (!replaced.isEmpty()) {
+      snapshot = snapshot.withReplaced(replaced, replacements);
+    }
+    if (changedFrom != null) {
+      snapshot = withChangesFrom(snapshot);
+    }
+    if (crossCheck && !sameEvents(snapshot, allEvents())) {
+      throw new IllegalStateException("Published events disagree with linear scan");
+    }
+    return snapshot;
+  }
 
-    LocalDateTime o1 = e1.getStartDateTime();
-    LocalDateTime o2 = e2.getStartDateTime();
+  /**
+   * Helper that lists again the events of a version from the earliest change on.
+   */
+  private EventSnapshot withChangesFrom(EventSnapshot last) {
+    long second = changedFrom.toEpochSecond(ZoneOffset.UTC);
+    int nano = changedFrom.getNano();
+    List<Event> tail = new ArrayList<>(singles.view().subList(
+            singles.lowerBound(second, nano), singles.size()));
+    if (archive != null) {
+      archive.collectStartingFrom(changedFrom, Integer.MAX_VALUE, tail);
+    }
+    for (EventSeries series : recurringSeries) {
+      series.collectStartingFrom(changedFrom, Integer.MAX_VALUE, tail);
+    }
+    tail.sort(StartOrder);
+    return last.withTail(last.countStartingBefore(second, nano), tail);
+  }
 
-    // Compare the date for two Events
-    int result = o1.toLocalDate().compareTo(o2.toLocalDate());
+  /**
+   * Helper that records a change to the events starting at or after the given time, so the
+   * next version is built from there on. Once versions are read, the last one stays published
+   * until the write is done.
+   */
+  private void markChanged(LocalDateTime from) {
+    if (!versionsRead) {
+      published = null;
+    }
+    if (changedFrom == null || from.isBefore(changedFrom)) {
+      changedFrom = from;
+    }
+  }
 
-    if (seriesOfEvents.size() > 1) {
-      if (result == 0) {
-        // Same date — compare time
-        result = o1.toLocalTime().compareTo(o2.toLocalTime());
-        if (result <= 0) {
-          seriesOfEvents.add(e2); // Append if later or equal
-        } else {
-          seriesOfEvents.add(lastOfIndex, e2); // Insert before last
-        }
-      } else if (result > 0) {
-        // New event is earlier than the last one
-        boolean inserted = false;
-        for (int i = seriesOfEvents.size() - 1; i >= 0; i--) {
-          LocalDateTime existing = seriesOfEvents.get(i).getStartDateTime();
-          int dayCompare = existing.toLocalDate().compareTo(o2.toLocalDate());
-          if (dayCompare > 0) {
-            continue; // Keep moving back
-          } else if (dayCompare == 0) {
-            int timeCompare = existing.toLocalTime().compareTo(o2.toLocalTime());
-            if (timeCompare > 0) {
-              continue;
-            } else {
-              seriesOfEvents.add(i + 1, e2); // Insert after this one
-              inserted = true;
-              break;
-            }
-          } else {
-            seriesOfEvents.add(i + 1, e2); // Insert after earlier date
-            inserted = true;
-            break;
-          }
+  /**
+   * Helper that records an event edited without moving it, so the next version swaps it in.
+   * Past a few such edits between versions, they are listed again like other changes instead.
+   */
+  private void markReplaced(Event event, Event updatedEvent) {
+    if (replaced.size() == MaxReplaced) {
+      for (Event earlier : replaced) {
+        markChanged(earlier.getStartDateTime());
+      }
+      replaced.clear();
+      replacements.clear();
+    }
+    if (!versionsRead) {
+      published = null;
+    }
+    replaced.add(event);
+    replacements.add(updatedEvent);
+  }
+
+  /**
+   * Helper that tells whether changes were made since the last version.
+   */
+  private boolean hasChanges() {
+    return changedFrom != null || !replaced.isEmpty();
+  }
+
+  /**
+   * Helper that takes the write lock, unless this thread holds it for update.
+   */
+  private long writeLock() {
+    return batchOwner == Thread.currentThread() ? 0 : lock.writeLock();
+  }
+
+  /**
+   * Helper that releases the write lock taken by writeLock, first publishing the changes made
+   * under it if versions are read.
+   */
+  private void unlockWrite(long stamp) {
+    if (stamp != 0) {
+      try {
+        if (versionsRead && hasChanges()) {
+          publish();
         }
-        if (!inserted) {
-          seriesOfEvents.add(0, e2); // Insert at beginning if earliest
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Helper that takes the read lock, unless this thread holds the write lock for update or the
+   * read lock for readLocked.
+   */
+  private long readLock() {
+    Thread current = Thread.currentThread();
+    if (batchOwner == current || !lockedReaders.isEmpty() && lockedReaders.contains(current)) {
+      return 0;
+    }
+    return lock.readLock();
+  }
+
+  private void unlockRead(long stamp) {
+    if (stamp != 0) {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Helper that checks whether two lists hold events matching in every field, in the same order.
+   */
+  private static boolean sameEvents(List<Event> a, List<Event> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (!a.get(i).sameAs(b.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Helper that lists every event, for getEvents and the correctness mode.
+   */
+  private List<Event> allEvents() {
+    List<Event> events = new ArrayList<>(singles.view());
+    if (archive != null) {
+      archive.collectAll(events);
+    }
+    if (archive != null || !recurringSeries.isEmpty()) {
+      for (EventSeries series : recurringSeries) {
+        series.collectStartingFrom(LocalDateTime.MIN, Integer.MAX_VALUE, events);
+      }
+      events.sort(StartOrder);
+    }
+    return events;
+  }
+
+  /**
+   * Returns the events overlapping the closed interval from one time to another, in the order
+   * getEvents lists them. Used by CalendarManager to copy events without listing all of them.
+   *
+   * @param from start of the interval
+   * @param to   end of the interval
+   * @return the events
+   */
+  List<Event> eventsOverlapping(LocalDateTime from, LocalDateTime to) {
+    return read(() -> collectOverlapping(from, to));
+  }
+
+  /**
+   * Helper that lists the events overlapping the interval, with the lock held or not.
+   */
+  private List<Event> collectOverlapping(LocalDateTime from, LocalDateTime to) {
+    List<Event> events = new ArrayList<>();
+    singles.forEachOverlapping(from.toEpochSecond(ZoneOffset.UTC), from.getNano(),
+            to.toEpochSecond(ZoneOffset.UTC), to.getNano(), null, events::add);
+    if (archive != null) {
+      archive.forEachOverlapping(from, to, events::add);
+    }
+    for (EventSeries series : recurringSeries) {
+      series.collectOverlapping(from, to, events);
+    }
+    events.sort(StartOrder);
+    if (crossCheck) {
+      List<Event> scanned = new ArrayList<>();
+      for (Event event : allEvents()) {
+        if (!event.getEndDateTime().isBefore(from) && !event.getStartDateTime().isAfter(to)) {
+          scanned.add(event);
         }
-      } else {
-        // New event is later — just append
-        seriesOfEvents.add(e2);
       }
-    } else {
-      // Only one event in list
-      if (result == 0) {
-        result = o1.toLocalTime().compareTo(o2.toLocalTime());
-        if (result <= 0) {
-          seriesOfEvents.add(e2);
+      verifyIndex(events, scanned);
+    }
+    return events;
+  }
+
+  /**
+   * Moves the single events that are not part of a series and end before the cutoff into an
+   * archive file, along with the events already archived. The file is replaced if it exists;
+   * an archive that was open on it keeps working until the model switches to the new one.
+   * Nothing is written if no event is moved.
+   *
+   * @param cutoff events ending before this time are moved
+   * @param file   the archive file to write
+   * @return the number of events moved
+   * @throws IOException if the archive cannot be written, in which case the model is unchanged
+   */
+  public int archive(LocalDateTime cutoff, Path file) throws IOException {
+    long stamp = writeLock();
+    try {
+      long cutoffSecond = cutoff.toEpochSecond(ZoneOffset.UTC);
+      List<Event> kept = new ArrayList<>();
+      List<Event> moved = new ArrayList<>();
+      for (Event event : singles.view()) {
+        if (event.getSeriesId() == 0 && event.compareEnd(cutoffSecond, cutoff.getNano()) < 0) {
+          moved.add(event);
         } else {
-          seriesOfEvents.remove(0);
-          seriesOfEvents.add(e2);
-          seriesOfEvents.add(e1);
+          kept.add(event);
         }
-      } else if (result > 0) {
-        seriesOfEvents.add(0, e2); // Earlier date, insert in front
-      } else {
-        seriesOfEvents.add(e2); // Later date, append
       }
+      if (moved.isEmpty()) {
+        return 0;
+      }
+      List<Event> archived = new ArrayList<>();
+      if (archive != null) {
+        archive.collectAll(archived);
+      }
+      // Stable, so events already archived stay ahead of moved ones that start at the same time
+      archived.addAll(moved);
+      archived.sort(StartOrder);
+      EventArchive.write(file, archived);
+      EventArchive opened = EventArchive.open(file);
+
+      singles.load(kept);
+      archive = opened;
+      busyTimes.clear();
+      markChanged(LocalDateTime.MIN);
+      return moved.size();
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Returns the archive of the model, or null if it has none.
+   */
+  EventArchive getArchive() {
+    return archive;
+  }
+
+  /**
+   * Makes the model search the given archive along with its own events, for CalendarSnapshot.
+   */
+  void setArchive(EventArchive archive) {
+    long stamp = writeLock();
+    try {
+      this.archive = archive;
+      busyTimes.clear();
+      markChanged(LocalDateTime.MIN);
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Returns the single events in order, for CalendarSnapshot. The list must not be changed.
+   */
+  List<Event> singleEvents() {
+    return singles.view();
+  }
+
+  /**
+   * Returns the series rules in creation order, for CalendarSnapshot.
+   */
+  List<EventSeries> seriesRules() {
+    return Collections.unmodifiableList(recurringSeries);
+  }
+
+  /**
+   * Fills an empty model with the contents of a snapshot, building the indexes in one pass
+   * instead of adding the events one at a time.
+   *
+   * @param events single events in the order singleEvents returned them
+   * @param series series rules in the order seriesRules returned them
+   * @throws IllegalStateException if the model is not empty
+   */
+  void load(List<Event> events, List<EventSeries> series) {
+    long stamp = writeLock();
+    try {
+      if (singles.size() != 0 || !recurringSeries.isEmpty()) {
+        throw new IllegalStateException("Snapshots can only be loaded into an empty model");
+      }
+      singles.load(events);
+      long maxId = 0;
+      for (Event event : events) {
+        maxId = Math.max(maxId, event.getSeriesId());
+      }
+      for (EventSeries rule : series) {
+        addSeries(rule);
+        maxId = Math.max(maxId, rule.getId());
+      }
+      busyTimes.clear();
+      markChanged(LocalDateTime.MIN);
+      // Series created from now on must not reuse the ids of the loaded ones
+      long reserved = maxId;
+      SeriesIds.getAndUpdate(id -> Math.max(id, reserved));
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Logs the changes made to the model to a journal from now on.
+   *
+   * @param journal  the journal
+   * @param calendar position of the model's calendar, which the journal knows it by
+   */
+  void setJournal(Journal journal, int calendar) {
+    long stamp = writeLock();
+    try {
+      this.journal = journal;
+      this.journalCalendar = calendar;
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Pastes a list of events into the calendar.
+   *
+   * @param events the list of events to paste
+   */
+  public void paste(List<Event> events) {
+    long stamp = writeLock();
+    try {
+      for (Event event : events) {
+        if (!isDuplicate(event)) {
+          insertSorted(event);
+        }
+      }
+      if (journal != null) {
+        journal.paste(journalCalendar, events);
+      }
+    } finally {
+      unlockWrite(stamp);
     }
   }
 
@@ -529,16 +1371,35 @@ public class EventModel {
    * @param date date of the day that user calls
    */
   public int eventsLeft(String date) {
+    return read(() -> countEventsLeft(date));
+  }
+
+  /**
+   * Helper that counts the events starting by the end of the day, with the lock held or not.
+   */
+  private int countEventsLeft(String date) {
     LocalDate dateTime = LocalDate.parse(date);
-    List<Event> events = new ArrayList<>();
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      LocalDateTime o1 = seriesOfEvents.get(i).getStartDateTime();
-      int result = o1.toLocalDate().compareTo(dateTime);
-      if (result <= 0) {
-        events.add(seriesOfEvents.get(i));
+    // Single events starting before the next day are the ones in front of its lower bound
+    LocalDateTime nextDay = dateTime.plusDays(1).atStartOfDay();
+    int count = lowerBound(nextDay);
+    if (archive != null) {
+      count += archive.countStartingBefore(nextDay);
+    }
+    for (EventSeries series : recurringSeries) {
+      count += series.countExpandedBefore(nextDay);
+    }
+    if (crossCheck) {
+      int scanned = 0;
+      for (Event event : allEvents()) {
+        if (!event.getStartDateTime().toLocalDate().isAfter(dateTime)) {
+          scanned++;
+        }
+      }
+      if (count != scanned) {
+        throw new IllegalStateException("Sorted order disagrees with linear scan");
       }
     }
-    return events.size();
+    return count;
   }
 
   /**
@@ -547,23 +1408,43 @@ public class EventModel {
    * @param input input of the day that user calls
    */
   public List<Event> eventsToView(String input) {
+    return read(() -> firstEventsFrom(input));
+  }
+
+  /**
+   * Helper that lists the first ten events from the day on, with the lock held or not.
+   */
+  private List<Event> firstEventsFrom(String input) {
     LocalDate startDate = LocalDate.parse(input);
-    List<Event> events = new ArrayList<>(seriesOfEvents);
-    for (int i = 0; i < seriesOfEvents.size(); i++) {
-      LocalDateTime o1 = seriesOfEvents.get(i).getStartDateTime();
-      int result = o1.toLocalDate().compareTo(startDate);
-      if (result < 0) {
-        events.remove(seriesOfEvents.get(i));
+    LocalDateTime from = startDate.atStartOfDay();
+    int first = lowerBound(from);
+    int last = Math.min(first + 10, singles.size());
+    List<Event> events = new ArrayList<>(singles.view().subList(first, last));
+    if (archive != null) {
+      archive.collectStartingFrom(from, 10, events);
+    }
+    if (archive != null || !recurringSeries.isEmpty()) {
+      // The archive and each series can contribute at most the ten events that are shown
+      for (EventSeries series : recurringSeries) {
+        series.collectStartingFrom(from, 10, events);
+      }
+      events.sort(StartOrder);
+      if (events.size() > 10) {
+        events = new ArrayList<>(events.subList(0, 10));
       }
     }
-    if (eventsLeft(input) <= 10) {
-      return events;
-    } else {
-      while (events.size() > 10) {
-        events.remove(events.size() - 1);
+    if (crossCheck) {
+      List<Event> scanned = new ArrayList<>();
+      for (Event event : allEvents()) {
+        if (!event.getStartDateTime().toLocalDate().isBefore(startDate)) {
+          scanned.add(event);
+        }
+      }
+      if (!scanned.subList(0, Math.min(10, scanned.size())).equals(events)) {
+        throw new IllegalStateException("Sorted order disagrees with linear scan");
       }
     }
     return events;
   }
 
-}
\ No newline at end of file
+}
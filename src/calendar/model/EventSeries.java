@@ -0,0 +1,494 @@
+package calendar.model;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A recurring event stored as a rule instead of one Event per occurrence.
+ * Occurrence 0 is the event the series was created from. Every later occurrence falls on the
+ * next day after the previous one that is in the weekday mask, at the series' start and end
+ * times of day. Occurrences are only turned into Event objects when a query asks for them.
+ * Occurrences that were edited on their own are recorded as exceptions and no longer expanded.
+ * Instances never change; edits return a new series.
+ */
+public class EventSeries {
+  private static final LocalTime StartOfEvent = LocalTime.of(8, 0); // 8:00 AM
+  private static final LocalTime EndOfEvent = LocalTime.of(17, 0);  // 5:00 PM
+  private static final int EveryDay = 0x7F;
+
+  private final long id;
+  private final String subject;
+  private final String description;
+  private final Location location;
+  private final Status status;
+  private final LocalDateTime firstStart;
+  private final LocalDateTime firstEnd;
+  private final LocalTime startTime;
+  private final LocalTime endTime;
+  private final int weekdayMask;
+  private final int repeatCount;
+  private final BitSet exceptions;
+
+  // Offsets (1 to 7) from the first date to the matching days of the week that follows it
+  private final int[] dayOffsets;
+
+  /**
+   * Constructs a new series from the values given to EventModel.createEvent.
+   *
+   * @param id            series id carried by every occurrence
+   * @param subject       subject of every occurrence
+   * @param description   description of every occurrence
+   * @param firstStart    start date/time of the first occurrence
+   * @param firstEnd      end date/time of the first occurrence, or null for all-day events
+   * @param location      location of every occurrence
+   * @param status        status of every occurrence
+   * @param weekDays      weekday letters (M T W R F S U) to repeat on, null or empty for daily
+   * @param repeatCount   number of occurrences after the first one
+   * @throws IllegalArgumentException if a weekday letter is invalid
+   * @throws IllegalArgumentException if the occurrences would end before they start
+   */
+  public EventSeries(long id, String subject, String description, LocalDateTime firstStart,
+                     LocalDateTime firstEnd, Location location, Status status,
+                     String[] weekDays, int repeatCount) {
+    this.id = id;
+    this.subject = subject;
+    this.description = description;
+    this.location = location;
+    this.status = status;
+    this.repeatCount = repeatCount;
+    this.weekdayMask = parseWeekDays(weekDays);
+    this.exceptions = new BitSet();
+
+    // Get the time of the start/end time
+    if (firstEnd == null) {
+      this.startTime = StartOfEvent;  // Default to 8 AM for all-day events
+      this.endTime = EndOfEvent;      // Default to 5 PM for all-day events
+      this.firstStart = firstStart.toLocalDate().atTime(StartOfEvent);
+      this.firstEnd = firstStart.toLocalDate().atTime(EndOfEvent);
+    } else {
+      this.startTime = firstStart.toLocalTime();
+      this.endTime = firstEnd.toLocalTime();
+      this.firstStart = firstStart;
+      this.firstEnd = firstEnd;
+    }
+    if (repeatCount > 0 && endTime.isBefore(startTime)) {
+      throw new IllegalArgumentException("EndDateTime cannot be before startDateTime");
+    }
+    this.dayOffsets = offsetsFor(this.firstStart.toLocalDate(), weekdayMask);
+  }
+
+  /**
+   * Copy constructor used by the methods that derive a changed series.
+   */
+  private EventSeries(long id, String subject, String description, Location location,
+                      Status status, LocalDateTime firstStart, LocalDateTime firstEnd,
+                      LocalTime startTime, LocalTime endTime, int weekdayMask, int repeatCount,
+                      BitSet exceptions) {
+    this.id = id;
+    this.subject = subject;
+    this.description = description;
+    this.location = location;
+    this.status = status;
+    this.firstStart = firstStart;
+    this.firstEnd = firstEnd;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.weekdayMask = weekdayMask;
+    this.repeatCount = repeatCount;
+    this.exceptions = exceptions;
+    this.dayOffsets = offsetsFor(firstStart.toLocalDate(), weekdayMask);
+  }
+
+  /**
+   * Returns the id shared by the occurrences. A series split in two keeps its id.
+   *
+   * @return the series id
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * Recreates a series from the fields a snapshot stored.
+   */
+  static EventSeries restore(long id, String subject, String description, Location location,
+                             Status status, LocalDateTime firstStart, LocalDateTime firstEnd,
+                             LocalTime startTime, LocalTime endTime, int weekdayMask,
+                             int repeatCount, BitSet exceptions) {
+    return new EventSeries(id, subject, description, location, status, firstStart, firstEnd,
+            startTime, endTime, weekdayMask, repeatCount, exceptions);
+  }
+
+  /**
+   * Returns the subject shared by the occurrences.
+   *
+   * @return the subject of the series
+   */
+  public String getSubject() {
+    return subject;
+  }
+
+  /**
+   * Returns the start of the first occurrence.
+   *
+   * @return start date/time of occurrence 0
+   */
+  public LocalDateTime getFirstStart() {
+    return firstStart;
+  }
+
+  /**
+   * Returns the number of occurrences in the rule, exceptions included.
+   *
+   * @return index of the last occurrence plus one
+   */
+  public int size() {
+    return repeatCount + 1;
+  }
+
+  /**
+   * Returns the number of occurrences that are still expanded from the rule.
+   *
+   * @return number of occurrences that are not exceptions
+   */
+  public int remaining() {
+    return size() - exceptions.cardinality();
+  }
+
+  /**
+   * Finds the first occurrence at or after index k that is not an exception.
+   *
+   * @param k index to start looking from
+   * @return index of that occurrence, or -1 if there is none
+   */
+  public int nextOccurrence(int k) {
+    int next = exceptions.nextClearBit(k);
+    return next < size() ? next : -1;
+  }
+
+  /**
+   * Returns the start date/time of the given occurrence.
+   *
+   * @param k index of the occurrence
+   * @return its start
+   */
+  public LocalDateTime startOf(int k) {
+    return k == 0 ? firstStart : dateOf(k).atTime(startTime);
+  }
+
+  /**
+   * Returns the end date/time of the given occurrence.
+   *
+   * @param k index of the occurrence
+   * @return its end
+   */
+  public LocalDateTime endOf(int k) {
+    return k == 0 ? firstEnd : dateOf(k).atTime(endTime);
+  }
+
+  /**
+   * Builds the event for the given occurrence.
+   *
+   * @param k index of the occurrence
+   * @return a new Event for it
+   */
+  public Event occurrence(int k) {
+    return Event.getBuilder()
+            .setSubject(subject)
+            .setDescription(description)
+            .setStartDateTime(startOf(k))
+            .setEndDateTime(endOf(k))
+            .setLocation(location)
+            .setStatus(status)
+            .setSeriesId(id)
+            .build();
+  }
+
+  /**
+   * Returns the latest end of any occurrence in the rule.
+   *
+   * @return end of the series span
+   */
+  public LocalDateTime lastEnd() {
+    LocalDateTime last = endOf(repeatCount);
+    return last.isAfter(firstEnd) ? last : firstEnd;
+  }
+
+  /**
+   * Counts the occurrences in the rule, exceptions included, that start strictly before the
+   * given instant. This is also the index of the first occurrence starting at or after it.
+   *
+   * @param dateTime instant to compare against
+   * @return number of occurrences starting before the instant
+   */
+  public int countStartingBefore(LocalDateTime dateTime) {
+    if (!firstStart.isBefore(dateTime)) {
+      return 0;
+    }
+    LocalDate firstDate = firstStart.toLocalDate();
+    LocalDate date = dateTime.toLocalDate();
+    long days = ChronoUnit.DAYS.between(firstDate, date);
+    if (days <= 0) {
+      return 1;
+    }
+    // Matching days strictly after the first date and strictly before the given date
+    long count = matchingDays(days - 1);
+    if ((weekdayMask & maskOf(date.getDayOfWeek())) != 0 && startTime.isBefore(
+            dateTime.toLocalTime())) {
+      count++;
+    }
+    return 1 + (int) Math.min(count, repeatCount);
+  }
+
+  /**
+   * Counts the occurrences that are not exceptions and start strictly before the instant.
+   *
+   * @param dateTime instant to compare against
+   * @return number of expanded occurrences starting before the instant
+   */
+  public int countExpandedBefore(LocalDateTime dateTime) {
+    int k = countStartingBefore(dateTime);
+    return k - exceptions.get(0, k).cardinality();
+  }
+
+  /**
+   * Finds the occurrence that starts exactly at the given instant.
+   *
+   * @param dateTime start to look for
+   * @return index of the occurrence, or -1 if none starts then or it is an exception
+   */
+  public int indexOf(LocalDateTime dateTime) {
+    int k = countStartingBefore(dateTime);
+    if (k < size() && !exceptions.get(k) && startOf(k).equals(dateTime)) {
+      return k;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds, in start order, the occurrences that are not exceptions and overlap the closed
+   * interval [from, to]. Only the occurrences inside the window are expanded.
+   *
+   * @param from start of the interval
+   * @param to   end of the interval
+   * @param out  list the occurrences are added to
+   */
+  public void collectOverlapping(LocalDateTime from, LocalDateTime to, List<Event> out) {
+    if (firstStart.isAfter(to) || lastEnd().isBefore(from)) {
+      return;
+    }
+    if (!exceptions.get(0) && !firstEnd.isBefore(from)) {
+      out.add(occurrence(0));
+    }
+    // Later occurrences all last the same time, so their ends are in start order too
+    Duration length = Duration.between(startTime, endTime);
+    int k = Math.max(1, countStartingBefore(from.minus(length)));
+    for (; k <= repeatCount; k++) {
+      LocalDateTime start = startOf(k);
+      if (start.isAfter(to)) {
+        break;
+      }
+      if (!exceptions.get(k)) {
+        out.add(occurrence(k));
+      }
+    }
+  }
+
+  /**
+   * Adds, in start order, up to limit occurrences that are not exceptions and start at or
+   * after the given instant.
+   *
+   * @param dateTime earliest start to include
+   * @param limit    maximum number of occurrences to add
+   * @param out      list the occurrences are added to
+   */
+  public void collectStartingFrom(LocalDateTime dateTime, int limit, List<Event> out) {
+    int added = 0;
+    for (int k = countStartingBefore(dateTime); k <= repeatCount && added < limit; k++) {
+      if (!exceptions.get(k)) {
+        out.add(occurrence(k));
+        added++;
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of this series where the given occurrence is an exception.
+   *
+   * @param k index of the occurrence
+   * @return the changed series
+   */
+  public EventSeries withException(int k) {
+    BitSet changed = (BitSet) exceptions.clone();
+    changed.set(k);
+    return new EventSeries(id, subject, description, location, status, firstStart, firstEnd,
+            startTime, endTime, weekdayMask, repeatCount, changed);
+  }
+
+  /**
+   * Returns a copy of this series with subject, description, location or status changed for
+   * every occurrence.
+   *
+   * @param edit changes to apply
+   * @return the changed series
+   * @throws IllegalArgumentException if the edit moves the start or end, which no rule can
+   *                                  express
+   */
+  public EventSeries withEdit(EventEdit edit) {
+    if (edit.changesTime()) {
+      throw new IllegalArgumentException("Invalid fieldToEdit");
+    }
+    return new EventSeries(id, edit.subjectOr(subject), edit.descriptionOr(description),
+            edit.locationOr(location), edit.statusOr(status), firstStart, firstEnd, startTime,
+            endTime, weekdayMask, repeatCount, exceptions);
+  }
+
+  // Package-private field access for CalendarSnapshot
+
+  String getDescription() {
+    return description;
+  }
+
+  Location getLocation() {
+    return location;
+  }
+
+  Status getStatus() {
+    return status;
+  }
+
+  LocalDateTime getFirstEnd() {
+    return firstEnd;
+  }
+
+  LocalTime getStartTime() {
+    return startTime;
+  }
+
+  LocalTime getEndTime() {
+    return endTime;
+  }
+
+  int getWeekdayMask() {
+    return weekdayMask;
+  }
+
+  int getRepeatCount() {
+    return repeatCount;
+  }
+
+  /**
+   * Returns the exceptions themselves, which callers must not change.
+   */
+  BitSet getExceptions() {
+    return exceptions;
+  }
+
+  /**
+   * Returns the occurrences before index k as a series.
+   *
+   * @param k index of the first occurrence to leave out, at least 1
+   * @return the shortened series
+   */
+  public EventSeries head(int k) {
+    return new EventSeries(id, subject, description, location, status, firstStart, firstEnd,
+            startTime, endTime, weekdayMask, k - 1, exceptions.get(0, k));
+  }
+
+  /**
+   * Returns the occurrences from index k on as a series of their own.
+   *
+   * @param k index of the occurrence that becomes the first one, at least 1
+   * @return the new series
+   */
+  public EventSeries tail(int k) {
+    return new EventSeries(id, subject, description, location, status, startOf(k), endOf(k),
+            startTime, endTime, weekdayMask, repeatCount - k, exceptions.get(k, size()));
+  }
+
+  /**
+   * Counts the matching days among the given number of days that follow the first date.
+   */
+  private long matchingDays(long days) {
+    long count = (days / 7) * dayOffsets.length;
+    long rest = days % 7;
+    for (int offset : dayOffsets) {
+      if (offset <= rest) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the date of occurrence k, for k of at least 1.
+   */
+  private LocalDate dateOf(int k) {
+    int perWeek = dayOffsets.length;
+    int weeks = (k - 1) / perWeek;
+    int position = (k - 1) % perWeek;
+    return firstStart.toLocalDate().plusDays(7L * weeks + dayOffsets[position]);
+  }
+
+  /**
+   * Helper that lists the offsets 1 to 7 from the first date that fall on a matching weekday.
+   */
+  private static int[] offsetsFor(LocalDate firstDate, int weekdayMask) {
+    int[] offsets = new int[Integer.bitCount(weekdayMask)];
+    int count = 0;
+    for (int offset = 1; offset <= 7; offset++) {
+      if ((weekdayMask & maskOf(firstDate.plusDays(offset).getDayOfWeek())) != 0) {
+        offsets[count++] = offset;
+      }
+    }
+    return offsets;
+  }
+
+  private static int maskOf(DayOfWeek day) {
+    return 1 << (day.getValue() - 1);
+  }
+
+  /**
+   * Helper that turns weekday letters into a bit mask, once for the whole series.
+   */
+  private static int parseWeekDays(String[] weekDays) {
+    if (weekDays == null || weekDays.length == 0) {
+      return EveryDay;
+    }
+    int mask = 0;
+    for (String day : weekDays) {
+      switch (day.toUpperCase()) {
+        case "M":
+          mask |= maskOf(DayOfWeek.MONDAY);
+          break;
+        case "T":
+          mask |= maskOf(DayOfWeek.TUESDAY);
+          break;
+        case "W":
+          mask |= maskOf(DayOfWeek.WEDNESDAY);
+          break;
+        case "R":
+          mask |= maskOf(DayOfWeek.THURSDAY);
+          break;
+        case "F":
+          mask |= maskOf(DayOfWeek.FRIDAY);
+          break;
+        case "S":
+          mask |= maskOf(DayOfWeek.SATURDAY);
+          break;
+        case "U":
+          mask |= maskOf(DayOfWeek.SUNDAY);
+          break;
+        default:
+          throw new IllegalArgumentException("Invalid Weekday");
+      }
+    }
+    return mask;
+  }
+}
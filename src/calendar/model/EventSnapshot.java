@@ -0,0 +1,131 @@
+package calendar.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of every event of an EventModel at one point in time, in the order getEvents
+ * lists them. Events are held in chunks of a fixed size, and a newer version built with
+ * withTail shares the chunks in front of the first event that changed, so publishing a version
+ * after a change near the end of a calendar only builds its last few chunks.
+ */
+final class EventSnapshot extends AbstractList<Event> implements RandomAccess {
+  private static final int ChunkBits = 10;
+  private static final int ChunkSize = 1 << ChunkBits;
+
+  /**
+   * Snapshot of a model without events.
+   */
+  static final EventSnapshot Empty = new EventSnapshot(new Event[0][], 0);
+
+  private final Event[][] chunks;
+  private final int size;
+
+  private EventSnapshot(Event[][] chunks, int size) {
+    this.chunks = chunks;
+    this.size = size;
+  }
+
+  @Override
+  public Event get(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(i);
+    }
+    return chunks[i >>> ChunkBits][i & (ChunkSize - 1)];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of events starting before the given time, which are the first ones.
+   *
+   * @param second seconds of the epoch
+   * @param nano   nanoseconds
+   * @return the number of events
+   */
+  int countStartingBefore(long second, int nano) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (get(mid).compareStart(second, nano) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns a snapshot in which events of this one are replaced by events starting at the same
+   * time, so the order stays the same. Only the chunks holding replaced events are copied; the
+   * rest are shared with this snapshot. Replacements apply in turn, so an event can be replaced
+   * by one that a later replacement replaces again. Events are matched by every field rather
+   * than by instance, since a store may build a new event on each read. An event that is not in
+   * the snapshot is left alone.
+   *
+   * @param replaced     the events to replace
+   * @param replacements the event replacing each of them
+   * @return the new snapshot
+   */
+  EventSnapshot withReplaced(List<Event> replaced, List<Event> replacements) {
+    Event[][] newChunks = chunks.clone();
+    boolean[] copied = new boolean[chunks.length];
+    EventSnapshot result = new EventSnapshot(newChunks, size);
+    for (int r = 0; r < replaced.size(); r++) {
+      Event event = replaced.get(r);
+      int i = result.countStartingBefore(event.startSecond(), event.startNano());
+      // Events starting at the same time are next to each other. A store may hand out a new
+      // instance on every read, so the event is matched by its fields
+      while (i < size && !result.get(i).sameAs(event) && result.get(i).compareStart(event) == 0) {
+        i++;
+      }
+      if (i < size && result.get(i).sameAs(event)) {
+        int c = i >>> ChunkBits;
+        if (!copied[c]) {
+          newChunks[c] = newChunks[c].clone();
+          copied[c] = true;
+        }
+        newChunks[c][i & (ChunkSize - 1)] = replacements.get(r);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a snapshot holding the first events of this one followed by the given events.
+   * Full chunks of the events kept are shared with this snapshot.
+   *
+   * @param kept number of events of this snapshot to keep
+   * @param tail events to add after them
+   * @return the new snapshot
+   */
+  EventSnapshot withTail(int kept, List<Event> tail) {
+    int newSize = kept + tail.size();
+    Event[][] newChunks = new Event[(newSize + ChunkSize - 1) >>> ChunkBits][];
+    int shared = kept >>> ChunkBits;
+    System.arraycopy(chunks, 0, newChunks, 0, shared);
+    int at = shared << ChunkBits;
+    int next = 0;
+    for (int c = shared; c < newChunks.length; c++) {
+      Event[] chunk = new Event[Math.min(ChunkSize, newSize - at)];
+      int filled = 0;
+      if (at < kept) {
+        // The chunk the kept events end in is copied up to that point
+        filled = kept - at;
+        System.arraycopy(chunks[c], 0, chunk, 0, filled);
+      }
+      for (; filled < chunk.length; filled++) {
+        chunk[filled] = tail.get(next++);
+      }
+      newChunks[c] = chunk;
+      at += chunk.length;
+    }
+    return new EventSnapshot(newChunks, newSize);
+  }
+}
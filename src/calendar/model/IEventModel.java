@@ -64,6 +64,7 @@ public interface IEventModel {
 
   /**
    * Gets all events in the model. This method is primarily for testing purposes.
+   * The list is an immutable version of the events that later changes do not affect.
    *
    * @return List of all events
    */
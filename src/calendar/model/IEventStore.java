@@ -0,0 +1,174 @@
+package calendar.model;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage of the single events of an EventModel, kept in start order with events starting at
+ * the same time in the order they were added. Times are passed as the seconds of the epoch and
+ * nanoseconds that Event stores.
+ * Events a store hands out may be built on demand, so two calls can return equal events that
+ * are not the same instance. An event passed back to remove or replace has to be one the
+ * store handed out. Subjects and descriptions of stored events are kept once each, so an
+ * event the store hands out may not be the instance it was given.
+ */
+interface IEventStore {
+  /**
+   * Test on the start and end of an event, so a store can skip events before building them.
+   */
+  @FunctionalInterface
+  interface TimeFilter {
+    /**
+     * Checks an event by its times.
+     *
+     * @param startSecond start in seconds of the epoch
+     * @param startNano   nanoseconds of the start
+     * @param endSecond   end in seconds of the epoch
+     * @param endNano     nanoseconds of the end
+     * @return true if the event is wanted
+     */
+    boolean test(long startSecond, int startNano, long endSecond, int endNano);
+  }
+
+  /**
+   * Returns the number of events.
+   *
+   * @return number of events
+   */
+  int size();
+
+  /**
+   * Returns the event at a position in start order.
+   *
+   * @param i position of the event
+   * @return the event
+   */
+  Event get(int i);
+
+  /**
+   * Returns a read-only list of the events in start order that reads through to the store.
+   *
+   * @return the events
+   */
+  List<Event> view();
+
+  /**
+   * Returns the position of the first event starting at or after the given time.
+   *
+   * @param second seconds of the epoch
+   * @param nano   nanoseconds
+   * @return position of the event, or size() if there is none
+   */
+  int lowerBound(long second, int nano);
+
+  /**
+   * Adds an event after every event starting no later than it.
+   *
+   * @param event the event
+   */
+  void insert(Event event);
+
+  /**
+   * Removes an event that is in the store.
+   *
+   * @param event the event
+   * @throws IllegalStateException if no such event is stored
+   */
+  void remove(Event event);
+
+  /**
+   * Swaps a stored event for another one with the same start, keeping its place in the order.
+   *
+   * @param event       the stored event
+   * @param replacement the event to put in its place
+   * @throws IllegalStateException if no such event is stored
+   */
+  void replace(Event event, Event replacement);
+
+  /**
+   * Checks whether an event equal to the given one, with the same subject, start and end, is
+   * stored.
+   *
+   * @param event the event to look for
+   * @return true if one is stored
+   */
+  boolean contains(Event event);
+
+  /**
+   * Returns the first event in order with the given subject that starts exactly at the given
+   * time.
+   *
+   * @param subject subject of the event
+   * @param second  seconds of the epoch
+   * @param nano    nanoseconds
+   * @return the event, or null if there is none
+   */
+  Event find(String subject, long second, int nano);
+
+  /**
+   * Returns the events with the given subject that start first at or after the given time,
+   * in order. Several are returned when they start at the same time.
+   *
+   * @param subject subject of the events
+   * @param second  seconds of the epoch
+   * @param nano    nanoseconds
+   * @return the events, empty if no event with the subject starts that late
+   */
+  List<Event> firstWithSubject(String subject, long second, int nano);
+
+  /**
+   * Returns the instance of a subject or description the store keeps for all its events,
+   * starting to keep it if it is new. Stored events always share these instances.
+   *
+   * @param value the string, or null
+   * @return the kept instance, or null for null
+   */
+  String intern(String value);
+
+  /**
+   * Returns the stored events that belong to the given series, in start order.
+   *
+   * @param seriesId id of the series, not 0
+   * @return the events, empty if there are none
+   */
+  List<Event> members(long seriesId);
+
+  /**
+   * Hands, in start order, every event that overlaps the closed interval from the first time
+   * to the second and passes the filter to the action.
+   *
+   * @param fromSecond start of the interval in seconds of the epoch
+   * @param fromNano   nanoseconds of the start
+   * @param toSecond   end of the interval in seconds of the epoch
+   * @param toNano     nanoseconds of the end
+   * @param filter     test the events have to pass, or null to take all of them
+   * @param action     called once per matching event
+   */
+  void forEachOverlapping(long fromSecond, int fromNano, long toSecond, int toNano,
+                          TimeFilter filter, Consumer<? super Event> action);
+
+  /**
+   * Checks whether any event contains the given instant, end points included.
+   *
+   * @param second seconds of the epoch
+   * @param nano   nanoseconds
+   * @return true if an event starts at or before and ends at or after the instant
+   */
+  boolean anyContaining(long second, int nano);
+
+  /**
+   * Tells whether every read of the store finishes even while another thread changes it, at
+   * worst with a wrong answer or an unchecked exception. Such a store can be read without a
+   * lock as long as the answer is thrown away when a change was made meanwhile.
+   *
+   * @return true if reads always finish
+   */
+  boolean readsAlwaysFinish();
+
+  /**
+   * Replaces the contents of the store.
+   *
+   * @param events events in start order, ties in the order they were added
+   */
+  void load(List<Event> events);
+}
@@ -0,0 +1,343 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Augmented interval tree over the events of an EventModel.
+ * Events are kept in start order (ties keep insertion order) inside a treap where every node
+ * also records the latest end time and the size of its subtree, so overlap, point and rank
+ * queries only visit the branches that can contain a match.
+ * Times are compared as the seconds and nanoseconds Event stores them in; query bounds are
+ * converted once per call.
+ */
+public class IntervalTree {
+  private Node root;
+  private int seed = 0x2545F491;
+
+  // Results of the last split, kept in fields to avoid allocating a pair per call
+  private Node splitLeft;
+  private Node splitRight;
+
+  /**
+   * A single event in the tree together with the augmented data of its subtree.
+   */
+  private static class Node {
+    private Event event;
+    private final int priority;
+    private long maxEndSecond;
+    private int maxEndNano;
+    private int size;
+    private Node left;
+    private Node right;
+
+    private Node(Event event, int priority) {
+      this.event = event;
+      this.priority = priority;
+      this.maxEndSecond = event.endSecond();
+      this.maxEndNano = event.endNano();
+      this.size = 1;
+    }
+  }
+
+  /**
+   * Returns the number of events in the tree.
+   *
+   * @return number of events
+   */
+  public int size() {
+    return size(root);
+  }
+
+  /**
+   * Adds an event after every event that starts at the same time.
+   *
+   * @param event event to add
+   */
+  public void insert(Event event) {
+    split(root, event.startSecond(), event.startNano(), true);
+    Node lower = splitLeft;
+    Node upper = splitRight;
+    root = merge(merge(lower, new Node(event, nextPriority())), upper);
+  }
+
+  /**
+   * Replaces the contents of the tree with the events of a list, in linear time.
+   * Nodes are laid out along the right spine as they come, which is the tree the same
+   * priorities would give if the events were inserted one at a time.
+   *
+   * @param events events in start order, ties in the order they were added
+   */
+  public void buildFrom(List<Event> events) {
+    Node[] spine = new Node[64];
+    int height = 0;
+    for (Event event : events) {
+      Node node = new Node(event, nextPriority());
+      Node last = null;
+      while (height > 0 && spine[height - 1].priority <= node.priority) {
+        last = spine[--height];
+        update(last);
+      }
+      node.left = last;
+      if (height > 0) {
+        spine[height - 1].right = node;
+      }
+      if (height == spine.length) {
+        spine = Arrays.copyOf(spine, height * 2);
+      }
+      spine[height++] = node;
+    }
+    for (int i = height - 1; i >= 0; i--) {
+      update(spine[i]);
+    }
+    root = height == 0 ? null : spine[0];
+    // The last split may still point into the old tree, which would keep it reachable
+    splitLeft = null;
+    splitRight = null;
+  }
+
+  /**
+   * Removes the given event instance from the tree.
+   *
+   * @param event event to remove
+   * @return true if the event was in the tree
+   */
+  public boolean remove(Event event) {
+    long second = event.startSecond();
+    int nano = event.startNano();
+    split(root, second, nano, false);
+    Node before = splitLeft;
+    split(splitRight, second, nano, true);
+    Node same = splitLeft;
+    Node after = splitRight;
+
+    int oldSize = size(same);
+    same = removeInstance(same, event);
+    root = merge(merge(before, same), after);
+    return size(same) != oldSize;
+  }
+
+  /**
+   * Swaps an event for another one with the same start time, keeping its place in the order.
+   *
+   * @param event       event instance currently in the tree
+   * @param replacement event to put in its place
+   * @return true if the event was in the tree
+   * @throws IllegalArgumentException if the two events start at different times
+   */
+  public boolean replace(Event event, Event replacement) {
+    if (event.compareStart(replacement) != 0) {
+      throw new IllegalArgumentException("Replacement must start at the same time");
+    }
+    long second = event.startSecond();
+    int nano = event.startNano();
+    split(root, second, nano, false);
+    Node before = splitLeft;
+    split(splitRight, second, nano, true);
+    Node same = splitLeft;
+    Node after = splitRight;
+
+    boolean replaced = replaceInstance(same, event, replacement);
+    root = merge(merge(before, same), after);
+    return replaced;
+  }
+
+  /**
+   * Collects, in start order, every event that overlaps the closed interval [from, to].
+   *
+   * @param from start of the interval
+   * @param to   end of the interval
+   * @param out  list the matching events are added to
+   */
+  public void collectOverlapping(LocalDateTime from, LocalDateTime to, List<Event> out) {
+    forEachOverlapping(from, to, out::add);
+  }
+
+  /**
+   * Hands, in start order, every event that overlaps the closed interval [from, to] to the
+   * action, without collecting them first.
+   *
+   * @param from   start of the interval
+   * @param to     end of the interval
+   * @param action called once per matching event
+   */
+  public void forEachOverlapping(LocalDateTime from, LocalDateTime to,
+                                 Consumer<? super Event> action) {
+    forEachOverlapping(root, from.toEpochSecond(ZoneOffset.UTC), from.getNano(),
+            to.toEpochSecond(ZoneOffset.UTC), to.getNano(), action);
+  }
+
+  /**
+   * Same as forEachOverlapping, with the interval in the seconds and nanoseconds Event stores.
+   */
+  void forEachOverlapping(long fromSecond, int fromNano, long toSecond, int toNano,
+                          Consumer<? super Event> action) {
+    forEachOverlapping(root, fromSecond, fromNano, toSecond, toNano, action);
+  }
+
+  /**
+   * Same as anyContaining, with the instant in the seconds and nanoseconds Event stores.
+   */
+  boolean anyContaining(long second, int nano) {
+    return anyContaining(root, second, nano);
+  }
+
+  /**
+   * Checks whether any event contains the given instant, end points included.
+   *
+   * @param dateTime instant to check
+   * @return true if an event starts at or before and ends at or after the instant
+   */
+  public boolean anyContaining(LocalDateTime dateTime) {
+    return anyContaining(root, dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano());
+  }
+
+  private boolean anyContaining(Node node, long second, int nano) {
+    if (node == null || endsBefore(node, second, nano)) {
+      return false;
+    }
+    if (anyContaining(node.left, second, nano)) {
+      return true;
+    }
+    if (node.event.compareStart(second, nano) > 0) {
+      return false;
+    }
+    if (node.event.compareEnd(second, nano) >= 0) {
+      return true;
+    }
+    return anyContaining(node.right, second, nano);
+  }
+
+  private void forEachOverlapping(Node node, long fromSecond, int fromNano, long toSecond,
+                                  int toNano, Consumer<? super Event> action) {
+    if (node == null || endsBefore(node, fromSecond, fromNano)) {
+      return;
+    }
+    forEachOverlapping(node.left, fromSecond, fromNano, toSecond, toNano, action);
+    Event event = node.event;
+    if (event.compareStart(toSecond, toNano) > 0) {
+      // Everything further right starts even later
+      return;
+    }
+    if (event.compareEnd(fromSecond, fromNano) >= 0) {
+      action.accept(event);
+    }
+    forEachOverlapping(node.right, fromSecond, fromNano, toSecond, toNano, action);
+  }
+
+  /**
+   * Helper that checks whether every event of the subtree ends before the given time.
+   */
+  private static boolean endsBefore(Node node, long second, int nano) {
+    return Event.compare(node.maxEndSecond, node.maxEndNano, second, nano) < 0;
+  }
+
+  /**
+   * Splits the subtree into events before the key (splitLeft) and the rest (splitRight).
+   * When inclusive is true, events starting exactly at the key go to the left side.
+   */
+  private void split(Node node, long second, int nano, boolean inclusive) {
+    if (node == null) {
+      splitLeft = null;
+      splitRight = null;
+      return;
+    }
+    int result = node.event.compareStart(second, nano);
+    if (result < 0 || (inclusive && result == 0)) {
+      split(node.right, second, nano, inclusive);
+      node.right = splitLeft;
+      update(node);
+      splitLeft = node;
+    } else {
+      split(node.left, second, nano, inclusive);
+      node.left = splitRight;
+      update(node);
+      splitRight = node;
+    }
+  }
+
+  /**
+   * Joins two subtrees where every event of the first comes before every event of the second.
+   */
+  private Node merge(Node first, Node second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (first.priority > second.priority) {
+      first.right = merge(first.right, second);
+      update(first);
+      return first;
+    } else {
+      second.left = merge(first, second.left);
+      update(second);
+      return second;
+    }
+  }
+
+  private Node removeInstance(Node node, Event event) {
+    if (node == null) {
+      return null;
+    }
+    if (node.event == event) {
+      return merge(node.left, node.right);
+    }
+    int oldSize = size(node.left);
+    node.left = removeInstance(node.left, event);
+    if (size(node.left) == oldSize) {
+      node.right = removeInstance(node.right, event);
+    }
+    update(node);
+    return node;
+  }
+
+  private boolean replaceInstance(Node node, Event event, Event replacement) {
+    if (node == null) {
+      return false;
+    }
+    boolean replaced;
+    if (node.event == event) {
+      node.event = replacement;
+      replaced = true;
+    } else {
+      replaced = replaceInstance(node.left, event, replacement)
+              || replaceInstance(node.right, event, replacement);
+    }
+    if (replaced) {
+      update(node);
+    }
+    return replaced;
+  }
+
+  private void update(Node node) {
+    node.size = 1 + size(node.left) + size(node.right);
+    node.maxEndSecond = node.event.endSecond();
+    node.maxEndNano = node.event.endNano();
+    raiseMaxEnd(node, node.left);
+    raiseMaxEnd(node, node.right);
+  }
+
+  private static void raiseMaxEnd(Node node, Node child) {
+    if (child != null && !endsBefore(child, node.maxEndSecond, node.maxEndNano)) {
+      node.maxEndSecond = child.maxEndSecond;
+      node.maxEndNano = child.maxEndNano;
+    }
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private int nextPriority() {
+    // xorshift keeps the tree shape reproducible between runs
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    return seed;
+  }
+}
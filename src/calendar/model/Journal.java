@@ -0,0 +1,729 @@
+package calendar.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log of the changes made to the calendars of a CalendarManager, so the
+ * changes made since the last snapshot survive a crash.
+ * Each change that went through is appended as one record: creating, editing and choosing a
+ * calendar, and creating, editing and pasting events. Records have increasing sequence
+ * numbers and a checksum, and a record torn by a crash ends the log. A snapshot written by
+ * checkpoint remembers the number of the last record it holds, so recovery loads the snapshot
+ * and replays only the records after it.
+ * Records are written and forced to disk by a thread of the journal, in batches: while one
+ * batch is being forced, the next one collects in memory and is forced with a single call
+ * after it (group commit). Changes do not wait for the disk; sync waits until everything
+ * appended so far is on disk.
+ */
+public class Journal implements Closeable {
+  private static final int Magic = 0x43414C4A; // "CALJ"
+  private static final int Version = 1;
+  // Magic, version and the number of the first record of the file
+  private static final int HeaderSize = 4 + 4 + 8;
+  // Length of the payload, checksum of the sequence number and the payload, sequence number
+  private static final int RecordHeaderSize = 4 + 4 + 8;
+  private static final int BlockSize = 1 << 20;
+  // A batch this large is forced without waiting for more records
+  private static final int BatchSize = 1 << 16;
+  private static final long CommitDelayNanos = 5_000_000;
+  private static final int NullString = -1;
+
+  private static final byte CreateCalendar = 1;
+  private static final byte EditCalendar = 2;
+  private static final byte UseCalendar = 3;
+  private static final byte CreateEvent = 4;
+  private static final byte EditEvent = 5;
+  private static final byte EditEvents = 6;
+  private static final byte EditSeries = 7;
+  private static final byte Paste = 8;
+
+  private static final Location[] Locations = Location.values();
+  private static final Status[] Statuses = Status.values();
+
+  private final FileChannel channel;
+  private final long end;
+  private final Thread thread;
+  private final CRC32C checksum = new CRC32C();
+  private ByteBuffer record = ByteBuffer.allocate(1 << 12);
+  private ByteBuffer filling = ByteBuffer.allocate(BlockSize);
+  private ByteBuffer writing = ByteBuffer.allocate(BlockSize);
+  private long nextSequence;
+  private long durableSequence;
+  private IOException failure;
+  private boolean closed;
+  private int syncWaiters;
+
+  private Journal(FileChannel channel, long end, long nextSequence) {
+    this.channel = channel;
+    this.end = end;
+    this.nextSequence = nextSequence;
+    this.durableSequence = nextSequence - 1;
+    this.thread = new Thread(this::drain, "journal-writer");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Opens a journal, creating it if it does not exist. A torn record at the end of the file,
+   * left by a crash while it was being written, is cut off.
+   *
+   * @param file the journal file
+   * @return the open journal, appending after its last whole record
+   * @throws IOException if the file cannot be opened or is not a journal
+   */
+  public static Journal open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long next = 1;
+      long end = HeaderSize;
+      if (channel.size() < HeaderSize) {
+        writeHeader(channel, next);
+      } else {
+        ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != Magic) {
+          throw new IOException("Not a calendar journal: " + file);
+        }
+        int version = header.getInt();
+        if (version != Version) {
+          throw new IOException("Unsupported journal version " + version + ": " + file);
+        }
+        Reader reader = new Reader(channel, header.getLong());
+        while (reader.next()) {
+          // Only looking for the end
+        }
+        next = reader.expected;
+        end = reader.position;
+        channel.truncate(end);
+      }
+      channel.position(end);
+      Journal journal = new Journal(channel, end, next);
+      journal.thread.start();
+      return journal;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Rebuilds the calendars from a snapshot and the records after it, then logs the changes
+   * made to them from now on. Must be called before anything is appended.
+   *
+   * @param snapshot the last snapshot, or null or a missing file to start from no calendars
+   * @return the recovered calendars
+   * @throws IOException if the snapshot or the journal cannot be read, or a record cannot be
+   *                     replayed
+   */
+  public CalendarManager recover(Path snapshot) throws IOException {
+    CalendarManager manager;
+    long applied = 0;
+    if (snapshot != null && Files.exists(snapshot)) {
+      manager = CalendarSnapshot.read(snapshot);
+      applied = CalendarSnapshot.journalSequence(snapshot);
+    } else {
+      manager = new CalendarManager();
+    }
+    Reader reader = new Reader(channel, readHeaderSequence(channel));
+    while (reader.position < end && reader.next()) {
+      if (reader.sequence > applied) {
+        try {
+          replay(manager, reader.payload);
+        } catch (RuntimeException e) {
+          throw new IOException("Journal record " + reader.sequence + " cannot be replayed: "
+                  + e.getMessage(), e);
+        }
+      }
+    }
+    synchronized (this) {
+      // Records that made it into the snapshot but not into this file are never numbered twice
+      nextSequence = Math.max(nextSequence, applied + 1);
+      durableSequence = Math.max(durableSequence, nextSequence - 1);
+    }
+    attach(manager);
+    return manager;
+  }
+
+  /**
+   * Logs the changes made to the calendars of the manager from now on.
+   *
+   * @param manager the calendars to log
+   */
+  public void attach(CalendarManager manager) {
+    manager.setJournal(this);
+  }
+
+  /**
+   * Waits until every record appended so far is on disk.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  public synchronized void sync() throws IOException {
+    awaitDurable();
+  }
+
+  /**
+   * Saves the calendars to a snapshot and empties the journal, whose records the snapshot now
+   * holds. Changes made meanwhile wait until the checkpoint is done. A crash at any point leaves
+   * a snapshot and a journal that recover to the same calendars.
+   *
+   * @param manager  the calendars the journal logs
+   * @param snapshot the snapshot file, replaced if it exists
+   * @throws IOException if the snapshot or the journal cannot be written
+   */
+  public void checkpoint(CalendarManager manager, Path snapshot) throws IOException {
+    // Changes log their records with the calendar locked, so the calendars are locked first
+    manager.readLocked(() -> {
+      synchronized (this) {
+        // Once every record is on disk, the thread has nothing to write until the next change
+        awaitDurable();
+        long last = nextSequence - 1;
+        CalendarSnapshot.write(manager, snapshot, last);
+        // The new first number comes first: should the crash come before the cut, the records
+        // left behind no longer follow the header and are dropped when the journal is opened
+        writeHeader(channel, last + 1);
+        channel.truncate(HeaderSize);
+        channel.position(HeaderSize);
+      }
+    });
+  }
+
+  /**
+   * Writes out what is left, stops the thread and closes the file.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+    }
+    try {
+      sync();
+    } finally {
+      synchronized (this) {
+        closed = true;
+        notifyAll();
+      }
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      channel.close();
+    }
+  }
+
+  /**
+   * Helper that waits, holding the lock, until the records appended so far are on disk.
+   */
+  private void awaitDurable() throws IOException {
+    long target = nextSequence - 1;
+    // Someone waiting means the batch is forced without the commit delay
+    syncWaiters++;
+    notifyAll();
+    try {
+      while (durableSequence < target && failure == null) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while syncing the journal");
+    } finally {
+      syncWaiters--;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  void createCalendar(String name, ZoneId timezone) {
+    synchronized (this) {
+      begin(CreateCalendar);
+      putString(name);
+      putString(timezone.getId());
+      append();
+    }
+  }
+
+  void editCalendar(String name, String property, String value) {
+    synchronized (this) {
+      begin(EditCalendar);
+      putString(name);
+      putString(property);
+      putString(value);
+      append();
+    }
+  }
+
+  void useCalendar(String name) {
+    synchronized (this) {
+      begin(UseCalendar);
+      putString(name);
+      append();
+    }
+  }
+
+  void createEvent(int calendar, String subject, String description, LocalDateTime start,
+                   LocalDateTime end, Location location, Status status, String[] weekDays,
+                   int repeatCount) {
+    synchronized (this) {
+      begin(CreateEvent);
+      putInt(calendar);
+      putString(subject);
+      putString(description);
+      putDateTime(start);
+      putDateTime(end);
+      putByte(location == null ? 0 : location.ordinal() + 1);
+      putByte(status == null ? 0 : status.ordinal() + 1);
+      if (weekDays == null) {
+        putInt(NullString);
+      } else {
+        putInt(weekDays.length);
+        for (String day : weekDays) {
+          putString(day);
+        }
+      }
+      putInt(repeatCount);
+      append();
+    }
+  }
+
+  void editEvent(int calendar, String subject, LocalDateTime start, EventEdit edit) {
+    edit(EditEvent, calendar, subject, start, edit);
+  }
+
+  void editEvents(int calendar, String subject, LocalDateTime start, EventEdit edit) {
+    edit(EditEvents, calendar, subject, start, edit);
+  }
+
+  void editSeries(int calendar, String subject, LocalDateTime start, EventEdit edit) {
+    edit(EditSeries, calendar, subject, start, edit);
+  }
+
+  /**
+   * Logs pasted events. They are logged as single events, as copies are; series ids are not
+   * kept.
+   */
+  void paste(int calendar, List<Event> events) {
+    synchronized (this) {
+      begin(Paste);
+      putInt(calendar);
+      putInt(events.size());
+      for (Event event : events) {
+        putString(event.getSubject());
+        putString(event.getDescription());
+        putDateTime(event.getStartDateTime());
+        putDateTime(event.getEndDateTime());
+        putByte(event.getLocation() == null ? 0 : event.getLocation().ordinal() + 1);
+        putByte(event.getStatus() == null ? 0 : event.getStatus().ordinal() + 1);
+      }
+      append();
+    }
+  }
+
+  private void edit(byte operation, int calendar, String subject, LocalDateTime start,
+                    EventEdit edit) {
+    synchronized (this) {
+      begin(operation);
+      putInt(calendar);
+      putString(subject);
+      putDateTime(start);
+      int changes = edit.changes();
+      putInt(changes);
+      putString(edit.subjectOr(null));
+      putString(edit.descriptionOr(null));
+      LocalDateTime newStart = edit.startOr(null);
+      LocalDateTime newEnd = edit.endOr(null);
+      putByte(newStart == null ? 0 : 1);
+      if (newStart != null) {
+        putDateTime(newStart);
+      }
+      putByte(newEnd == null ? 0 : 1);
+      if (newEnd != null) {
+        putDateTime(newEnd);
+      }
+      Location location = edit.locationOr(null);
+      Status status = edit.statusOr(null);
+      putByte(location == null ? 0 : location.ordinal() + 1);
+      putByte(status == null ? 0 : status.ordinal() + 1);
+      append();
+    }
+  }
+
+  /**
+   * Helper that starts encoding a record, leaving room for its header.
+   */
+  private void begin(byte operation) {
+    record.clear();
+    record.position(RecordHeaderSize);
+    record.put(operation);
+  }
+
+  /**
+   * Helper that numbers the encoded record and queues it for the thread, waiting for room if
+   * the batch being filled is full. The record is numbered only once it has room, so records
+   * are queued in the order of their numbers.
+   */
+  private void append() {
+    if (failure != null) {
+      throw new IllegalStateException("Journal cannot be written", failure);
+    }
+    if (closed) {
+      throw new IllegalStateException("Journal is closed");
+    }
+    ByteBuffer pending = record;
+    int size = pending.position();
+    if (filling.remaining() < size) {
+      // Waiting lets other threads encode their records, so this one is kept apart
+      pending = ByteBuffer.wrap(Arrays.copyOf(record.array(), size));
+      pending.position(size);
+      try {
+        while (filling.remaining() < size) {
+          if (filling.position() == 0) {
+            // A record larger than a whole batch gets a batch of its own
+            filling = ByteBuffer.allocate(size);
+            break;
+          }
+          if (failure != null) {
+            throw new IllegalStateException("Journal cannot be written", failure);
+          }
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while writing the journal");
+      }
+    }
+    long sequence = nextSequence;
+    int length = size - RecordHeaderSize;
+    pending.putLong(8, sequence);
+    checksum.reset();
+    checksum.update(pending.array(), 8, 8 + length);
+    pending.putInt(0, length);
+    pending.putInt(4, (int) checksum.getValue());
+    pending.flip();
+    int before = filling.position();
+    filling.put(pending);
+    nextSequence++;
+    // Only the thread waits on what append changes, and only for the first record of a batch
+    // or for the batch to become large enough
+    if (before == 0 || (before < BatchSize && filling.position() >= BatchSize)) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Helper run by the thread: takes the filled batch, writes and forces it, and tells the
+   * waiting threads up to which record the journal is on disk.
+   */
+  private void drain() {
+    while (true) {
+      ByteBuffer batch;
+      long last;
+      synchronized (this) {
+        try {
+          while (filling.position() == 0 && !closed) {
+            wait();
+          }
+          // Give a small batch a moment to grow, so a stream of changes is forced a few
+          // hundred times a second at most rather than once per change
+          long deadline = System.nanoTime() + CommitDelayNanos;
+          long left = CommitDelayNanos;
+          while (filling.position() < BatchSize && !closed && syncWaiters == 0 && left > 0) {
+            wait(left / 1_000_000, (int) (left % 1_000_000));
+            left = deadline - System.nanoTime();
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (filling.position() == 0) {
+          return;
+        }
+        batch = filling;
+        filling = writing;
+        writing = batch;
+        last = nextSequence - 1;
+        notifyAll();
+      }
+      try {
+        batch.flip();
+        while (batch.hasRemaining()) {
+          channel.write(batch);
+        }
+        channel.force(false);
+        batch.clear();
+        if (batch.capacity() > BlockSize) {
+          writing = ByteBuffer.allocate(BlockSize);
+        }
+      } catch (IOException e) {
+        synchronized (this) {
+          failure = e;
+          notifyAll();
+        }
+        return;
+      }
+      synchronized (this) {
+        durableSequence = last;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Helper that applies one record to the calendars.
+   */
+  private static void replay(CalendarManager manager, ByteBuffer payload) {
+    byte operation = payload.get();
+    switch (operation) {
+      case CreateCalendar:
+        manager.createCalendar(getString(payload), ZoneId.of(getString(payload)));
+        return;
+      case EditCalendar:
+        manager.editCalendar(getString(payload), getString(payload), getString(payload));
+        return;
+      case UseCalendar:
+        manager.useCalendar(getString(payload));
+        return;
+      default:
+        break;
+    }
+    EventModel model = manager.getCalendars().get(payload.getInt()).getEventModel();
+    switch (operation) {
+      case CreateEvent: {
+        String subject = getString(payload);
+        String description = getString(payload);
+        LocalDateTime start = getDateTime(payload);
+        LocalDateTime end = getDateTime(payload);
+        Location location = locationOf(payload.get());
+        Status status = statusOf(payload.get());
+        int days = payload.getInt();
+        String[] weekDays = null;
+        if (days != NullString) {
+          weekDays = new String[days];
+          for (int i = 0; i < days; i++) {
+            weekDays[i] = getString(payload);
+          }
+        }
+        model.createEvent(subject, description, start, end, location, status, weekDays,
+                payload.getInt());
+        return;
+      }
+      case EditEvent:
+        model.editEvent(getString(payload), getDateTime(payload), getEdit(payload));
+        return;
+      case EditEvents:
+        model.editEvents(getString(payload), getDateTime(payload), getEdit(payload));
+        return;
+      case EditSeries:
+        model.editSeries(getString(payload), getDateTime(payload), getEdit(payload));
+        return;
+      case Paste: {
+        int count = payload.getInt();
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          events.add(Event.getBuilder()
+                  .setSubject(getString(payload))
+                  .setDescription(getString(payload))
+                  .setStartDateTime(getDateTime(payload))
+                  .setEndDateTime(getDateTime(payload))
+                  .setLocation(locationOf(payload.get()))
+                  .setStatus(statusOf(payload.get()))
+                  .build());
+        }
+        model.paste(events);
+        return;
+      }
+      default:
+        throw new IllegalArgumentException("Unknown journal record " + operation);
+    }
+  }
+
+  private static EventEdit getEdit(ByteBuffer payload) {
+    int changes = payload.getInt();
+    String subject = getString(payload);
+    String description = getString(payload);
+    LocalDateTime start = payload.get() == 0 ? null : getDateTime(payload);
+    LocalDateTime end = payload.get() == 0 ? null : getDateTime(payload);
+    return EventEdit.restore(changes, subject, description, start, end,
+            locationOf(payload.get()), statusOf(payload.get()));
+  }
+
+  private void ensure(int bytes) {
+    if (record.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2,
+              record.position() + bytes));
+      record.flip();
+      record = larger.put(record);
+    }
+  }
+
+  private void putByte(int value) {
+    ensure(1);
+    record.put((byte) value);
+  }
+
+  private void putInt(int value) {
+    ensure(4);
+    record.putInt(value);
+  }
+
+  private void putDateTime(LocalDateTime dateTime) {
+    ensure(8 + 4);
+    record.putLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+    record.putInt(dateTime.getNano());
+  }
+
+  private void putString(String value) {
+    if (value == null) {
+      putInt(NullString);
+      return;
+    }
+    int length = value.length();
+    ensure(4 + length);
+    int start = record.position();
+    record.putInt(length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        // Not ASCII: start over with the encoded bytes
+        record.position(start);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        record.put(bytes);
+        return;
+      }
+      record.put((byte) c);
+    }
+  }
+
+  private static String getString(ByteBuffer payload) {
+    int length = payload.getInt();
+    if (length == NullString) {
+      return null;
+    }
+    String value = new String(payload.array(), payload.arrayOffset() + payload.position(),
+            length, StandardCharsets.UTF_8);
+    payload.position(payload.position() + length);
+    return value;
+  }
+
+  private static LocalDateTime getDateTime(ByteBuffer payload) {
+    long seconds = payload.getLong();
+    return LocalDateTime.ofEpochSecond(seconds, payload.getInt(), ZoneOffset.UTC);
+  }
+
+  private static Location locationOf(byte value) {
+    return value == 0 ? null : Locations[value - 1];
+  }
+
+  private static Status statusOf(byte value) {
+    return value == 0 ? null : Statuses[value - 1];
+  }
+
+  private static void writeHeader(FileChannel channel, long firstSequence) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+    header.putInt(Magic).putInt(Version).putLong(firstSequence).flip();
+    while (header.hasRemaining()) {
+      channel.write(header, header.position());
+    }
+    channel.force(false);
+  }
+
+  private static long readHeaderSequence(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+    readFully(channel, header, 0);
+    return header.getLong(8);
+  }
+
+  /**
+   * Helper that fills the buffer from the given position of the file.
+   *
+   * @return false if the file ends first
+   */
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position)
+          throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read == -1) {
+        return false;
+      }
+      position += read;
+    }
+    return true;
+  }
+
+  /**
+   * Reads the records of the file in order, stopping at the first one that is torn, fails its
+   * checksum or does not have the next sequence number.
+   */
+  private static class Reader {
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(RecordHeaderSize);
+    private final CRC32C checksum = new CRC32C();
+    private long position = HeaderSize;
+    private long expected;
+    private long sequence;
+    private ByteBuffer payload = ByteBuffer.allocate(1 << 12);
+
+    private Reader(FileChannel channel, long firstSequence) {
+      this.channel = channel;
+      this.expected = firstSequence;
+    }
+
+    /**
+     * Moves to the next whole record.
+     *
+     * @return false at the end of the log
+     */
+    private boolean next() throws IOException {
+      header.clear();
+      if (!readFully(channel, header, position)) {
+        return false;
+      }
+      int length = header.getInt(0);
+      int sum = header.getInt(4);
+      long number = header.getLong(8);
+      if (length <= 0 || number != expected || length > channel.size() - position) {
+        return false;
+      }
+      if (payload.capacity() < length) {
+        payload = ByteBuffer.allocate(length);
+      }
+      payload.clear().limit(length);
+      if (!readFully(channel, payload, position + RecordHeaderSize)) {
+        return false;
+      }
+      checksum.reset();
+      checksum.update(header.array(), 8, 8);
+      checksum.update(payload.array(), 0, length);
+      if ((int) checksum.getValue() != sum) {
+        return false;
+      }
+      payload.flip();
+      sequence = number;
+      expected = number + 1;
+      position += RecordHeaderSize + length;
+      return true;
+    }
+  }
+}
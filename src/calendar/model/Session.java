@@ -0,0 +1,46 @@
+package calendar.model;
+
+import java.util.List;
+
+/**
+ * One client of a CalendarManager, carrying the calendar that client's commands work on.
+ * Sessions of one manager share its calendars but not the calendar in use, so clients can use
+ * different calendars at the same time without taking any lock of the manager.
+ * The calendar in use is remembered by its position, which stays with it when it is renamed or
+ * its timezone is changed.
+ */
+public class Session {
+  private final List<Calendar> calendars;
+  // Position of the calendar in use among the calendars of the manager, or -1 for none
+  private volatile int calendarInUse;
+
+  /**
+   * Constructs a session that uses no calendar yet.
+   *
+   * @param calendars the calendars of the manager, which the session reads through as they
+   *                  change
+   */
+  Session(List<Calendar> calendars) {
+    this.calendars = calendars;
+    this.calendarInUse = -1;
+  }
+
+  /**
+   * Returns the calendar in use.
+   *
+   * @return the calendar, or null if none was chosen
+   */
+  public Calendar getCalendarInUse() {
+    int idx = calendarInUse;
+    return idx < 0 ? null : calendars.get(idx);
+  }
+
+  /**
+   * Makes the calendar at the given position the one in use.
+   *
+   * @param idx position of the calendar
+   */
+  void setCalendarInUse(int idx) {
+    this.calendarInUse = idx;
+  }
+}
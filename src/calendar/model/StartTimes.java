@@ -0,0 +1,110 @@
+package calendar.model;
+
+import java.util.Arrays;
+
+/**
+ * Sorted start times of the events with one subject or of one series, as the seconds of the
+ * epoch and nanoseconds that Event stores. A time is listed once per event starting at it.
+ * Kept by the event stores per subject, so the first event with a subject from a given time
+ * on is found by binary search instead of walking every event after that time, and by
+ * EventColumns per series, so the members of a series are found by their starts.
+ */
+class StartTimes {
+  private long[] seconds;
+  private int[] nanos;
+  private int size;
+
+  /**
+   * Constructs an empty list.
+   */
+  StartTimes() {
+    this.seconds = new long[4];
+    this.nanos = new int[4];
+  }
+
+  /**
+   * Returns the number of times listed.
+   *
+   * @return number of times
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Adds a start time.
+   *
+   * @param second seconds of the epoch
+   * @param nano   nanoseconds
+   */
+  void add(long second, int nano) {
+    int at = firstFrom(second, nano);
+    if (size == seconds.length) {
+      seconds = Arrays.copyOf(seconds, size * 2);
+      nanos = Arrays.copyOf(nanos, size * 2);
+    }
+    System.arraycopy(seconds, at, seconds, at + 1, size - at);
+    System.arraycopy(nanos, at, nanos, at + 1, size - at);
+    seconds[at] = second;
+    nanos[at] = nano;
+    size++;
+  }
+
+  /**
+   * Removes one listing of a start time.
+   *
+   * @param second seconds of the epoch
+   * @param nano   nanoseconds
+   * @throws IllegalStateException if the time is not listed
+   */
+  void remove(long second, int nano) {
+    int at = firstFrom(second, nano);
+    if (at == size || seconds[at] != second || nanos[at] != nano) {
+      throw new IllegalStateException("Start time is not listed");
+    }
+    System.arraycopy(seconds, at + 1, seconds, at, size - at - 1);
+    System.arraycopy(nanos, at + 1, nanos, at, size - at - 1);
+    size--;
+  }
+
+  /**
+   * Returns the position of the first time at or after the given one.
+   *
+   * @param second seconds of the epoch
+   * @param nano   nanoseconds
+   * @return the position, or size() if every time is earlier
+   */
+  int firstFrom(long second, int nano) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Event.compare(seconds[mid], nanos[mid], second, nano) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the seconds of the time at a position.
+   *
+   * @param i position of the time
+   * @return seconds of the epoch
+   */
+  long secondAt(int i) {
+    return seconds[i];
+  }
+
+  /**
+   * Returns the nanoseconds of the time at a position.
+   *
+   * @param i position of the time
+   * @return nanoseconds
+   */
+  int nanoAt(int i) {
+    return nanos[i];
+  }
+}
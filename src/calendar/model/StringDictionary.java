@@ -0,0 +1,99 @@
+package calendar.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Subjects and descriptions of the events of a store, each kept once and numbered in the order
+ * they were first seen. Subjects come from parsed commands as new strings every time, so
+ * without it a calendar holds a copy of a subject per event. Strings are never dropped, since
+ * a calendar tends to reuse the few subjects it has.
+ * Two strings the dictionary handed out are equal exactly when they are the same instance.
+ */
+class StringDictionary {
+  /**
+   * Number standing for a null string.
+   */
+  static final int None = -1;
+
+  private final List<String> strings;
+  private final Map<String, Integer> ids;
+
+  /**
+   * Constructs an empty dictionary.
+   */
+  StringDictionary() {
+    this.strings = new ArrayList<>();
+    this.ids = new HashMap<>();
+  }
+
+  /**
+   * Returns the instance the dictionary keeps for a string, adding it if it is new.
+   *
+   * @param value the string, or null
+   * @return the kept instance, or null for null
+   */
+  String intern(String value) {
+    return value == null ? null : strings.get(idOf(value));
+  }
+
+  /**
+   * Returns the instance the dictionary keeps for a string without adding it.
+   *
+   * @param value the string
+   * @return the kept instance, or null if the dictionary has never seen the string
+   */
+  String lookup(String value) {
+    Integer id = ids.get(value);
+    return id == null ? null : strings.get(id);
+  }
+
+  /**
+   * Returns the number of a string, adding it if it is new.
+   *
+   * @param value the string, or null
+   * @return its number, or None for null
+   */
+  int idOf(String value) {
+    if (value == null) {
+      return None;
+    }
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = strings.size();
+      strings.add(value);
+      ids.put(value, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the number of a string without adding it.
+   *
+   * @param value the string, or null
+   * @return its number, None for null, or null if the dictionary has never seen the string
+   */
+  Integer find(String value) {
+    return value == null ? Integer.valueOf(None) : ids.get(value);
+  }
+
+  /**
+   * Returns the string with the given number.
+   *
+   * @param id number of the string, or None
+   * @return the string, or null for None
+   */
+  String stringAt(int id) {
+    return id == None ? null : strings.get(id);
+  }
+
+  /**
+   * Forgets every string.
+   */
+  void clear() {
+    strings.clear();
+    ids.clear();
+  }
+}
@@ -0,0 +1,177 @@
+package calendar.view;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A Writer that collects output in blocks and writes full blocks to another writer on a
+ * thread of its own, so whoever produces the output does not wait for it to be written.
+ * Blocks are written in the order they were filled. flush hands over the block being filled
+ * and waits until everything has been written and the other writer is flushed.
+ * Only one thread at a time may write to it.
+ */
+public class BackgroundWriter extends Writer {
+  private static final int BlockSize = 1 << 16;
+  private static final int QueuedBlocks = 16;
+  // Markers, told apart from blocks of output by identity
+  private static final CharBuffer Flush = CharBuffer.allocate(0);
+  private static final CharBuffer End = CharBuffer.allocate(0);
+
+  private final Writer out;
+  private final BlockingQueue<CharBuffer> blocks = new ArrayBlockingQueue<>(QueuedBlocks);
+  private final Semaphore flushed = new Semaphore(0);
+  private final Thread thread;
+  private volatile IOException failure;
+  private char[] block = new char[BlockSize];
+  private int length;
+  private boolean closed;
+
+  /**
+   * Constructs a writer and starts its thread.
+   *
+   * @param out where the output is written
+   */
+  public BackgroundWriter(Writer out) {
+    this.out = out;
+    this.thread = new Thread(this::drain, "output-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void write(char[] chars, int offset, int count) throws IOException {
+    ensureOpen();
+    while (count > 0) {
+      int n = Math.min(count, block.length - length);
+      System.arraycopy(chars, offset, block, length, n);
+      length += n;
+      offset += n;
+      count -= n;
+      if (length == block.length) {
+        handOver();
+      }
+    }
+  }
+
+  @Override
+  public void write(String text, int offset, int count) throws IOException {
+    ensureOpen();
+    while (count > 0) {
+      int n = Math.min(count, block.length - length);
+      text.getChars(offset, offset + n, block, length);
+      length += n;
+      offset += n;
+      count -= n;
+      if (length == block.length) {
+        handOver();
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    handOver();
+    put(Flush);
+    try {
+      flushed.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing output");
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Writes out everything that is left, stops the thread and closes the other writer.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      closed = true;
+      put(End);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      out.close();
+    }
+  }
+
+  /**
+   * Helper that queues the block being filled, if it holds anything, and starts a new one.
+   */
+  private void handOver() throws IOException {
+    if (length == 0) {
+      return;
+    }
+    put(CharBuffer.wrap(block, 0, length));
+    block = new char[BlockSize];
+    length = 0;
+  }
+
+  private void put(CharBuffer item) throws IOException {
+    try {
+      blocks.put(item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing output");
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Writer is closed");
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Helper run by the thread: writes queued blocks until the End marker.
+   * After a failure, blocks are taken and dropped so the producer never blocks on a full queue.
+   */
+  private void drain() {
+    while (true) {
+      CharBuffer item;
+      try {
+        item = blocks.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (item == End) {
+        return;
+      }
+      try {
+        if (item == Flush) {
+          if (failure == null) {
+            out.flush();
+          }
+        } else if (failure == null) {
+          out.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
+      if (item == Flush) {
+        flushed.release();
+      }
+    }
+  }
+}
@@ -2,7 +2,12 @@ package calendar.view;
 
 import calendar.model.Event;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
 import java.util.Scanner;
 
@@ -10,7 +15,22 @@ import java.util.Scanner;
  * View class for the calendar event management system.
  */
 public class EventView {
-  private final PrintStream out;
+  private final Writer writer;
+  private final boolean flushEachCommand;
+
+  /**
+   * Writes output to the Appendable it is given.
+   * Used by the controller to let the model stream a command's output into the view.
+   */
+  public interface OutputSource {
+    /**
+     * Writes the output.
+     *
+     * @param output where the output is written
+     * @throws IOException if the output cannot be written
+     */
+    void writeTo(Appendable output) throws IOException;
+  }
 
   /**
    * Constructor for EventView.
@@ -18,7 +38,20 @@ public class EventView {
    * @param out output stream
    */
   public EventView(PrintStream out) {
-    this.out = out;
+    this.writer = new BufferedWriter(new OutputStreamWriter(out));
+    this.flushEachCommand = true;
+  }
+
+  /**
+   * Constructor for an EventView that writes to a buffered sink, for batch runs.
+   * Output is only flushed when the buffer fills up or flush is called, so a run of many
+   * commands is not slowed down by a write to the console for each of them.
+   *
+   * @param writer where the output is written
+   */
+  public EventView(Writer writer) {
+    this.writer = writer;
+    this.flushEachCommand = false;
   }
 
   /**
@@ -27,7 +60,13 @@ public class EventView {
    * @param message the error message to be printed
    */
   public void printError(String message) {
-    out.println("Error: " + message);
+    try {
+      writer.write("Error: " + message);
+      writer.write(System.lineSeparator());
+      endCommand();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   /**
@@ -38,7 +77,56 @@ public class EventView {
    */
 
   public String printEvent(String finalOutput) {
-    System.out.println(finalOutput);
+    if (flushEachCommand) {
+      System.out.println(finalOutput);
+      return finalOutput;
+    }
+    try {
+      writer.write(finalOutput);
+      writer.write(System.lineSeparator());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
     return finalOutput;
   }
-}
\ No newline at end of file
+
+  /**
+   * Prints the output of a command through a buffer as it is produced, so long output neither
+   * has to be built in memory first nor waits for the last event before showing the first.
+   * Ends with a line break, like printEvent.
+   *
+   * @param source writes the output
+   */
+  public void printStreamed(OutputSource source) {
+    try {
+      source.writeTo(writer);
+      writer.write(System.lineSeparator());
+    } catch (IOException e) {
+      printError(e.getMessage());
+    } finally {
+      try {
+        endCommand();
+      } catch (IOException e) {
+        printError(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Writes out everything that is still buffered.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  /**
+   * Helper that flushes the output after each command, unless the view writes a batch.
+   */
+  private void endCommand() throws IOException {
+    if (flushEachCommand) {
+      writer.flush();
+    }
+  }
+}
@@ -2,20 +2,50 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.time.LocalDateTime;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import calendar.model.Calendar;
+import calendar.model.CalendarManager;
+import calendar.controller.BatchRunner;
+import calendar.controller.CommandServer;
 import calendar.controller.EventController;
 import calendar.model.Location;
 import calendar.model.Status;
 import calendar.model.Event;
+import calendar.model.Journal;
+import calendar.view.BackgroundWriter;
+import calendar.view.EventView;
 
 /**
  * Test class for the EventController class.
@@ -151,6 +181,21 @@ public class EventControllerTest {
             controller.printEvent("print events from 2025-04-20T08:00 to 2025-04-20T09:30"));
   }
 
+  @Test
+  public void testPrintEventsStreamedToView() {
+    // print commands run by the command loop are streamed to the view's output stream
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed));
+    provideInput("create event AnotherEvent from 2025-04-20T08:00 to 2025-04-20T09:30\n" +
+            "create event Lunch from 2025-04-20T12:00 to 2025-04-20T13:00\n" +
+            "print events on 2025-04-20\nexit");
+    controller.createCalendar("create Calendar Main Calendar America/Chicago");
+    controller.useCalendar("use Calendar Main Calendar");
+    controller.controllerHelper();
+    assertEquals("* AnotherEvent on 2025-04-20* Lunch on 2025-04-20" + System.lineSeparator(),
+            printed.toString());
+  }
+
   @Test
   public void testPrintStatus() {
     // testing the input format of
@@ -199,7 +244,8 @@ public class EventControllerTest {
     controller.controllerHelper();
     assertEquals(Status.PRIVATE, controller.getCurrentCalendar()
             .getEventModel().getEvents().get(0).getStatus());
-    assertEquals(Status.PRIVATE, controller.getCurrentCalendar()
+    // Two single events only share a subject, they are not one series
+    assertNull(controller.getCurrentCalendar()
             .getEventModel().getEvents().get(1).getStatus());
   }
 
@@ -304,6 +350,215 @@ public class EventControllerTest {
             .get(0).getTimezone());
   }
 
+  @Test
+  public void testRenamedCalendarKeepsEventsAndName() {
+    provideInput("create event AnotherEvent from 2025-04-20T08:00 to 2025-04-20T09:30\n" +
+            "edit calendar Main Calendar name New Calendar\n" +
+            "use calendar New Calendar\nexit");
+    controller.createCalendar("create Calendar Main Calendar America/Chicago");
+    controller.useCalendar("use Calendar Main Calendar");
+    controller.controllerHelper();
+
+    assertEquals("New Calendar", controller.getCurrentCalendar().getName());
+    assertEquals(1, controller.getCurrentCalendar().getEventModel().getEvents().size());
+    assertNull(controller.calendarManager.useCalendar("Main Calendar"));
+  }
+
+  @Test
+  public void testSessionsUseCalendarsOfTheirOwn() {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Work", ZoneId.of("America/New_York"));
+    manager.createCalendar("Home", ZoneId.of("America/New_York"));
+    EventView view = new EventView(new StringWriter());
+    EventController first = new EventController(null, null, view, manager,
+            manager.newSession());
+    EventController second = new EventController(null, null, view, manager,
+            manager.newSession());
+
+    first.useCalendar("use calendar Work");
+    second.useCalendar("use calendar Home");
+    first.createEvent("create event Review from 2024-03-20T14:30 to 2024-03-20T15:30");
+    second.createEvent("create event Dinner from 2024-03-20T18:00 to 2024-03-20T19:00");
+    // Each copies out of the calendar it uses into the other one
+    first.copyEvent("copy events on 2024-03-20T00:00 to Home at 2024-03-21T00:00");
+    second.copyEvent("copy events on 2024-03-20T00:00 to Work at 2024-03-22T00:00");
+    first.editCalendar("edit calendar Work name Office");
+
+    assertEquals("Office", first.getCurrentCalendar().getName());
+    assertEquals("Home", second.getCurrentCalendar().getName());
+    assertEquals(2, first.getCurrentCalendar().getEventModel().getEvents().size());
+    assertEquals(2, second.getCurrentCalendar().getEventModel().getEvents().size());
+    assertNull(manager.getCalendarInUse());
+  }
+
+  @Test
+  public void testServerRunsClientsSideBySide() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    ExecutorService threads = Executors.newFixedThreadPool(9);
+    try (CommandServer server = new CommandServer(manager, 0)) {
+      threads.submit(() -> {
+        server.serve();
+        return null;
+      });
+      List<Future<?>> done = new ArrayList<>();
+      for (int c = 0; c < 8; c++) {
+        String name = "Client " + c;
+        done.add(threads.submit(() -> {
+          try (Socket socket = new Socket("localhost", server.getPort());
+               BufferedReader in = new BufferedReader(new InputStreamReader(
+                       socket.getInputStream(), StandardCharsets.UTF_8));
+               Writer out = new OutputStreamWriter(socket.getOutputStream(),
+                       StandardCharsets.UTF_8)) {
+            assertEquals(List.of(), send(in, out, "create calendar " + name + " UTC"));
+            assertEquals(List.of(), send(in, out, "use calendar " + name));
+            assertEquals(List.of(), send(in, out, ""));
+            assertEquals(List.of(), send(in, out,
+                    "create event Standup from 2025-04-20T08:00 to 2025-04-20T08:15"));
+            List<String> printed = send(in, out, "print events on 2025-04-20");
+            assertEquals(1, printed.size());
+            assertTrue(printed.get(0).startsWith("* Standup"));
+            List<String> failed = send(in, out, "use calendar Missing");
+            assertEquals(1, failed.size());
+            assertTrue(failed.get(0).startsWith("Error: "));
+            // The session still uses its own calendar after the failed switch
+            assertEquals(printed, send(in, out, "print events on 2025-04-20"));
+            out.write("exit\n");
+            out.flush();
+            assertNull(in.readLine());
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : done) {
+        future.get();
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+    assertEquals(8, manager.getCalendars().size());
+    for (Calendar calendar : manager.getCalendars()) {
+      assertEquals(1, calendar.getEventModel().getEvents().size());
+    }
+  }
+
+  @Test
+  public void testServerClientThatStopsReadingBlocksNoOne() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Shared", ZoneId.of("UTC"));
+    List<Event> day = new ArrayList<>();
+    for (int minute = 0; minute < 1440; minute++) {
+      LocalDateTime start = LocalDateTime.of(2025, 4, 20, 0, 0).plusMinutes(minute);
+      day.add(Event.getBuilder().setSubject("Slot " + minute).setStartDateTime(start)
+              .setEndDateTime(start.plusMinutes(1)).build());
+    }
+    manager.getCalendars().get(0).getEventModel().paste(day);
+    ExecutorService threads = Executors.newFixedThreadPool(1);
+    try (CommandServer server = new CommandServer(manager, 0);
+         Socket stalled = new Socket();
+         Socket other = new Socket("localhost", server.getPort())) {
+      threads.submit(() -> {
+        server.serve();
+        return null;
+      });
+      stalled.setReceiveBufferSize(4096);
+      stalled.connect(new InetSocketAddress("localhost", server.getPort()));
+      // Asks for far more output than the socket buffers hold, and never reads it
+      Writer stalledOut = new OutputStreamWriter(stalled.getOutputStream(),
+              StandardCharsets.UTF_8);
+      stalledOut.write("use calendar Shared\n");
+      for (int i = 0; i < 200; i++) {
+        stalledOut.write("print events on 2025-04-20\n");
+      }
+      stalledOut.flush();
+      // Gives the server time to run into the full socket
+      Thread.sleep(500);
+
+      other.setSoTimeout(10000);
+      BufferedReader in = new BufferedReader(new InputStreamReader(other.getInputStream(),
+              StandardCharsets.UTF_8));
+      Writer out = new OutputStreamWriter(other.getOutputStream(), StandardCharsets.UTF_8);
+      assertEquals(List.of(), send(in, out, "use calendar Shared"));
+      for (int i = 0; i < 20; i++) {
+        assertEquals(List.of(), send(in, out, "create event Late " + i
+                + " from 2025-04-21T08:00 to 2025-04-21T08:15"));
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+    assertEquals(1460, manager.getCalendars().get(0).getEventModel().getEvents().size());
+  }
+
+  @Test
+  public void testServerAnswersChangesOnceTheJournalHoldsThem() throws Exception {
+    Path file = Files.createTempFile("calendars", ".journal");
+    Files.delete(file);
+    ExecutorService threads = Executors.newFixedThreadPool(1);
+    try (Journal journal = Journal.open(file)) {
+      CalendarManager manager = journal.recover(null);
+      long empty = Files.size(file);
+      try (CommandServer server = new CommandServer(manager, 0, journal)) {
+        threads.submit(() -> {
+          server.serve();
+          return null;
+        });
+        try (Socket socket = new Socket("localhost", server.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8)) {
+          assertEquals(List.of(), send(in, out, "create calendar Work UTC"));
+          // Written without waiting for the journal's commit delay
+          long created = Files.size(file);
+          assertTrue(created > empty);
+          assertEquals(List.of(), send(in, out, "use calendar Work"));
+          assertEquals(List.of(), send(in, out,
+                  "create event Standup from 2025-04-20T08:00 to 2025-04-20T08:15"));
+          assertTrue(Files.size(file) > created);
+        }
+      }
+    } finally {
+      threads.shutdownNow();
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Helper that sends a command to the server and returns the lines of its answer.
+   */
+  private static List<String> send(BufferedReader in, Writer out, String command) {
+    try {
+      out.write(command + "\n");
+      out.flush();
+      List<String> lines = new ArrayList<>();
+      String line;
+      while (!(line = in.readLine()).equals(CommandServer.EndOfResponse)) {
+        lines.add(line);
+      }
+      return lines;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateCalendarWithTakenName() {
+    controller.calendarManager.createCalendar("Test Calendar", ZoneId.of("America/New_York"));
+    controller.calendarManager.createCalendar("Test Calendar", ZoneId.of("Asia/Tokyo"));
+  }
+
+  @Test
+  public void testCopyToUnknownCalendar() {
+    controller.calendarManager.createCalendar("Test Calendar", ZoneId.of("America/New_York"));
+    controller.calendarManager.useCalendar("Test Calendar");
+    try {
+      controller.calendarManager.copyEventsOn("2024-03-20T00:00", "Missing",
+              "2024-03-21T00:00");
+      fail("Copying to a calendar that does not exist should fail");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Calendar not found: Missing", e.getMessage());
+    }
+  }
+
   @Test
   public void testCopyEvent() {
     // Create two calendars with different timezones
@@ -472,4 +727,239 @@ public class EventControllerTest {
     provideInput("mock view\nexit");
     controller.controllerHelper();
   }
+
+  @Test
+  public void testSubjectsWithKeywords() {
+    provideInput("create event Trip to Paris from 2025-04-20T08:00 to 2025-04-20T09:30\n"
+            + "create event Plan for Q3 from 2025-04-21T10:00 to 2025-04-21T11:00 "
+            + "repeats M for 2 times\n"
+            + "create event Notes from the lab on 2025-04-22\nexit");
+    controller.createCalendar("create Calendar Main Calendar America/Chicago");
+    controller.useCalendar("use Calendar Main Calendar");
+    controller.controllerHelper();
+
+    List<Event> events = controller.getCurrentCalendar().getEventModel().getEvents();
+    // Repeating "for 2 times" adds two occurrences to the first one
+    assertEquals(5, events.size());
+    assertEquals("Trip to Paris", events.get(0).getSubject());
+    assertEquals(LocalDateTime.of(2025, 4, 20, 9, 30), events.get(0).getEndDateTime());
+    assertEquals("Plan for Q3", events.get(1).getSubject());
+    // The end given with "to" is kept for a series repeating "for N times"
+    assertEquals(LocalDateTime.of(2025, 4, 21, 11, 0), events.get(1).getEndDateTime());
+    assertEquals("Notes from the lab", events.get(2).getSubject());
+    assertEquals(LocalDateTime.of(2025, 4, 22, 8, 0), events.get(2).getStartDateTime());
+    assertEquals(LocalDateTime.of(2025, 4, 28, 10, 0), events.get(3).getStartDateTime());
+    assertEquals(LocalDateTime.of(2025, 5, 5, 10, 0), events.get(4).getStartDateTime());
+  }
+
+  @Test
+  public void testEditEventWithKeywordsInSubjectAndValue() {
+    provideInput("create event Walk to work from 2025-04-20T08:00 to 2025-04-20T09:30\n"
+            + "edit event subject Walk to work from 2025-04-20T08:00 to 2025-04-20T09:30 "
+            + "with Ride to work\nexit");
+    controller.createCalendar("create Calendar Main Calendar America/Chicago");
+    controller.useCalendar("use Calendar Main Calendar");
+    controller.controllerHelper();
+
+    assertEquals("Ride to work", controller.getCurrentCalendar().getEventModel()
+            .getEvents().get(0).getSubject());
+  }
+
+  @Test
+  public void testCopyToCalendarWithKeywordsInName() {
+    provideInput("copy event Move to Boston from 2025-04-20T08:00 to Back to School at "
+            + "2025-05-01T10:00\nexit");
+    controller.createCalendar("create Calendar Main Calendar America/Chicago");
+    controller.createCalendar("create Calendar Back to School America/Chicago");
+    controller.useCalendar("use Calendar Main Calendar");
+    controller.createEvent("create event Move to Boston from 2025-04-20T08:00 "
+            + "to 2025-04-20T09:30");
+    controller.controllerHelper();
+
+    List<Event> copied = controller.calendarManager.getCalendars().get(1).getEventModel()
+            .getEvents();
+    assertEquals(1, copied.size());
+    assertEquals("Move to Boston", copied.get(0).getSubject());
+    assertEquals(LocalDateTime.of(2025, 5, 1, 10, 0), copied.get(0).getStartDateTime());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateEventWithoutTimes() {
+    controller.createCalendar("create Calendar Main Calendar America/Chicago");
+    controller.useCalendar("use Calendar Main Calendar");
+    controller.createEvent("create event Trip to Paris");
+  }
+
+  @Test
+  public void testBatchRunReportsErrorsAndGoesOn() throws IOException {
+    Path file = Files.createTempFile("commands", ".txt");
+    try {
+      Files.write(file, ("create calendar Main America/Chicago\r\n"
+              + "use calendar Main\n"
+              + "\n"
+              + "create event Standup from 2025-04-20T08:00 to 2025-04-20T08:15\n"
+              + "create event Standup from 2025-04-20T08:00 to 2025-04-20T08:15\n"
+              + "print events on 2025-04-20").getBytes(StandardCharsets.UTF_8));
+      StringWriter sink = new StringWriter();
+      EventView view = new EventView(sink);
+      EventController batchController = new EventController(null, null, view);
+      BatchRunner runner = new BatchRunner(batchController, view);
+
+      assertEquals(5, runner.run(file));
+      assertEquals(1, batchController.getCurrentCalendar().getEventModel().getEvents().size());
+      String printed = sink.toString();
+      assertTrue(printed.startsWith("Error: Line 5: "));
+      assertTrue(printed.contains("Standup"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testPipelinedBatchRunMatchesSerialRun() throws IOException {
+    StringBuilder script = new StringBuilder("create calendar Main America/Chicago\n"
+            + "use calendar Main\n");
+    LocalDateTime base = LocalDateTime.of(2025, 4, 20, 8, 0);
+    for (int i = 0; i < 1500; i++) {
+      LocalDateTime start = base.plusMinutes(30L * (i % 700));
+      script.append("create event Event ").append(i % 700).append(" from ").append(start)
+              .append(" to ").append(start.plusMinutes(25)).append('\n');
+      if (i % 50 == 0) {
+        script.append("print events on ").append(start.toLocalDate()).append("\n\n");
+      }
+      if (i % 333 == 0) {
+        script.append("edit event location Event ").append(i % 700).append(" from ")
+                .append(start).append(" with nowhere\n");
+      }
+    }
+    script.append("exit\ncreate event After exit from 2025-04-20T08:00\n");
+    Path file = Files.createTempFile("commands", ".txt");
+    try {
+      Files.write(file, script.toString().getBytes(StandardCharsets.UTF_8));
+
+      StringWriter serialOutput = new StringWriter();
+      EventView serialView = new EventView(serialOutput);
+      EventController serial = new EventController(null, null, serialView);
+      long serialCommands = new BatchRunner(serial, serialView).run(file);
+
+      StringWriter pipelinedOutput = new StringWriter();
+      EventView pipelinedView = new EventView(new BackgroundWriter(pipelinedOutput));
+      EventController pipelined = new EventController(null, null, pipelinedView);
+      long pipelinedCommands = new BatchRunner(pipelined, pipelinedView, 3).run(file);
+
+      assertEquals(serialCommands, pipelinedCommands);
+      assertEquals(serialOutput.toString(), pipelinedOutput.toString());
+      assertTrue(serialOutput.toString().contains("Error: Line "));
+      assertEquals(700, pipelined.getCurrentCalendar().getEventModel().getEvents().size());
+      assertEquals(serial.getCurrentCalendar().getEventModel().getEvents(),
+              pipelined.getCurrentCalendar().getEventModel().getEvents());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testPipelinedBatchRunReportsReadFailureBehindFullQueue() throws Exception {
+    // With one parse thread four chunks fit in the queue; the channel fails after five
+    byte[] script = "bogus\n".repeat(5 * 512).getBytes(StandardCharsets.UTF_8);
+    CountDownLatch failed = new CountDownLatch(1);
+    Thread[] reader = new Thread[1];
+    ReadableByteChannel channel = new ReadableByteChannel() {
+      private int position;
+
+      @Override
+      public int read(ByteBuffer dst) throws IOException {
+        if (position == script.length) {
+          reader[0] = Thread.currentThread();
+          failed.countDown();
+          throw new IOException("Disk gone");
+        }
+        int count = Math.min(dst.remaining(), script.length - position);
+        dst.put(script, position, count);
+        position += count;
+        return count;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return true;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    // The first error holds up the run until the reader has failed and handed on the failure
+    // or given up, so the queue is full when it fails
+    StringWriter output = new StringWriter();
+    Writer stalling = new Writer() {
+      private boolean waited;
+
+      @Override
+      public void write(char[] chars, int offset, int length) throws IOException {
+        if (!waited) {
+          waited = true;
+          try {
+            failed.await();
+            while (reader[0].getState() != Thread.State.TIMED_WAITING
+                    && reader[0].getState() != Thread.State.TERMINATED) {
+              Thread.sleep(1);
+            }
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+        }
+        output.write(chars, offset, length);
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    EventView view = new EventView(stalling);
+    BatchRunner runner = new BatchRunner(new EventController(null, null, view), view, 1);
+
+    ExecutorService runs = Executors.newSingleThreadExecutor();
+    try {
+      runs.submit(() -> runner.run(channel)).get(10, TimeUnit.SECONDS);
+      fail("The read failure was not reported");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+      assertEquals("Disk gone", e.getCause().getMessage());
+    } finally {
+      runs.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPipelinedBatchRunLeavesTheChannelOpen() throws Exception {
+    // A full chunk that starts with the exit, after which the reader waits on the pipe for
+    // more input while the run stops
+    Pipe pipe = Pipe.open();
+    try (Pipe.SourceChannel source = pipe.source()) {
+      try (Pipe.SinkChannel sink = pipe.sink()) {
+        ByteBuffer chunk = ByteBuffer.wrap(("exit\n" + "\n".repeat(511))
+                .getBytes(StandardCharsets.UTF_8));
+        while (chunk.hasRemaining()) {
+          sink.write(chunk);
+        }
+        EventView view = new EventView(new StringWriter());
+        BatchRunner runner = new BatchRunner(new EventController(null, null, view), view, 1);
+
+        assertEquals(0, runner.run(source));
+        assertTrue(source.isOpen());
+      }
+      // The end of the input lets the reader finish
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+        if (thread.getName().equals("command-reader")) {
+          thread.join(10_000);
+        }
+      }
+      assertTrue(source.isOpen());
+    }
+  }
 }
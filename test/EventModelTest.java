@@ -4,16 +4,39 @@ import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import calendar.model.Calendar;
+import calendar.model.CalendarManager;
+import calendar.model.CalendarSnapshot;
 import calendar.model.Event;
+import calendar.model.EventEdit;
 import calendar.model.Location;
 import calendar.model.Status;
 import calendar.model.EventModel;
+import calendar.model.Journal;
+import calendar.model.Session;
 
 /**
  * Test class for the EventModel class.
@@ -26,6 +49,8 @@ public class EventModelTest {
   @Before
   public void setUp() {
     model = new EventModel();
+    // Every query below is checked against a linear scan of all events
+    model.setCrossCheck(true);
     startTime = LocalDateTime.of(2024, 3, 20, 14, 30);
     endTime = LocalDateTime.of(2024, 3, 20, 15, 30);
   }
@@ -653,4 +678,1082 @@ public class EventModelTest {
 
 
 
-} 
\ No newline at end of file
+
+  // Test that the interval index agrees with a linear scan on random events and queries
+  @Test
+  public void testIndexMatchesLinearScan() {
+    Random random = new Random(42);
+    LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+    for (int i = 0; i < 500; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 60));
+      LocalDateTime end = start.plusMinutes(random.nextInt(60 * 24 * 3));
+      // Only same-day events can repeat
+      boolean repeats = random.nextInt(5) == 0
+              && end.toLocalDate().equals(start.toLocalDate());
+      model.createEvent("Event" + i, null, start, end, Location.ONLINE, Status.PUBLIC,
+              null, repeats ? 3 : 0);
+    }
+    for (int i = 0; i < 20; i++) {
+      LocalDateTime edited = model.getEvents().get(random.nextInt(500)).getStartDateTime();
+      String subject = null;
+      for (Event event : model.getEvents()) {
+        if (event.getStartDateTime().equals(edited)) {
+          subject = event.getSubject();
+        }
+      }
+      model.editEvent("start", subject, edited, edited.minusHours(5).toString());
+    }
+
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 65));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 6) - 60);
+      LocalDate day = from.toLocalDate();
+      // Each call throws IllegalStateException if the index and the scan disagree
+      model.printDateTimeString(from, to);
+      model.printDate(day);
+      model.printStatus("show status on ", from);
+      model.eventsLeft(day.toString());
+      model.eventsToView(day.toString());
+    }
+  }
+
+  // Test that a day query returns events that start or end on that day, but not ones spanning it
+  @Test
+  public void testPrintDateWithMultiDayEvents() {
+    model.createEvent("Conference", null, LocalDateTime.of(2024, 3, 19, 9, 0),
+            LocalDateTime.of(2024, 3, 21, 17, 0), Location.PHYSICAL, Status.PUBLIC, null, 0);
+    model.createEvent("Lunch", null, LocalDateTime.of(2024, 3, 21, 12, 0),
+            LocalDateTime.of(2024, 3, 21, 13, 0), null, Status.PUBLIC, null, 0);
+
+    assertEquals("", model.printDate(LocalDate.of(2024, 3, 20)));
+    assertEquals("*PHYSICAL Conference on 2024-03-19* Lunch on 2024-03-21",
+            model.printDate(LocalDate.of(2024, 3, 21)));
+    assertEquals("busy", model.printStatus("show status on ",
+            LocalDateTime.of(2024, 3, 20, 23, 0)));
+    assertEquals("available", model.printStatus("show status on ",
+            LocalDateTime.of(2024, 3, 21, 17, 1)));
+  }
+
+  // Test that paste skips events already in the model and duplicates within the pasted list
+  @Test
+  public void testPasteSkipsDuplicates() {
+    model.createEvent("Test Event", null, startTime, endTime, Location.PHYSICAL,
+            Status.PUBLIC, null, 0);
+    Event same = Event.getBuilder().setSubject("Test Event")
+            .setStartDateTime(startTime).setEndDateTime(endTime).build();
+    Event other = Event.getBuilder().setSubject("Other Event")
+            .setStartDateTime(startTime).setEndDateTime(endTime).build();
+
+    model.paste(List.of(same, other, other));
+
+    assertEquals(2, model.getEvents().size());
+  }
+
+  // Test that duplicate detection stays correct after edits make and break equal events
+  @Test
+  public void testDuplicateDetectionFollowsEdits() {
+    model.createEvent("First", null, startTime, endTime, Location.PHYSICAL,
+            Status.PUBLIC, null, 0);
+    model.createEvent("Second", null, startTime, endTime, Location.PHYSICAL,
+            Status.PUBLIC, null, 0);
+    // Both events are now equal, then one of them is renamed back
+    model.editEvent("subject", "Second", startTime, "First");
+    model.editEvent("subject", "First", startTime, "Third");
+
+    try {
+      model.createEvent("First", null, startTime, endTime, Location.PHYSICAL,
+              Status.PUBLIC, null, 0);
+      fail("Should have thrown IllegalArgumentException for a duplicate event");
+    } catch (IllegalArgumentException e) {
+      // expected, one "First" event is still in the model
+    }
+    model.createEvent("Second", null, startTime, endTime, Location.PHYSICAL,
+            Status.PUBLIC, null, 0);
+    assertEquals(3, model.getEvents().size());
+  }
+
+  // Test that occurrences of a recurring event are inserted in order among existing events
+  @Test
+  public void testRecurringEventsStaySorted() {
+    model.createEvent("Later", null, startTime.plusDays(2), endTime.plusDays(2),
+            null, null, null, 0);
+    model.createEvent("Daily", null, startTime.minusHours(1), endTime.minusHours(1),
+            null, null, null, 3);
+
+    List<Event> events = model.getEvents();
+    assertEquals(5, events.size());
+    for (int i = 1; i < events.size(); i++) {
+      assertEquals(false, events.get(i).getStartDateTime()
+              .isBefore(events.get(i - 1).getStartDateTime()));
+    }
+    assertEquals("Later", events.get(3).getSubject());
+  }
+
+  // Test that editing the start moves an event, while other edits keep its place among ties
+  @Test
+  public void testEditKeepsSortedOrder() {
+    model.createEvent("A", null, startTime, endTime, null, null, null, 0);
+    model.createEvent("B", null, startTime, endTime, null, null, null, 0);
+    model.createEvent("C", null, startTime.plusHours(3), endTime.plusHours(3),
+            null, null, null, 0);
+
+    model.editEvent("subject", "A", startTime, "A2");
+    assertEquals("* A2 on 2024-03-20* B on 2024-03-20* C on 2024-03-20",
+            model.printDate(startTime.toLocalDate()));
+
+    model.editEvent("start", "A2", startTime, startTime.plusMinutes(10).toString());
+    List<Event> events = model.getEvents();
+    assertEquals("B", events.get(0).getSubject());
+    assertEquals("A2", events.get(1).getSubject());
+    assertEquals("C", events.get(2).getSubject());
+  }
+
+  // Test that the lazily expanded occurrences are the ones a day-by-day expansion creates
+  @Test
+  public void testSeriesExpansionMatchesDayByDay() {
+    String[][] masks = {null, {"M"}, {"M", "W", "F"}, {"T", "R"}, {"S", "U"},
+        {"U", "M", "T", "W", "R", "F", "S"}};
+    for (int start = 0; start < 7; start++) {
+      for (String[] weekDays : masks) {
+        EventModel series = new EventModel();
+        LocalDateTime first = startTime.plusDays(start);
+        series.createEvent("Series", null, first, endTime.plusDays(start), null, null,
+                weekDays, 23);
+
+        List<LocalDateTime> expected = new ArrayList<>();
+        expected.add(first);
+        for (LocalDateTime day = first; expected.size() < 24; ) {
+          day = day.plusDays(1);
+          if (weekDays == null || matches(weekDays, day.getDayOfWeek())) {
+            expected.add(day);
+          }
+        }
+        List<Event> events = series.getEvents();
+        assertEquals(24, events.size());
+        for (int i = 0; i < 24; i++) {
+          assertEquals(expected.get(i), events.get(i).getStartDateTime());
+          assertEquals(expected.get(i).toLocalDate().atTime(endTime.toLocalTime()),
+                  events.get(i).getEndDateTime());
+        }
+      }
+    }
+  }
+
+  private static boolean matches(String[] weekDays, DayOfWeek day) {
+    String letters = "MTWRFSU";
+    for (String weekDay : weekDays) {
+      if (letters.indexOf(weekDay) == day.getValue() - 1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Test that a long series is only expanded inside the window a query asks for
+  @Test
+  public void testLongSeriesIsQueriedLazily() {
+    model.setCrossCheck(false);
+    model.createEvent("Standup", null, LocalDateTime.of(2024, 1, 1, 9, 0),
+            LocalDateTime.of(2024, 1, 1, 9, 15), Location.ONLINE, Status.PUBLIC,
+            new String[]{"M", "T", "W", "R", "F"}, 5_000_000);
+
+    assertEquals("*ONLINE Standup on 2030-06-03", model.printDate(LocalDate.of(2030, 6, 3)));
+    assertEquals("", model.printDate(LocalDate.of(2030, 6, 2)));
+    assertEquals("busy", model.printStatus("show status on ",
+            LocalDateTime.of(2030, 6, 3, 9, 15)));
+    assertEquals("available", model.printStatus("show status on ",
+            LocalDateTime.of(2030, 6, 3, 9, 16)));
+    // 2024-01-01 is a Monday, so the first week holds five occurrences
+    assertEquals(5, model.eventsLeft("2024-01-07"));
+    assertEquals(10, model.eventsToView("2030-06-03").size());
+  }
+
+  // Test that editing one occurrence stores it as an exception and leaves the others alone
+  @Test
+  public void testEditSingleOccurrence() {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 4);
+    model.editEvent("subject", "Daily", startTime.plusDays(2), "Moved");
+
+    List<Event> events = model.getEvents();
+    assertEquals(5, events.size());
+    assertEquals("Daily", events.get(1).getSubject());
+    assertEquals("Moved", events.get(2).getSubject());
+    assertEquals("Daily", events.get(3).getSubject());
+    assertEquals("*PHYSICAL Moved on 2024-03-22",
+            model.printDate(startTime.plusDays(2).toLocalDate()));
+
+    // The renamed occurrence is still a member of the series
+    model.editSeries("location", "Daily", startTime, "online");
+    for (Event event : model.getEvents()) {
+      assertEquals(Location.ONLINE, event.getLocation());
+    }
+  }
+
+  // Test that editing a series from a date only changes the occurrences from that date on
+  @Test
+  public void testEditEventsSplitsSeries() {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 4);
+    model.editEvents("status", "Daily", startTime.plusDays(3), "private");
+
+    List<Event> events = model.getEvents();
+    assertEquals(5, events.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i < 3 ? Status.PUBLIC : Status.PRIVATE, events.get(i).getStatus());
+    }
+  }
+
+  // Test that a duplicate of an occurrence is rejected without expanding the series
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateDuplicateOfOccurrence() {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 4);
+    model.createEvent("Daily", null, startTime.plusDays(3), endTime.plusDays(3),
+            Location.PHYSICAL, Status.PUBLIC, null, 0);
+  }
+
+  // Test that series edits reach only the series of the anchor, not other events with its subject
+  @Test
+  public void testEditSeriesLeavesSameSubjectAlone() {
+    model.createEvent("Standup", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 2);
+    model.createEvent("Standup", null, startTime.plusDays(10), endTime.plusDays(10),
+            Location.PHYSICAL, Status.PUBLIC, null, 2);
+    model.createEvent("Standup", null, startTime.plusDays(20), endTime.plusDays(20),
+            Location.PHYSICAL, Status.PUBLIC, null, 0);
+    model.editSeries("location", "Standup", startTime.plusDays(5), "online");
+
+    List<Event> events = model.getEvents();
+    assertEquals(7, events.size());
+    for (int i = 0; i < 7; i++) {
+      boolean edited = i >= 3 && i < 6;
+      assertEquals(edited ? Location.ONLINE : Location.PHYSICAL, events.get(i).getLocation());
+    }
+  }
+
+  // Test that occurrences edited on their own still belong to their series
+  @Test
+  public void testEditSeriesReachesDetachedOccurrences() {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 4);
+    model.editEvent("subject", "Daily", startTime.plusDays(2), "Moved");
+    model.editEvents("status", "Moved", startTime.plusDays(2), "private");
+
+    List<Event> events = model.getEvents();
+    assertEquals("Moved", events.get(2).getSubject());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i < 2 ? Status.PUBLIC : Status.PRIVATE, events.get(i).getStatus());
+      assertEquals(events.get(0).getSeriesId(), events.get(i).getSeriesId());
+    }
+  }
+
+  // Test that several properties are changed on every targeted event in one edit
+  @Test
+  public void testBatchEditSeries() {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 4);
+    model.editEvent("status", "Daily", startTime.plusDays(1), "private");
+    EventEdit edit = EventEdit.getBuilder()
+            .set("subject", "Review")
+            .set("location", "online")
+            .set("description", "weekly review")
+            .build();
+    model.editSeries("Daily", startTime, edit);
+
+    List<Event> events = model.getEvents();
+    assertEquals(5, events.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals("Review", events.get(i).getSubject());
+      assertEquals(Location.ONLINE, events.get(i).getLocation());
+      assertEquals("weekly review", events.get(i).getDescription());
+      assertEquals(i == 1 ? Status.PRIVATE : Status.PUBLIC, events.get(i).getStatus());
+    }
+  }
+
+  // Test that an edit which does not fit one occurrence leaves the whole series unchanged
+  @Test
+  public void testBatchEditIsAllOrNothing() {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 4);
+    model.editEvent("location", "Daily", startTime.plusDays(3), "online");
+    List<Event> before = model.getEvents();
+
+    EventEdit edit = EventEdit.getBuilder()
+            .set("status", "private")
+            .set("end", endTime.plusDays(2).toString())
+            .build();
+    try {
+      model.editSeries("Daily", startTime, edit);
+      fail("The edit ends some occurrences before they start");
+    } catch (IllegalArgumentException e) {
+      assertEquals("New end time cannot be before start time", e.getMessage());
+    }
+    assertEquals(before, model.getEvents());
+    for (Event event : model.getEvents()) {
+      assertEquals(Status.PUBLIC, event.getStatus());
+    }
+  }
+
+  // Test that invalid values are rejected when the edit is built
+  @Test(expected = IllegalArgumentException.class)
+  public void testBatchEditRejectsInvalidValue() {
+    EventEdit.getBuilder().set("subject", "Review").set("location", "moon").build();
+  }
+
+  // Test that the streamed output is written in order, single events and occurrences merged
+  @Test
+  public void testPrintStreamsInOrder() throws Exception {
+    model.createEvent("Daily", null, startTime, endTime, Location.PHYSICAL, Status.PUBLIC,
+            null, 2);
+    model.createEvent("Before", null, startTime.minusHours(1), endTime.plusDays(1),
+            Location.ONLINE, Status.PUBLIC, null, 0);
+    model.createEvent("Same", null, startTime, endTime, null, Status.PUBLIC, null, 0);
+
+    StringBuilder output = new StringBuilder();
+    model.printDate(startTime.toLocalDate(), output);
+    assertEquals("*ONLINE Before on 2024-03-20* Same on 2024-03-20*PHYSICAL Daily on 2024-03-20",
+            output.toString());
+    assertEquals(output.toString(), model.printDate(startTime.toLocalDate()));
+
+    output.setLength(0);
+    model.printDateTime(startTime, endTime, output);
+    assertEquals("*ONLINE Before between 2024-03-20T13:30 and 2024-03-21T15:30"
+            + "* Same between 2024-03-20T14:30 and 2024-03-20T15:30"
+            + "*PHYSICAL Daily between 2024-03-20T14:30 and 2024-03-20T15:30", output.toString());
+    assertEquals(output.toString(), model.printDateTimeString(startTime, endTime));
+  }
+
+  // Test that the busy-time bitmaps follow creates, edits and pastes made after days are cached
+  @Test
+  public void testStatusFollowsChanges() {
+    Random random = new Random(7);
+    LocalDateTime base = LocalDateTime.of(2024, 5, 1, 0, 0);
+    for (int i = 0; i < 200; i++) {
+      // Second precision, so some minutes are only partly covered
+      LocalDateTime start = base.plusSeconds(random.nextInt(60 * 60 * 24 * 10));
+      LocalDateTime end = start.plusSeconds(random.nextInt(60 * 60 * 30));
+      boolean repeats = random.nextInt(6) == 0
+              && end.toLocalDate().equals(start.toLocalDate());
+      model.createEvent("Event" + i, null, start, end, Location.ONLINE, Status.PUBLIC,
+              null, repeats ? 2 : 0);
+      if (i % 10 == 0) {
+        List<Event> events = model.getEvents();
+        Event edited = events.get(random.nextInt(events.size()));
+        model.editEvent("end", edited.getSubject(), edited.getStartDateTime(),
+                edited.getStartDateTime().plusMinutes(random.nextInt(90)).toString());
+      }
+      if (i % 25 == 0) {
+        LocalDateTime pasted = base.plusMinutes(random.nextInt(60 * 24 * 10));
+        model.paste(List.of(Event.getBuilder().setSubject("Pasted" + i)
+                .setStartDateTime(pasted).setEndDateTime(pasted.plusHours(2)).build()));
+      }
+      // Each probe throws IllegalStateException if the bitmaps and the scan disagree
+      for (int j = 0; j < 20; j++) {
+        model.printStatus("show status on ",
+                base.plusSeconds(random.nextInt(60 * 60 * 24 * 12)));
+      }
+    }
+  }
+
+  @Test
+  public void testSnapshotRoundTrip() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Work", ZoneId.of("America/New_York"));
+    manager.createCalendar("Home", ZoneId.of("Asia/Tokyo"));
+    EventModel work = manager.useCalendar("Work").getEventModel();
+    work.createEvent("Review", null, startTime, endTime, Location.ONLINE, null, null, 0);
+    work.createEvent("Review", "Second pass", startTime, endTime.plusNanos(5), null,
+            Status.PRIVATE, null, 0);
+    work.createEvent("Standup", "Daily", startTime.plusDays(1), endTime.plusDays(1),
+            Location.PHYSICAL, Status.PUBLIC, new String[]{"M", "W", "F"}, 10);
+    // Detach one occurrence and split the rest of the series in two
+    work.editEvent("location", "Standup", LocalDateTime.of(2024, 3, 25, 14, 30), "online");
+    work.editEvents("status", "Standup", LocalDateTime.of(2024, 4, 1, 14, 30), "private");
+    manager.useCalendar("Home").getEventModel().createEvent("Dentist", null, startTime,
+            null, null, null, null, 0);
+    manager.useCalendar("Work");
+
+    Path file = Files.createTempFile("calendars", ".snapshot");
+    try {
+      CalendarSnapshot.write(manager, file);
+      CalendarManager loaded = CalendarSnapshot.read(file);
+
+      assertEquals("Work", loaded.getCalendarInUse().getName());
+      assertEquals(2, loaded.getCalendars().size());
+      assertEquals(ZoneId.of("Asia/Tokyo"), loaded.getCalendars().get(1).getTimezone());
+      EventModel loadedWork = loaded.getCalendarInUse().getEventModel();
+      loadedWork.setCrossCheck(true);
+      assertEquals(describe(work.getEvents()), describe(loadedWork.getEvents()));
+      assertEquals(describe(manager.getCalendars().get(1).getEventModel().getEvents()),
+              describe(loaded.getCalendars().get(1).getEventModel().getEvents()));
+      assertEquals(work.printDate(LocalDate.of(2024, 3, 25)),
+              loadedWork.printDate(LocalDate.of(2024, 3, 25)));
+      assertEquals("busy", loadedWork.printStatus("show status on ",
+              LocalDateTime.of(2024, 3, 27, 15, 0)));
+
+      // Series ids survive, so a series edit reaches the same members on both sides
+      work.editSeries("description", "Standup", startTime.plusDays(1), "Moved");
+      loadedWork.editSeries("description", "Standup", startTime.plusDays(1), "Moved");
+      assertEquals(describe(work.getEvents()), describe(loadedWork.getEvents()));
+      // A new series does not take the id of a loaded one
+      loadedWork.createEvent("Retro", null, startTime.plusDays(3), endTime.plusDays(3), null,
+              null, new String[]{"F"}, 2);
+      loadedWork.editSeries("status", "Retro", startTime, "public");
+      assertEquals(Status.PRIVATE, loadedWork.getEvents().stream()
+              .filter(e -> e.getSubject().equals("Standup"))
+              .reduce((first, second) -> second).get().getStatus());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testSnapshotRejectsOtherFiles() throws Exception {
+    Path file = Files.createTempFile("calendars", ".snapshot");
+    try {
+      Files.write(file, "create calendar Work America/New_York".getBytes());
+      CalendarSnapshot.read(file);
+      fail("Expected the file to be rejected");
+    } catch (IOException e) {
+      // expected
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testSnapshotNeverHoldsHalfAChange() throws Exception {
+    for (boolean columnar : new boolean[]{false, true}) {
+      CalendarManager manager = new CalendarManager();
+      manager.setColumnar(columnar);
+      manager.createCalendar("Work", ZoneId.of("UTC"));
+      EventModel work = manager.useCalendar("Work").getEventModel();
+      LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+      Path file = Files.createTempFile("calendars", ".snapshot");
+      // Events come in pairs, so every complete state holds an even number of them
+      ExecutorService writer = Executors.newSingleThreadExecutor();
+      try {
+        Future<?> pasted = writer.submit(() -> {
+          for (int day = 0; day < 2000; day++) {
+            work.paste(pairOn(base.plusDays(day), "Pair " + day));
+          }
+        });
+        while (!pasted.isDone()) {
+          CalendarSnapshot.write(manager, file);
+          EventModel saved = CalendarSnapshot.read(file).getCalendarInUse().getEventModel();
+          assertEquals(0, saved.getEvents().size() % 2);
+        }
+        pasted.get();
+      } finally {
+        writer.shutdownNow();
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void testJournalReplaysChanges() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    Path file = directory.resolve("calendars.journal");
+    CalendarManager manager;
+    try (Journal journal = Journal.open(file)) {
+      manager = journal.recover(null);
+      changeCalendars(manager);
+    }
+    try (Journal journal = Journal.open(file)) {
+      CalendarManager recovered = journal.recover(null);
+      assertSameCalendars(manager, recovered);
+      assertEquals("Office", recovered.getCalendarInUse().getName());
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testJournalKeepsChangesOfConcurrentWriters() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    Path file = directory.resolve("calendars.journal");
+    try (Journal journal = Journal.open(file)) {
+      CalendarManager manager = journal.recover(null);
+      for (int c = 0; c < 8; c++) {
+        manager.createCalendar("Calendar " + c, ZoneId.of("UTC"));
+      }
+      // Large records fill batches quickly, so writers wait for room while others append
+      ExecutorService threads = Executors.newFixedThreadPool(8);
+      try {
+        List<Future<?>> done = new ArrayList<>();
+        for (Calendar calendar : manager.getCalendars()) {
+          EventModel model = calendar.getEventModel();
+          done.add(threads.submit(() -> {
+            for (int paste = 0; paste < 20; paste++) {
+              List<Event> events = new ArrayList<>();
+              for (int i = 0; i < 2000; i++) {
+                LocalDateTime start = startTime.plusMinutes(30L * (2000 * paste + i));
+                events.add(Event.getBuilder().setSubject("Event " + i).setStartDateTime(start)
+                        .setEndDateTime(start.plusMinutes(25)).build());
+              }
+              model.paste(events);
+            }
+            return null;
+          }));
+        }
+        for (Future<?> future : done) {
+          future.get();
+        }
+      } finally {
+        threads.shutdownNow();
+      }
+    }
+    try (Journal journal = Journal.open(file)) {
+      CalendarManager recovered = journal.recover(null);
+      assertEquals(8, recovered.getCalendars().size());
+      for (Calendar calendar : recovered.getCalendars()) {
+        assertEquals(40000, calendar.getEventModel().getEvents().size());
+      }
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testJournalRecoversAfterCheckpointAndTornRecord() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    Path file = directory.resolve("calendars.journal");
+    Path snapshot = directory.resolve("calendars.snapshot");
+    CalendarManager manager;
+    try (Journal journal = Journal.open(file)) {
+      manager = journal.recover(snapshot);
+      changeCalendars(manager);
+      journal.checkpoint(manager, snapshot);
+      // Only these come from the journal, the rest from the snapshot
+      manager.getCalendarInUse().getEventModel().createEvent("Lunch", null, startTime,
+              endTime, null, null, null, 0);
+      manager.createCalendar("Travel", ZoneId.of("Europe/Paris"));
+    }
+    // A record cut short by a crash
+    Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+    CalendarManager recovered;
+    try (Journal journal = Journal.open(file)) {
+      recovered = journal.recover(snapshot);
+      assertSameCalendars(manager, recovered);
+      // Changes after recovery follow the last whole record
+      recovered.useCalendar("Travel").getEventModel().createEvent("Flight", null, startTime,
+              endTime, null, null, null, 0);
+    }
+    try (Journal journal = Journal.open(file)) {
+      assertSameCalendars(recovered, journal.recover(snapshot));
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testArchiveAnswersLikeMemory() throws Exception {
+    EventModel inMemory = new EventModel();
+    Random random = new Random(7);
+    LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+    for (int i = 0; i < 500; i++) {
+      // Distinct starts, so ties cannot order archived and in-memory events differently
+      LocalDateTime start = base.plusMinutes(i * 167L + random.nextInt(100));
+      LocalDateTime end = start.plusMinutes(random.nextInt(60 * 24 * 3));
+      boolean repeats = random.nextInt(5) == 0
+              && end.toLocalDate().equals(start.toLocalDate());
+      for (EventModel target : List.of(model, inMemory)) {
+        target.createEvent("Event" + i, i % 3 == 0 ? null : "Note " + (i % 7), start, end,
+                i % 2 == 0 ? Location.ONLINE : null, Status.PUBLIC, null, repeats ? 3 : 0);
+      }
+    }
+    Path directory = Files.createTempDirectory("archive");
+    try {
+      LocalDateTime cutoff = base.plusDays(30);
+      int moved = model.archive(cutoff, directory.resolve("first.archive"));
+      // Archiving again merges with the events already archived
+      moved += model.archive(cutoff.plusDays(10), directory.resolve("second.archive"));
+      assertEquals(0, model.archive(cutoff, directory.resolve("third.archive")));
+      assertEquals(true, moved > 200);
+      // The two models number their series apart
+      assertEquals(describeWithoutIds(inMemory.getEvents()),
+              describeWithoutIds(model.getEvents()));
+
+      for (int i = 0; i < 300; i++) {
+        LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 65));
+        LocalDateTime to = from.plusMinutes(random.nextInt(60 * 6) - 60);
+        LocalDate day = from.toLocalDate();
+        // The archived model also checks itself against a linear scan
+        assertEquals(inMemory.printDateTimeString(from, to), model.printDateTimeString(from, to));
+        assertEquals(inMemory.printDate(day), model.printDate(day));
+        assertEquals(inMemory.printStatus("show status on ", from),
+                model.printStatus("show status on ", from));
+        assertEquals(inMemory.eventsLeft(day.toString()), model.eventsLeft(day.toString()));
+        assertEquals(describeWithoutIds(inMemory.eventsToView(day.toString())),
+                describeWithoutIds(model.eventsToView(day.toString())));
+      }
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testArchivedEventsAreReadOnly() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Work", ZoneId.of("America/New_York"));
+    EventModel work = manager.useCalendar("Work").getEventModel();
+    work.setCrossCheck(true);
+    work.createEvent("Review", "Old", startTime, endTime, Location.ONLINE, Status.PRIVATE,
+            null, 0);
+    work.createEvent("Review", null, startTime.plusDays(40), endTime.plusDays(40), null, null,
+            null, 0);
+    Path directory = Files.createTempDirectory("archive");
+    try {
+      assertEquals(1, work.archive(startTime.plusDays(1), directory.resolve("work.archive")));
+      try {
+        work.editEvent("location", "Review", startTime, "physical");
+        fail("Expected archived events to be read-only");
+      } catch (IllegalArgumentException e) {
+        assertEquals("Archived events cannot be edited", e.getMessage());
+      }
+      try {
+        work.editEvents("location", "Review", startTime.minusDays(1), "physical");
+        fail("Expected archived events to be read-only");
+      } catch (IllegalArgumentException e) {
+        assertEquals("Archived events cannot be edited", e.getMessage());
+      }
+      try {
+        work.createEvent("Review", null, startTime, endTime, null, null, null, 0);
+        fail("Expected a duplicate of an archived event to be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      // Later events with the same subject can still be edited
+      work.editEvents("location", "Review", startTime.plusDays(1), "physical");
+
+      // A snapshot refers to the archive instead of copying it
+      Path snapshot = directory.resolve("calendars.snapshot");
+      CalendarSnapshot.write(manager, snapshot);
+      EventModel loaded = CalendarSnapshot.read(snapshot).getCalendarInUse().getEventModel();
+      loaded.setCrossCheck(true);
+      assertEquals(describe(work.getEvents()), describe(loaded.getEvents()));
+      assertEquals("*ONLINE Review on 2024-03-20", loaded.printDate(startTime.toLocalDate()));
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testColumnsAnswerLikeObjects() {
+    // Both managers create their calendars columnar, the first after its calendars exist
+    CalendarManager objects = new CalendarManager();
+    CalendarManager columns = new CalendarManager();
+    columns.setColumnar(true);
+    Random random = new Random(11);
+    LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+    for (CalendarManager manager : List.of(objects, columns)) {
+      manager.createCalendar("Work", ZoneId.of("America/New_York"));
+      manager.createCalendar("Home", ZoneId.of("Asia/Tokyo"));
+      manager.useCalendar("Work").getEventModel().setCrossCheck(true);
+    }
+    EventModel expected = objects.useCalendar("Work").getEventModel();
+    EventModel actual = columns.useCalendar("Work").getEventModel();
+    List<LocalDateTime> starts = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      int kind = random.nextInt(10);
+      // Starts on the quarter hour, so many events start together
+      LocalDateTime start = kind < 6 || starts.isEmpty()
+              ? base.plusMinutes(15L * random.nextInt(4 * 24 * 60))
+              : starts.get(random.nextInt(starts.size()));
+      String subject = "Event" + random.nextInt(40);
+      String value = random.nextBoolean() ? "online" : "physical";
+      LocalDateTime end = start.plusMinutes(random.nextInt(60 * 24 * 2));
+      boolean repeats = random.nextInt(8) == 0 && end.toLocalDate().equals(start.toLocalDate());
+      String outcome = null;
+      for (EventModel target : List.of(expected, actual)) {
+        String result;
+        try {
+          if (kind < 6) {
+            target.createEvent(subject, kind % 2 == 0 ? null : "Note " + (i % 5), start, end,
+                    kind % 3 == 0 ? Location.ONLINE : null, null, null, repeats ? 4 : 0);
+          } else if (kind == 6) {
+            target.editEvent("location", subject, start, value);
+          } else if (kind == 7) {
+            target.editEvent("start", subject, start, start.plusMinutes(30).toString());
+          } else if (kind == 8) {
+            target.editEvents("end", subject, start, end.plusDays(1).toString());
+          } else {
+            target.editSeries("subject", subject, start, "Renamed");
+          }
+          result = "ok";
+        } catch (IllegalArgumentException e) {
+          result = e.getMessage();
+        }
+        if (outcome == null) {
+          outcome = result;
+        } else {
+          assertEquals(outcome, result);
+        }
+      }
+      starts.add(start);
+    }
+    assertEquals(describeWithoutIds(expected.getEvents()), describeWithoutIds(actual.getEvents()));
+
+    // The objects calendar switches over with its events in place
+    objects.setColumnar(true);
+    objects.setColumnar(false);
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 5));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 6) - 60);
+      LocalDate day = from.toLocalDate();
+      assertEquals(expected.printDateTimeString(from, to), actual.printDateTimeString(from, to));
+      assertEquals(expected.printDate(day), actual.printDate(day));
+      assertEquals(expected.printStatus("show status on ", from),
+              actual.printStatus("show status on ", from));
+      assertEquals(expected.eventsLeft(day.toString()), actual.eventsLeft(day.toString()));
+      assertEquals(describeWithoutIds(expected.eventsToView(day.toString())),
+              describeWithoutIds(actual.eventsToView(day.toString())));
+    }
+    for (CalendarManager manager : List.of(objects, columns)) {
+      manager.copyEventsOn(base.plusDays(1), "Home", base.plusDays(40));
+      manager.copyEventsBetween(base.plusDays(2), base.plusDays(3), "Home", base.plusDays(50));
+      manager.copyEvent(expected.getEvents().get(7).getSubject(),
+              expected.getEvents().get(7).getStartDateTime(), "Home", base.plusDays(60));
+    }
+    assertEquals(describeWithoutIds(objects.useCalendar("Home").getEventModel().getEvents()),
+            describeWithoutIds(columns.useCalendar("Home").getEventModel().getEvents()));
+  }
+
+  @Test
+  public void testEqualSubjectsShareOneString() {
+    for (boolean columnar : new boolean[]{false, true}) {
+      EventModel target = new EventModel();
+      target.setColumnar(columnar);
+      target.setCrossCheck(true);
+      // Each string built separately, as parsed commands are
+      target.createEvent(new String("Standup"), new String("Daily"), startTime, endTime, null,
+              null, null, 0);
+      target.createEvent(new String("Standup"), new String("Daily"), startTime.plusDays(1),
+              endTime.plusDays(1), null, null, new String[]{"M", "W"}, 4);
+      target.paste(List.of(Event.getBuilder().setSubject(new String("Standup"))
+              .setDescription(new String("Daily")).setStartDateTime(startTime.plusDays(30))
+              .setEndDateTime(endTime.plusDays(30)).build()));
+      target.createEvent("Review", null, startTime.plusDays(2), endTime.plusDays(2), null, null,
+              null, 0);
+      target.editEvent("subject", "Review", startTime.plusDays(2), new String("Standup"));
+
+      List<Event> events = target.getEvents();
+      assertEquals(8, events.size());
+      for (Event event : events) {
+        assertSame(events.get(0).getSubject(), event.getSubject());
+        if (event.getDescription() != null) {
+          assertSame(events.get(0).getDescription(), event.getDescription());
+        }
+      }
+      // Lookups by subject still go by value
+      target.editEvent("location", new String("Standup"), startTime.plusDays(30), "online");
+      assertEquals(Location.ONLINE, target.getEvents().get(7).getLocation());
+    }
+  }
+
+  @Test
+  public void testEditEventsStartsAtFirstEventWithSubject() {
+    for (boolean columnar : new boolean[]{false, true}) {
+      EventModel target = new EventModel();
+      target.setColumnar(columnar);
+      target.setCrossCheck(true);
+      target.createEvent("Review", null, startTime, endTime, null, null, null, 0);
+      for (int i = 1; i <= 100; i++) {
+        target.createEvent("Other", null, startTime.plusHours(i), endTime.plusHours(i), null,
+                null, null, 0);
+      }
+      // Two events with the subject start together, long after the given time
+      LocalDateTime later = startTime.plusHours(50);
+      target.createEvent("Review", null, later, later.plusMinutes(30), null, null, null, 0);
+      target.createEvent("Review", null, later, later.plusHours(2), null, null, null, 0);
+      target.createEvent("Review", null, later.plusDays(1), later.plusDays(1).plusHours(1), null,
+              null, null, 0);
+
+      target.editEvent("location", "Review", later, "online");
+      target.editEvents("status", "Review", startTime.plusMinutes(1), "private");
+      List<Event> reviews = new ArrayList<>();
+      for (Event event : target.getEvents()) {
+        if (event.getSubject().equals("Review")) {
+          reviews.add(event);
+        }
+      }
+      assertEquals(4, reviews.size());
+      assertEquals(null, reviews.get(0).getStatus());
+      assertEquals(Location.ONLINE, reviews.get(1).getLocation());
+      assertEquals(null, reviews.get(2).getLocation());
+      assertEquals(Status.PRIVATE, reviews.get(1).getStatus());
+      assertEquals(Status.PRIVATE, reviews.get(2).getStatus());
+      assertEquals(null, reviews.get(3).getStatus());
+      try {
+        target.editEvent("location", "Review", later.plusMinutes(1), "online");
+        fail("Expected no event to start at that time");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentReadersNeverSeeHalfAChange() throws Exception {
+    for (boolean columnar : new boolean[]{false, true}) {
+      EventModel shared = new EventModel();
+      shared.setColumnar(columnar);
+      LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+      // Events come in pairs on one day, so every complete view of a day holds 0 or 2 of them
+      for (int day = 0; day < 200; day += 2) {
+        shared.paste(pairOn(base.plusDays(day), "Seed " + day));
+      }
+      ExecutorService threads = Executors.newFixedThreadPool(6);
+      try {
+        List<Future<?>> done = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+          int writer = w;
+          done.add(threads.submit(() -> {
+            Random random = new Random(writer);
+            for (int i = 0; i < 500; i++) {
+              int day = 2 * random.nextInt(100) + 1;
+              shared.paste(pairOn(base.plusDays(day), "Writer " + writer + " " + i));
+              // Edits the first event of a seeded day in place
+              shared.editEvents("location", "Seed " + (2 * random.nextInt(100)) + " first",
+                      base, random.nextBoolean() ? "online" : "physical");
+            }
+            return null;
+          }));
+        }
+        for (int r = 0; r < 4; r++) {
+          int reader = r;
+          done.add(threads.submit(() -> {
+            Random random = new Random(100 + reader);
+            for (int i = 0; i < 2000; i++) {
+              LocalDate day = base.toLocalDate().plusDays(random.nextInt(200));
+              String printed = shared.printDate(day);
+              // Each printed event starts with a bullet
+              assertEquals(0, printed.chars().filter(c -> c == '*').count() % 2);
+              assertEquals(0, shared.getEvents().size() % 2);
+              assertEquals(0, shared.eventsLeft(day.toString()) % 2);
+              assertEquals("busy", shared.printStatus("show status on ",
+                      base.plusDays(2 * random.nextInt(100)).plusMinutes(30)));
+            }
+            return null;
+          }));
+        }
+        for (Future<?> future : done) {
+          future.get();
+        }
+      } finally {
+        threads.shutdownNow();
+      }
+      assertEquals(200 + 2 * 2 * 500, shared.getEvents().size());
+    }
+  }
+
+  @Test
+  public void testGetEventsPublishesImmutableVersions() {
+    LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+    for (int day = 0; day < 3000; day++) {
+      model.paste(pairOn(base.plusDays(day), "Day " + day));
+    }
+    List<Event> before = model.getEvents();
+    assertSame(before, model.getEvents());
+    try {
+      before.remove(0);
+      fail("Should have thrown UnsupportedOperationException for a published version");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // A batch of changes near the end shows up as one new version
+    ExecutorService reader = Executors.newSingleThreadExecutor();
+    try {
+      model.update(batch -> {
+        batch.paste(pairOn(base.plusDays(2999), "Late"));
+        batch.editEvents("location", "Day 2998 first", base.plusDays(2998), "online");
+        assertEquals(6002, batch.getEvents().size());
+        // Other threads keep reading the last version without waiting for the update
+        try {
+          assertSame(before, reader.submit(model::getEvents).get(10, TimeUnit.SECONDS));
+        } catch (Exception e) {
+          throw new AssertionError(e);
+        }
+      });
+    } finally {
+      reader.shutdownNow();
+    }
+    List<Event> after = model.getEvents();
+    assertEquals(6000, before.size());
+    assertEquals(6002, after.size());
+    assertEquals("Day 2999 second", before.get(5999).getSubject());
+    assertEquals(null, before.get(5996).getLocation());
+    assertEquals(Location.ONLINE, after.get(5996).getLocation());
+    assertSame(before.get(0), after.get(0));
+    assertEquals(model.getEvents(), new ArrayList<>(after));
+  }
+
+  @Test
+  public void testConcurrentCopiesBetweenCalendars() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Work", ZoneId.of("UTC"));
+    manager.createCalendar("Home", ZoneId.of("UTC"));
+    manager.createCalendar("Travel", ZoneId.of("UTC"));
+    EventModel work = manager.useCalendar("Work").getEventModel();
+    Session fromHome = manager.newSession();
+    EventModel home = manager.useCalendar(fromHome, "Home").getEventModel();
+    LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+    for (int day = 0; day < 100; day++) {
+      work.paste(pairOn(base.plusDays(day), "Day " + day));
+      home.paste(pairOn(base.plusDays(500 + day), "Home " + day));
+    }
+    // Copies out of Work into other calendars and into Work itself, and copies out of Home
+    // into Work, which lock the two calendars the other way round; each onto days of their own
+    String[] targets = {"Home", "Travel", "Work", "Home", "Work", "Work"};
+    ExecutorService threads = Executors.newFixedThreadPool(targets.length);
+    try {
+      List<Future<?>> done = new ArrayList<>();
+      for (int t = 0; t < targets.length; t++) {
+        int thread = t;
+        boolean outOfHome = thread >= 4;
+        done.add(threads.submit(() -> {
+          for (int day = 0; day < 100; day++) {
+            LocalDateTime from = base.plusDays((outOfHome ? 500 : 0) + day);
+            LocalDateTime to = base.plusDays(1000 * (thread + 1) + day);
+            if (outOfHome) {
+              manager.copyEventsOn(fromHome, from, targets[thread], to);
+            } else if (day % 2 == 0) {
+              manager.copyEventsOn(from, targets[thread], to);
+            } else {
+              manager.copyEventsBetween(from, from.plusHours(3), targets[thread], to);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : done) {
+        // A deadlock between opposite copies shows up as a timeout
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+    assertEquals(200 + 200 + 2 * 200, work.getEvents().size());
+    assertEquals(200 + 2 * 200, home.getEvents().size());
+    assertEquals(200, manager.useCalendar("Travel").getEventModel().getEvents().size());
+  }
+
+  @Test
+  public void testCopyHoldsSourceUntilTargetIsWritten() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Work", ZoneId.of("UTC"));
+    manager.createCalendar("Home", ZoneId.of("UTC"));
+    EventModel work = manager.useCalendar("Work").getEventModel();
+    EventModel home = manager.useCalendar(manager.newSession(), "Home").getEventModel();
+    LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+    work.paste(pairOn(base, "Day"));
+
+    // Another thread holds Home, so a copy into it has to wait
+    CountDownLatch holding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(() -> home.update(batch -> {
+      holding.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    holder.start();
+    holding.await();
+    Thread copier = new Thread(() -> manager.copyEventsOn(base, "Home", base.plusDays(10)));
+    copier.start();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (copier.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(Thread.State.WAITING, copier.getState());
+
+    // Work cannot change between the copy reading it and writing Home
+    Thread changer = new Thread(() -> work.createEvent("Late", null, base.plusHours(5),
+            base.plusHours(6), null, null, null, 0));
+    changer.start();
+    changer.join(200);
+    assertTrue(changer.isAlive());
+    release.countDown();
+    for (Thread thread : List.of(holder, copier, changer)) {
+      thread.join(10_000);
+    }
+    assertEquals(2, home.getEvents().size());
+    assertEquals(3, work.getEvents().size());
+  }
+
+  /**
+   * Helper that builds two events an hour apart on the given morning.
+   */
+  private static List<Event> pairOn(LocalDateTime start, String subject) {
+    return List.of(
+            Event.getBuilder().setSubject(subject + " first").setStartDateTime(start)
+                    .setEndDateTime(start.plusHours(1)).build(),
+            Event.getBuilder().setSubject(subject + " second").setStartDateTime(start.plusHours(2))
+                    .setEndDateTime(start.plusHours(3)).build());
+  }
+
+  /**
+   * Helper that makes one change of every kind the journal logs.
+   */
+  private void changeCalendars(CalendarManager manager) {
+    manager.createCalendar("Work", ZoneId.of("America/New_York"));
+    manager.createCalendar("Home", ZoneId.of("Asia/Tokyo"));
+    EventModel work = manager.useCalendar("Work").getEventModel();
+    work.createEvent("Review", null, startTime, endTime, Location.ONLINE, null, null, 0);
+    work.createEvent("Standup", "Daily", startTime.plusDays(1), endTime.plusDays(1),
+            Location.PHYSICAL, Status.PUBLIC, new String[]{"M", "W", "F"}, 10);
+    work.editEvent("location", "Standup", LocalDateTime.of(2024, 3, 25, 14, 30), "online");
+    work.editEvents("status", "Standup", LocalDateTime.of(2024, 4, 1, 14, 30), "private");
+    work.editSeries("description", "Standup", startTime.plusDays(1), "Moved");
+    work.editEvent("Review", startTime, EventEdit.getBuilder().set("subject", "Retro")
+            .set("end", endTime.plusHours(1).toString()).build());
+    manager.copyEventsOn(startTime.plusDays(1), "Home", startTime.plusDays(30));
+    manager.editCalendar("Work", "name", "Office");
+    manager.editCalendar("Home", "timezone", "Europe/London");
+  }
+
+  private static void assertSameCalendars(CalendarManager expected, CalendarManager actual) {
+    assertEquals(expected.getCalendars().size(), actual.getCalendars().size());
+    for (int i = 0; i < expected.getCalendars().size(); i++) {
+      Calendar expectedCalendar = expected.getCalendars().get(i);
+      Calendar actualCalendar = actual.getCalendars().get(i);
+      assertEquals(expectedCalendar.getName(), actualCalendar.getName());
+      assertEquals(expectedCalendar.getTimezone(), actualCalendar.getTimezone());
+      assertEquals(describeWithoutIds(expectedCalendar.getEventModel().getEvents()),
+              describeWithoutIds(actualCalendar.getEventModel().getEvents()));
+    }
+  }
+
+  private static void deleteAll(Path directory) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private static List<String> describeWithoutIds(List<Event> events) {
+    // Replayed series get new ids
+    List<String> described = new ArrayList<>();
+    for (String event : describe(events)) {
+      described.add(event.substring(0, event.lastIndexOf('|')));
+    }
+    return described;
+  }
+
+  private static List<String> describe(List<Event> events) {
+    List<String> described = new ArrayList<>();
+    for (Event event : events) {
+      described.add(event.getSubject() + "|" + event.getDescription() + "|"
+              + event.getStartDateTime() + "|" + event.getEndDateTime() + "|"
+              + event.getLocation() + "|" + event.getStatus() + "|" + event.getSeriesId());
+    }
+    return described;
+  }
+}
@@ -94,4 +94,26 @@ public class EventTest {
     assertEquals(startTime.toLocalDate().atTime(8, 0), event.getStartDateTime());
     assertEquals(startTime.toLocalDate().atTime(17, 0), event.getEndDateTime());
   }
-} 
\ No newline at end of file
+
+  // Test that times keep every field, however far from the epoch or fine-grained
+  @Test
+  public void testTimesKeepFullPrecision() {
+    LocalDateTime[][] cases = {
+        {LocalDateTime.of(-4000, 2, 29, 23, 59, 59, 999_999_999),
+            LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999_999_999)},
+        {LocalDateTime.of(1969, 12, 31, 23, 59, 1, 5), LocalDateTime.of(1970, 1, 1, 0, 0)},
+        {startTime.plusNanos(1), startTime.plusNanos(1)}
+    };
+    for (LocalDateTime[] times : cases) {
+      Event event = Event.getBuilder()
+              .setSubject("Test Event")
+              .setStartDateTime(times[0])
+              .setEndDateTime(times[1])
+              .build();
+      assertEquals(times[0], event.getStartDateTime());
+      assertEquals(times[1], event.getEndDateTime());
+      assertEquals(event, Event.getBuilder().setSubject("Test Event")
+              .setStartDateTime(times[0]).setEndDateTime(times[1]).build());
+    }
+  }
+}